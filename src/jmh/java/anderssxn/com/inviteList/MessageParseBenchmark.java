@@ -0,0 +1,61 @@
+package anderssxn.com.inviteList;
+
+import net.kyori.adventure.text.Component;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Message rendering with the bundled messages.yml: the login kick message (parsed vs pre-rendered),
+ * a MiniMessage string, and a command reply with placeholders
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MessageParseBenchmark {
+    
+    private MessagesManager messages;
+    private String kickMessage;
+    
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        try (Reader reader = new InputStreamReader(MessagesManager.class.getResourceAsStream("/messages.yml"), StandardCharsets.UTF_8)) {
+            messages = new MessagesManager(YamlConfiguration.loadConfiguration(reader));
+        }
+        kickMessage = messages.getRaw("login.not-whitelisted");
+    }
+    
+    @Benchmark
+    public Component parseKickMessage() {
+        return messages.parseMessage(kickMessage);
+    }
+    
+    @Benchmark
+    public Component prebuiltKickMessage() {
+        return messages.getKickMessage(KickReason.NOT_INVITED);
+    }
+    
+    @Benchmark
+    public Component parseMiniMessage() {
+        return messages.parseMessage("<gradient:gold:yellow>Welcome to the server!</gradient> <gray>Invited by <white>Notch");
+    }
+    
+    @Benchmark
+    public Component getWithPlaceholders() {
+        return messages.get("cache.sync-channel",
+            "{channel}", "tcp",
+            "{sent}", "1234",
+            "{received}", "5678");
+    }
+}
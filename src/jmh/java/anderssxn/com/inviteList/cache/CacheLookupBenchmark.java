@@ -0,0 +1,133 @@
+package anderssxn.com.inviteList.cache;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Login-path lookups (what WhitelistCache.check does once loaded) at 1M and 10M whitelisted players
+ *
+ * heap / off-heap: the UUIDSet behind cache.mode "full"; filter: the BloomFilter behind cache.mode "filter".
+ * The contended group runs lookups on 7 threads while one thread keeps inviting and removing players.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CacheLookupBenchmark {
+    
+    private static final int PROBES = 1 << 20; // Power of two so the cursor can wrap with a mask
+    
+    @Param({"1000000", "10000000"})
+    public int size;
+    
+    @Param({"heap", "off-heap", "filter"})
+    public String mode;
+    
+    private UUIDSet set;
+    private BloomFilter filter;
+    
+    // Probes stored as (msb, lsb) pairs so the benchmark itself doesn't allocate UUIDs
+    private long[] present;
+    private long[] absent;
+    
+    @Setup(Level.Trial)
+    public void setup() {
+        SplittableRandom random = new SplittableRandom(42);
+        
+        if (mode.equals("filter")) {
+            filter = new BloomFilter(size, 0.01);
+        } else {
+            set = new UUIDSet(size, mode.equals("off-heap"));
+        }
+        
+        present = new long[PROBES * 2];
+        for (int i = 0; i < size; i++) {
+            long msb = random.nextLong();
+            long lsb = random.nextLong();
+            add(msb, lsb);
+            
+            // Keep an evenly spread sample of the inserted UUIDs as hit probes
+            int slot = (int) ((long) i * PROBES / size);
+            present[slot * 2] = msb;
+            present[slot * 2 + 1] = lsb;
+        }
+        
+        absent = new long[PROBES * 2];
+        for (int i = 0; i < absent.length; i++) {
+            absent[i] = random.nextLong();
+        }
+    }
+    
+    private void add(long msb, long lsb) {
+        if (filter != null) {
+            filter.add(msb, lsb);
+        } else {
+            set.add(msb, lsb);
+        }
+    }
+    
+    private boolean contains(long msb, long lsb) {
+        if (filter != null) {
+            return filter.mightContain(msb, lsb);
+        }
+        return set.contains(msb, lsb);
+    }
+    
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+        
+        int advance() {
+            next = (next + 1) & (PROBES - 1);
+            return next * 2;
+        }
+    }
+    
+    @Benchmark
+    @Threads(8)
+    public boolean hit(Cursor cursor) {
+        int i = cursor.advance();
+        return contains(present[i], present[i + 1]);
+    }
+    
+    @Benchmark
+    @Threads(8)
+    public boolean miss(Cursor cursor) {
+        int i = cursor.advance();
+        return contains(absent[i], absent[i + 1]);
+    }
+    
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(7)
+    public boolean contendedLookup(Cursor cursor) {
+        int i = cursor.advance();
+        return contains(present[i], present[i + 1]);
+    }
+    
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(1)
+    public void contendedWrite(Cursor cursor) {
+        // Invite then remove a player who isn't otherwise whitelisted, so the set size stays constant
+        int i = cursor.advance();
+        if (filter != null) {
+            filter.add(absent[i], absent[i + 1]);
+        } else {
+            set.add(absent[i], absent[i + 1]);
+            set.remove(absent[i], absent[i + 1]);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package anderssxn.com.inviteList.cache;
+
+import anderssxn.com.inviteList.database.UUIDCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The in-memory half of WhitelistCache.loadCache: decoding the 16-byte rows streamed by
+ * InviteDatabase.streamWhitelisted() into the structure that gets published
+ *
+ * Single-shot, since a rebuild is a one-off pause rather than a steady-state operation;
+ * run with the gc profiler (the default in build.gradle) for bytes allocated per rebuild.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class CacheRebuildBenchmark {
+    
+    @Param({"1000000", "10000000"})
+    public int size;
+    
+    @Param({"heap", "off-heap", "filter"})
+    public String mode;
+    
+    private byte[][] rows;
+    
+    @Setup(Level.Trial)
+    public void setup() {
+        SplittableRandom random = new SplittableRandom(42);
+        rows = new byte[size][];
+        for (int i = 0; i < size; i++) {
+            rows[i] = UUIDCodec.toBytes(new UUID(random.nextLong(), random.nextLong()));
+        }
+    }
+    
+    @Benchmark
+    public Object rebuild() {
+        // Same steps and sizing as WhitelistCache.loadCache
+        if (mode.equals("filter")) {
+            BloomFilter bloom = new BloomFilter(size + Math.max(1000, size / 10), 0.01);
+            for (byte[] row : rows) {
+                bloom.add(UUIDCodec.msb(row), UUIDCodec.lsb(row));
+            }
+            return bloom;
+        }
+        
+        UUIDSet set = new UUIDSet(size, mode.equals("off-heap"));
+        for (byte[] row : rows) {
+            set.add(UUIDCodec.msb(row), UUIDCodec.lsb(row));
+        }
+        return set;
+    }
+}
@@ -0,0 +1,124 @@
+package anderssxn.com.inviteList.database;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Whitelisting players in an embedded SQLite file, per player:
+ *   single:  one transaction per player, like InviteDatabase.addToWhitelist (an /invite)
+ *   batched: JDBC batches inside one transaction, like BulkImporter
+ * Both write the whitelist row and its change log row, with binary UUIDs as in the real schema; results are per player.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class DatabaseInsertBenchmark {
+    
+    private static final int PLAYERS = 1000;
+    
+    private static final String INSERT_WHITELIST =
+        "INSERT OR IGNORE INTO whitelist (uuid, name, invited_by, invited_at) VALUES (?, ?, ?, ?)";
+    private static final String INSERT_CHANGE =
+        "INSERT INTO whitelist_changes (uuid, action, changed_at) VALUES (?, 'A', ?)";
+    
+    private Path file;
+    private Connection conn;
+    private final SplittableRandom random = new SplittableRandom(42);
+    
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        file = Files.createTempFile("invitelist-bench", ".db");
+        conn = DriverManager.getConnection("jdbc:sqlite:" + file.toAbsolutePath());
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE whitelist (uuid BLOB PRIMARY KEY, name TEXT NOT NULL, invited_by BLOB, invited_at INTEGER NOT NULL) WITHOUT ROWID");
+            stmt.execute("CREATE TABLE whitelist_changes (version INTEGER PRIMARY KEY AUTOINCREMENT, uuid BLOB NOT NULL, " +
+                "action TEXT NOT NULL, changed_at INTEGER NOT NULL)");
+        }
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        conn.close();
+        Files.deleteIfExists(file);
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(PLAYERS)
+    public void single() throws SQLException {
+        for (int i = 0; i < PLAYERS; i++) {
+            byte[] uuid = nextUuid();
+            long now = System.currentTimeMillis();
+            
+            conn.setAutoCommit(false);
+            try (PreparedStatement insert = conn.prepareStatement(INSERT_WHITELIST);
+                 PreparedStatement change = conn.prepareStatement(INSERT_CHANGE)) {
+                bindWhitelist(insert, uuid, now);
+                insert.executeUpdate();
+                change.setBytes(1, uuid);
+                change.setLong(2, now);
+                change.executeUpdate();
+                conn.commit();
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(PLAYERS)
+    public void batched() throws SQLException {
+        long now = System.currentTimeMillis();
+        
+        conn.setAutoCommit(false);
+        try (PreparedStatement insert = conn.prepareStatement(INSERT_WHITELIST);
+             PreparedStatement change = conn.prepareStatement(INSERT_CHANGE)) {
+            for (int i = 0; i < PLAYERS; i++) {
+                byte[] uuid = nextUuid();
+                bindWhitelist(insert, uuid, now);
+                insert.addBatch();
+                change.setBytes(1, uuid);
+                change.setLong(2, now);
+                change.addBatch();
+            }
+            insert.executeBatch();
+            change.executeBatch();
+            conn.commit();
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+    
+    private byte[] nextUuid() {
+        return UUIDCodec.toBytes(new UUID(random.nextLong(), random.nextLong()));
+    }
+    
+    private static void bindWhitelist(PreparedStatement stmt, byte[] uuid, long now) throws SQLException {
+        stmt.setBytes(1, uuid);
+        stmt.setString(2, "Player" + (((uuid[0] & 0xFF) << 8) | (uuid[1] & 0xFF)));
+        stmt.setBytes(3, null); // Console invite
+        stmt.setLong(4, now);
+    }
+}
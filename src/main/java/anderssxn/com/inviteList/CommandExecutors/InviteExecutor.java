@@ -3,6 +3,8 @@ package anderssxn.com.inviteList.CommandExecutors;
 import anderssxn.com.inviteList.InviteList;
 import anderssxn.com.inviteList.MessagesManager;
 import anderssxn.com.inviteList.Subroutines.WhitelistManager;
+import anderssxn.com.inviteList.cache.PlayerNameIndex;
+import com.destroystokyo.paper.profile.PlayerProfile;
 import org.bukkit.Bukkit;
 import org.bukkit.OfflinePlayer;
 import org.bukkit.command.Command;
@@ -10,7 +12,18 @@ import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
 
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
 public class InviteExecutor implements CommandExecutor {
+    
+    private static final Pattern VALID_NAME = Pattern.compile("^[A-Za-z0-9_]{3,16}$");
+    
+    // Last invite time per inviter, for the per-player cooldown
+    private final Map<UUID, Long> lastInvite = new ConcurrentHashMap<>();
 
     @Override
     public boolean onCommand(CommandSender sender, Command command, String label, String[] args) {
@@ -29,14 +42,100 @@ public class InviteExecutor implements CommandExecutor {
         }
         
         String playerName = args[0];
-        OfflinePlayer player = Bukkit.getOfflinePlayer(playerName);
+        if (!VALID_NAME.matcher(playerName).matches()) {
+            sender.sendMessage(msg.get("invite.invalid-name", "{player}", playerName));
+            return true;
+        }
         
         Player inviter = sender instanceof Player ? (Player) sender : null;
-        int response = WhitelistManager.addToWhitelist(inviter, player);
-        handleResponse(sender, playerName, response);
+        if (inviter != null && !tryAcquireCooldown(inviter.getUniqueId(), sender)) {
+            return true;
+        }
+        
+        UUID inviterUUID = inviter != null ? inviter.getUniqueId() : null;
+        String inviterName = inviter != null ? inviter.getName() : "Console";
+        
+        // Resolve the profile, write to the database and update the cache off the main thread,
+        // then reply back on the main thread
+        resolveProfile(playerName).thenCompose(profile -> {
+            if (profile == null) {
+                return CompletableFuture.completedFuture(new InviteOutcome(playerName, 2));
+            }
+            return WhitelistManager.addToWhitelistAsync(inviterUUID, inviterName, profile.uuid(), profile.name())
+                .thenApply(response -> new InviteOutcome(profile.name(), response));
+        }).exceptionally(ex -> {
+            plugin.getLogger().warning("Failed to invite " + playerName + ": " + ex.getMessage());
+            return new InviteOutcome(playerName, 3);
+        }).thenAccept(outcome -> Bukkit.getScheduler().runTask(plugin, () ->
+            handleResponse(sender, outcome.name(), outcome.response())));
         
         return true;
     }
+    
+    /**
+     * Per-player invite cooldown
+     * @return true if the player may invite now
+     */
+    private boolean tryAcquireCooldown(UUID inviterUUID, CommandSender sender) {
+        InviteList plugin = InviteList.getInstance();
+        long cooldownMillis = plugin.getConfig().getLong("invite-cooldown-seconds", 5) * 1000L;
+        if (cooldownMillis <= 0) {
+            return true;
+        }
+        
+        long now = System.currentTimeMillis();
+        Long previous = lastInvite.get(inviterUUID);
+        if (previous != null && now - previous < cooldownMillis) {
+            long remaining = (cooldownMillis - (now - previous) + 999) / 1000;
+            sender.sendMessage(plugin.getMessagesManager().get("invite.rate-limited", "{seconds}", String.valueOf(remaining)));
+            return false;
+        }
+        
+        // Drop stale entries so the map doesn't grow with every player who ever invited
+        lastInvite.values().removeIf(time -> now - time >= cooldownMillis);
+        lastInvite.put(inviterUUID, now);
+        return true;
+    }
+    
+    /**
+     * Resolve a player name to a UUID without blocking the main thread
+     * The plugin's name index, online players and the server's user cache answer immediately,
+     * anything else is looked up async
+     * @return the profile, or null if no such player exists
+     */
+    private CompletableFuture<PlayerNameIndex.Entry> resolveProfile(String playerName) {
+        PlayerNameIndex.Entry known = WhitelistManager.findPlayer(playerName);
+        if (known != null) {
+            return CompletableFuture.completedFuture(known);
+        }
+        
+        Player online = Bukkit.getPlayerExact(playerName);
+        if (online != null) {
+            return CompletableFuture.completedFuture(new PlayerNameIndex.Entry(online.getUniqueId(), online.getName()));
+        }
+        
+        OfflinePlayer cached = Bukkit.getOfflinePlayerIfCached(playerName);
+        if (cached != null && cached.getName() != null) {
+            return CompletableFuture.completedFuture(new PlayerNameIndex.Entry(cached.getUniqueId(), cached.getName()));
+        }
+        
+        CompletableFuture<PlayerNameIndex.Entry> future = new CompletableFuture<>();
+        Bukkit.getScheduler().runTaskAsynchronously(InviteList.getInstance(), () -> {
+            try {
+                // May hit the Mojang API, so never on the main thread
+                PlayerProfile profile = Bukkit.createProfile(playerName);
+                if (profile.complete(false) && profile.getId() != null) {
+                    String name = profile.getName() != null ? profile.getName() : playerName;
+                    future.complete(new PlayerNameIndex.Entry(profile.getId(), name));
+                } else {
+                    future.complete(null);
+                }
+            } catch (Exception e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
 
     private void handleResponse(CommandSender sender, String playerName, int response) {
         MessagesManager msg = InviteList.getInstance().getMessagesManager();
@@ -45,8 +144,13 @@ public class InviteExecutor implements CommandExecutor {
             sender.sendMessage(msg.get("invite.success", "{player}", playerName));
         } else if (response == 1) {
             sender.sendMessage(msg.get("invite.already-whitelisted", "{player}", playerName));
+        } else if (response == 2) {
+            sender.sendMessage(msg.get("invite.player-not-found", "{player}", playerName));
         } else {
             sender.sendMessage(msg.get("invite.error", "{player}", playerName));
         }
     }
+    
+    private record InviteOutcome(String name, int response) {
+    }
 }
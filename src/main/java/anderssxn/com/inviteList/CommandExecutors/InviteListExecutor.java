@@ -2,18 +2,55 @@ package anderssxn.com.inviteList.CommandExecutors;
 
 import anderssxn.com.inviteList.InviteList;
 import anderssxn.com.inviteList.MessagesManager;
+import anderssxn.com.inviteList.Subroutines.WhitelistManager;
+import anderssxn.com.inviteList.bulk.BulkExporter;
+import anderssxn.com.inviteList.bulk.BulkImporter;
+import anderssxn.com.inviteList.bulk.TransferFormat;
+import anderssxn.com.inviteList.bulk.TransferResult;
+import anderssxn.com.inviteList.cache.DenyCache;
+import anderssxn.com.inviteList.cache.InviteGraph;
+import anderssxn.com.inviteList.cache.PlayerNameIndex;
+import anderssxn.com.inviteList.cache.WhitelistCache;
+import anderssxn.com.inviteList.database.DatabaseExecutor;
+import anderssxn.com.inviteList.database.InvitationWriter;
+import anderssxn.com.inviteList.database.WhitelistEntry;
+import anderssxn.com.inviteList.metrics.LatencyHistogram;
+import anderssxn.com.inviteList.metrics.Metrics;
+import anderssxn.com.inviteList.metrics.PrometheusEndpoint;
 import anderssxn.com.inviteList.migration.DatabaseMigrator;
+import anderssxn.com.inviteList.sync.InvalidationBus;
 import org.bukkit.Bukkit;
 import org.bukkit.OfflinePlayer;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
+import org.bukkit.command.TabCompleter;
 
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.UUID;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
 
-public class InviteListExecutor implements CommandExecutor {
-
+public class InviteListExecutor implements CommandExecutor, TabCompleter {
+    
+    // Page boundaries per sender (main thread only); weak keys so players who log out are dropped
+    private final Map<CommandSender, ListCursor> listCursors = new WeakHashMap<>();
+    
+    // Only one import/export at a time
+    private final AtomicBoolean bulkRunning = new AtomicBoolean(false);
+    
+    // Output caps for the invite graph commands
+    private static final int MAX_CHAIN_LENGTH = 100;
+    private static final int MAX_TOP_INVITERS = 50;
+    
     @Override
     public boolean onCommand(CommandSender sender, Command command, String label, String[] args) {
         InviteList plugin = InviteList.getInstance();
@@ -34,17 +71,23 @@ public class InviteListExecutor implements CommandExecutor {
                 sender.sendMessage(msg.get("help.list"));
                 sender.sendMessage(msg.get("help.invites"));
                 sender.sendMessage(msg.get("help.invitedby"));
+                sender.sendMessage(msg.get("help.tree"));
+                sender.sendMessage(msg.get("help.chain"));
+                sender.sendMessage(msg.get("help.top"));
                 if (sender.hasPermission("invitelist.admin")) {
                     sender.sendMessage(msg.get("help.remove"));
+                    sender.sendMessage(msg.get("help.stats"));
                 }
                 if (!(sender instanceof org.bukkit.entity.Player)) {
                     sender.sendMessage(msg.get("help.reload"));
+                    sender.sendMessage(msg.get("help.import"));
+                    sender.sendMessage(msg.get("help.export"));
                 }
                 return true;
-                
+            
             case "list":
-                return handleListCommand(sender);
-                
+                return handleListCommand(sender, args);
+            
             case "invites":
                 if (args.length < 2) {
                     sender.sendMessage(msg.get("invites.usage"));
@@ -52,7 +95,7 @@ public class InviteListExecutor implements CommandExecutor {
                 }
                 
                 return handleInvitesCommand(sender, args[1]);
-                
+            
             case "invitedby":
                 if (args.length < 2) {
                     sender.sendMessage(msg.get("invitedby.usage"));
@@ -60,7 +103,26 @@ public class InviteListExecutor implements CommandExecutor {
                 }
                 
                 return handleInvitedByCommand(sender, args[1]);
+            
+            case "tree":
+                if (args.length < 2) {
+                    sender.sendMessage(msg.get("tree.usage"));
+                    return true;
+                }
                 
+                return handleTreeCommand(sender, args);
+            
+            case "chain":
+                if (args.length < 2) {
+                    sender.sendMessage(msg.get("chain.usage"));
+                    return true;
+                }
+                
+                return handleChainCommand(sender, args[1]);
+            
+            case "top":
+                return handleTopCommand(sender, args);
+            
             case "remove":
                 // Only console or ops can remove
                 if (sender instanceof org.bukkit.entity.Player && !sender.hasPermission("invitelist.admin")) {
@@ -74,7 +136,7 @@ public class InviteListExecutor implements CommandExecutor {
                 }
                 
                 return handleRemoveCommand(sender, args[1]);
-                
+            
             case "reload":
                 // Only console can reload
                 if (sender instanceof org.bukkit.entity.Player) {
@@ -88,11 +150,20 @@ public class InviteListExecutor implements CommandExecutor {
                 }
                 
                 return handleReloadCommand(sender, args[1]);
-                
+            
             case "cache":
                 // Cache info command
                 return handleCacheCommand(sender);
+            
+            case "stats":
+                // Only console or ops can see metrics
+                if (sender instanceof org.bukkit.entity.Player && !sender.hasPermission("invitelist.admin")) {
+                    sender.sendMessage(msg.get("stats.no-permission"));
+                    return true;
+                }
                 
+                return handleStatsCommand(sender);
+            
             case "migrate":
                 // Only console can migrate
                 if (sender instanceof org.bukkit.entity.Player) {
@@ -100,8 +171,8 @@ public class InviteListExecutor implements CommandExecutor {
                     return true;
                 }
                 
-                return handleMigrateCommand(sender);
-                
+                return handleMigrateCommand(sender, args);
+            
             case "toggle":
                 // Only console can toggle
                 if (sender instanceof org.bukkit.entity.Player) {
@@ -110,37 +181,112 @@ public class InviteListExecutor implements CommandExecutor {
                 }
                 
                 return handleToggleCommand(sender);
+            
+            case "import":
+            case "export":
+                // Only console can import/export
+                if (sender instanceof org.bukkit.entity.Player) {
+                    sender.sendMessage(msg.get("bulk.console-only"));
+                    return true;
+                }
                 
+                if (args.length < 2) {
+                    sender.sendMessage(msg.get("bulk.usage"));
+                    return true;
+                }
+                
+                return handleBulkCommand(sender, subCommand.equals("import"), args[1]);
+            
             default:
                 sender.sendMessage(msg.get("general.unknown-subcommand"));
                 return true;
         }
     }
     
+    /**
+     * Resolve a player name without touching the disk or network:
+     * the plugin's name index first, then online players and Bukkit's in-memory user cache
+     * @return the player or null if unknown
+     */
+    private PlayerNameIndex.Entry resolvePlayer(String playerName) {
+        PlayerNameIndex.Entry known = WhitelistManager.findPlayer(playerName);
+        if (known != null) {
+            return known;
+        }
+        
+        OfflinePlayer target = Bukkit.getPlayerExact(playerName);
+        if (target == null) {
+            target = Bukkit.getOfflinePlayerIfCached(playerName);
+        }
+        return target != null && target.getName() != null ? new PlayerNameIndex.Entry(target.getUniqueId(), target.getName()) : null;
+    }
+    
+    @Override
+    public List<String> onTabComplete(CommandSender sender, Command command, String label, String[] args) {
+        if (args.length == 1) {
+            List<String> subCommands = new ArrayList<>(List.of("help", "list", "invites", "invitedby", "tree", "chain", "top", "cache"));
+            if (sender.hasPermission("invitelist.admin")) {
+                subCommands.addAll(List.of("remove", "stats"));
+            }
+            if (!(sender instanceof org.bukkit.entity.Player)) {
+                subCommands.addAll(List.of("reload", "migrate", "toggle", "import", "export"));
+            }
+            return filterPrefix(subCommands, args[0]);
+        }
+        
+        if (args.length == 2) {
+            switch (args[0].toLowerCase()) {
+                case "invites":
+                case "invitedby":
+                case "tree":
+                case "chain":
+                case "remove":
+                    // Served from the in-memory name index, never from disk
+                    return WhitelistManager.completeName(args[1], 50);
+                case "reload":
+                    return filterPrefix(List.of("config", "messages", "database"), args[1]);
+                case "migrate":
+                    return filterPrefix(List.of("mysql", "sqlite", "backup"), args[1]);
+                default:
+                    return List.of();
+            }
+        }
+        
+        return List.of();
+    }
+    
+    private List<String> filterPrefix(List<String> options, String prefix) {
+        String lower = prefix.toLowerCase();
+        List<String> matches = new ArrayList<>();
+        for (String option : options) {
+            if (option.startsWith(lower)) {
+                matches.add(option);
+            }
+        }
+        return matches;
+    }
+    
     private boolean handleInvitesCommand(CommandSender sender, String playerName) {
         InviteList plugin = InviteList.getInstance();
         MessagesManager msg = plugin.getMessagesManager();
         
-        OfflinePlayer target = Bukkit.getOfflinePlayerIfCached(playerName);
-        if (target == null) {
-            target = Bukkit.getPlayerExact(playerName);
-        }
+        PlayerNameIndex.Entry target = resolvePlayer(playerName);
         
         if (target == null) {
             sender.sendMessage(msg.get("invites.player-not-found", "{player}", playerName));
             return true;
         }
         
-        final OfflinePlayer finalTarget = target;
+        final PlayerNameIndex.Entry finalTarget = target;
         
         // Run async query, then send messages on main thread
-        plugin.getDatabase().getPlayersInvitedBy(finalTarget.getUniqueId()).thenAccept(invited -> {
+        plugin.getDatabase().getPlayersInvitedBy(finalTarget.uuid()).thenAccept(invited -> {
             // Schedule messages to run on main thread
             Bukkit.getScheduler().runTask(plugin, () -> {
                 if (invited.isEmpty()) {
-                    sender.sendMessage(msg.get("invites.no-invites", "{player}", finalTarget.getName()));
+                    sender.sendMessage(msg.get("invites.no-invites", "{player}", finalTarget.name()));
                 } else {
-                    sender.sendMessage(msg.get("invites.header", "{player}", finalTarget.getName()));
+                    sender.sendMessage(msg.get("invites.header", "{player}", finalTarget.name()));
                     for (String name : invited) {
                         sender.sendMessage(msg.get("invites.list-entry", "{player}", name));
                     }
@@ -156,36 +302,33 @@ public class InviteListExecutor implements CommandExecutor {
         InviteList plugin = InviteList.getInstance();
         MessagesManager msg = plugin.getMessagesManager();
         
-        OfflinePlayer target = Bukkit.getOfflinePlayerIfCached(playerName);
-        if (target == null) {
-            target = Bukkit.getPlayerExact(playerName);
-        }
+        PlayerNameIndex.Entry target = resolvePlayer(playerName);
         
         if (target == null) {
             sender.sendMessage(msg.get("invitedby.player-not-found", "{player}", playerName));
             return true;
         }
         
-        final OfflinePlayer finalTarget = target;
+        final PlayerNameIndex.Entry finalTarget = target;
         
         // Run async query, then send messages on main thread
-        plugin.getDatabase().getInvitedBy(finalTarget.getUniqueId()).thenAccept(inviterUuid -> {
+        plugin.getDatabase().getInvitedBy(finalTarget.uuid()).thenAccept(inviterUuid -> {
             // Schedule messages to run on main thread
             Bukkit.getScheduler().runTask(plugin, () -> {
                 if (inviterUuid.equals("UNKNOWN")) {
-                    sender.sendMessage(msg.get("invitedby.no-data", "{player}", finalTarget.getName()));
+                    sender.sendMessage(msg.get("invitedby.no-data", "{player}", finalTarget.name()));
                 } else if (inviterUuid.equals("CONSOLE")) {
-                    sender.sendMessage(msg.get("invitedby.console", "{player}", finalTarget.getName()));
+                    sender.sendMessage(msg.get("invitedby.console", "{player}", finalTarget.name()));
                 } else {
                     try {
                         UUID uuid = UUID.fromString(inviterUuid);
-                        OfflinePlayer inviter = Bukkit.getOfflinePlayer(uuid);
+                        String inviterName = WhitelistManager.resolveUUID(uuid);
                         sender.sendMessage(msg.get("invitedby.invited-by", 
-                            "{player}", finalTarget.getName(),
-                            "{inviter}", inviter.getName()));
+                            "{player}", finalTarget.name(),
+                            "{inviter}", inviterName != null ? inviterName : inviterUuid));
                     } catch (IllegalArgumentException e) {
                         sender.sendMessage(msg.get("invitedby.unknown", 
-                            "{player}", finalTarget.getName(),
+                            "{player}", finalTarget.name(),
                             "{inviter}", inviterUuid));
                     }
                 }
@@ -195,32 +338,163 @@ public class InviteListExecutor implements CommandExecutor {
         return true;
     }
     
-    private boolean handleRemoveCommand(CommandSender sender, String playerName) {
+    private boolean handleTreeCommand(CommandSender sender, String[] args) {
         InviteList plugin = InviteList.getInstance();
         MessagesManager msg = plugin.getMessagesManager();
+        InviteGraph graph = plugin.getInviteGraph();
+        
+        if (!graph.isLoaded()) {
+            sender.sendMessage(msg.get("general.graph-loading"));
+            return true;
+        }
+        
+        PlayerNameIndex.Entry target = resolvePlayer(args[1]);
+        if (target == null) {
+            sender.sendMessage(msg.get("tree.player-not-found", "{player}", args[1]));
+            return true;
+        }
+        
+        int depth = plugin.getConfig().getInt("invite-graph.tree-depth", 3);
+        if (args.length > 2) {
+            try {
+                depth = Math.max(1, Integer.parseInt(args[2]));
+            } catch (NumberFormatException e) {
+                sender.sendMessage(msg.get("tree.usage"));
+                return true;
+            }
+        }
+        int maxLines = Math.max(1, plugin.getConfig().getInt("invite-graph.tree-max-lines", 30));
+        
+        // Answered from memory, no database round trip
+        InviteGraph.Subtree tree = graph.subtree(target.uuid(), depth, maxLines);
+        if (tree == null || tree.total() == 0) {
+            sender.sendMessage(msg.get("tree.no-invites", "{player}", target.name()));
+            return true;
+        }
+        
+        sender.sendMessage(msg.get("tree.header", "{player}", target.name()));
+        for (InviteGraph.Branch branch : tree.branches()) {
+            sender.sendMessage(msg.get("tree.entry",
+                "{indent}", "  ".repeat(branch.depth() - 1),
+                "{player}", displayName(branch.node()),
+                "{count}", String.valueOf(branch.node().invited())));
+        }
+        if (tree.total() > tree.branches().size()) {
+            sender.sendMessage(msg.get("tree.more", "{count}", String.valueOf(tree.total() - tree.branches().size())));
+        }
+        sender.sendMessage(msg.get("tree.footer",
+            "{count}", String.valueOf(tree.total()),
+            "{depth}", String.valueOf(tree.depth())));
+        
+        return true;
+    }
+    
+    private boolean handleChainCommand(CommandSender sender, String playerName) {
+        InviteList plugin = InviteList.getInstance();
+        MessagesManager msg = plugin.getMessagesManager();
+        InviteGraph graph = plugin.getInviteGraph();
+        
+        if (!graph.isLoaded()) {
+            sender.sendMessage(msg.get("general.graph-loading"));
+            return true;
+        }
         
-        OfflinePlayer target = Bukkit.getOfflinePlayerIfCached(playerName);
+        PlayerNameIndex.Entry target = resolvePlayer(playerName);
         if (target == null) {
-            target = Bukkit.getPlayerExact(playerName);
+            sender.sendMessage(msg.get("chain.player-not-found", "{player}", playerName));
+            return true;
+        }
+        
+        // The player first, then each inviter up to whoever started the branch
+        List<InviteGraph.Node> chain = graph.chain(target.uuid(), MAX_CHAIN_LENGTH + 1);
+        if (chain.size() < 2) {
+            sender.sendMessage(msg.get("chain.no-inviter", "{player}", target.name()));
+            return true;
+        }
+        
+        sender.sendMessage(msg.get("chain.header",
+            "{player}", target.name(),
+            "{count}", String.valueOf(chain.size() - 1)));
+        for (int i = 1; i < chain.size(); i++) {
+            sender.sendMessage(msg.get("chain.entry",
+                "{position}", String.valueOf(i),
+                "{player}", displayName(chain.get(i))));
+        }
+        
+        return true;
+    }
+    
+    private boolean handleTopCommand(CommandSender sender, String[] args) {
+        InviteList plugin = InviteList.getInstance();
+        MessagesManager msg = plugin.getMessagesManager();
+        InviteGraph graph = plugin.getInviteGraph();
+        
+        if (!graph.isLoaded()) {
+            sender.sendMessage(msg.get("general.graph-loading"));
+            return true;
         }
         
+        int limit = 10;
+        if (args.length > 1) {
+            try {
+                limit = Math.max(1, Math.min(MAX_TOP_INVITERS, Integer.parseInt(args[1])));
+            } catch (NumberFormatException e) {
+                sender.sendMessage(msg.get("top.usage"));
+                return true;
+            }
+        }
+        
+        List<InviteGraph.Node> top = graph.topInviters(limit);
+        if (top.isEmpty()) {
+            sender.sendMessage(msg.get("top.empty"));
+            return true;
+        }
+        
+        sender.sendMessage(msg.get("top.header", "{count}", String.valueOf(top.size())));
+        for (int i = 0; i < top.size(); i++) {
+            sender.sendMessage(msg.get("top.entry",
+                "{rank}", String.valueOf(i + 1),
+                "{player}", displayName(top.get(i)),
+                "{count}", String.valueOf(top.get(i).invited())));
+        }
+        
+        return true;
+    }
+    
+    /**
+     * Current name from the name index, else the name stored with the invitation
+     */
+    private String displayName(InviteGraph.Node node) {
+        String name = WhitelistManager.resolveUUID(node.uuid());
+        if (name == null) {
+            name = node.name();
+        }
+        return name != null ? name : node.uuid().toString();
+    }
+    
+    private boolean handleRemoveCommand(CommandSender sender, String playerName) {
+        InviteList plugin = InviteList.getInstance();
+        MessagesManager msg = plugin.getMessagesManager();
+        
+        PlayerNameIndex.Entry target = resolvePlayer(playerName);
+        
         if (target == null) {
             sender.sendMessage(msg.get("remove.player-not-found", "{player}", playerName));
             return true;
         }
         
-        final OfflinePlayer finalTarget = target;
+        final PlayerNameIndex.Entry finalTarget = target;
         
         // Run async removal
         Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
-            boolean removed = anderssxn.com.inviteList.Subroutines.WhitelistManager.removeFromWhitelist(finalTarget.getUniqueId());
+            boolean removed = WhitelistManager.removeFromWhitelist(finalTarget.uuid());
             
             // Send result on main thread
             Bukkit.getScheduler().runTask(plugin, () -> {
                 if (removed) {
-                    sender.sendMessage(msg.get("remove.success", "{player}", finalTarget.getName()));
+                    sender.sendMessage(msg.get("remove.success", "{player}", finalTarget.name()));
                 } else {
-                    sender.sendMessage(msg.get("remove.not-whitelisted", "{player}", finalTarget.getName()));
+                    sender.sendMessage(msg.get("remove.not-whitelisted", "{player}", finalTarget.name()));
                 }
             });
         });
@@ -228,51 +502,100 @@ public class InviteListExecutor implements CommandExecutor {
         return true;
     }
     
-    private boolean handleListCommand(CommandSender sender) {
+    private boolean handleListCommand(CommandSender sender, String[] args) {
         InviteList plugin = InviteList.getInstance();
         MessagesManager msg = plugin.getMessagesManager();
         
-        sender.sendMessage(msg.get("list.loading"));
+        // /il list [page] [filter]  or  /il list [filter]
+        int page = 1;
+        String filter = null;
+        int argIndex = 1;
+        if (args.length > argIndex) {
+            try {
+                page = Math.max(1, Integer.parseInt(args[argIndex]));
+                argIndex++;
+            } catch (NumberFormatException ignored) {
+                // Not a page number, treat it as the filter
+            }
+        }
+        if (args.length > argIndex) {
+            filter = args[argIndex];
+        }
+        
+        int pageSize = Math.max(1, plugin.getConfig().getInt("list-page-size", 15));
         
-        // Get whitelist with inviters
-        plugin.getDatabase().getAllWhitelistedWithInviters().thenAccept(whitelisted -> {
+        // Seek from the closest page boundary this sender has already seen, skip the rest
+        ListCursor cursor = listCursors.get(sender);
+        if (cursor == null || !Objects.equals(cursor.filter, filter)) {
+            cursor = new ListCursor(filter);
+            listCursors.put(sender, cursor);
+        }
+        int knownPage = Math.min(page - 1, cursor.pageEnds.size());
+        WhitelistEntry after = knownPage > 0 ? cursor.pageEnds.get(knownPage - 1) : null;
+        int skip = (page - 1 - knownPage) * pageSize;
+        
+        final ListCursor finalCursor = cursor;
+        final int finalPage = page;
+        final String finalFilter = filter;
+        
+        // Fetch one extra row to know whether there is a next page
+        plugin.getDatabase().getWhitelistPage(after, filter, skip, pageSize + 1).thenAccept(entries -> {
             Bukkit.getScheduler().runTask(plugin, () -> {
-                if (whitelisted.isEmpty()) {
-                    sender.sendMessage(msg.get("list.empty"));
+                if (entries.isEmpty()) {
+                    sender.sendMessage(msg.get(finalPage == 1 ? "list.empty" : "list.page-empty",
+                        "{page}", String.valueOf(finalPage)));
                     return;
                 }
                 
-                sender.sendMessage(msg.get("list.header", "{count}", String.valueOf(whitelisted.size())));
+                boolean hasNext = entries.size() > pageSize;
+                List<WhitelistEntry> shown = hasNext ? entries.subList(0, pageSize) : entries;
                 
-                for (Map.Entry<String, String> entry : whitelisted.entrySet()) {
-                    String playerName = entry.getKey();
-                    String inviterUuid = entry.getValue();
-                    
-                    String inviterDisplay;
-                    if (inviterUuid.equals("CONSOLE")) {
-                        inviterDisplay = "Console";
-                    } else {
-                        try {
-                            UUID uuid = UUID.fromString(inviterUuid);
-                            OfflinePlayer inviter = Bukkit.getOfflinePlayer(uuid);
-                            inviterDisplay = inviter.getName();
-                        } catch (IllegalArgumentException e) {
-                            inviterDisplay = "Unknown";
-                        }
-                    }
-                    
+                // Remember where this page ended so the next one is a pure index seek
+                if (finalCursor.pageEnds.size() == finalPage - 1) {
+                    finalCursor.pageEnds.add(shown.get(shown.size() - 1));
+                }
+                
+                if (finalFilter == null) {
+                    sender.sendMessage(msg.get("list.header", "{count}", cacheCount(plugin.getWhitelistCache())));
+                } else {
+                    sender.sendMessage(msg.get("list.header-filtered", "{filter}", finalFilter));
+                }
+                
+                for (WhitelistEntry entry : shown) {
                     sender.sendMessage(msg.get("list.entry", 
-                        "{player}", playerName,
-                        "{inviter}", inviterDisplay));
+                        "{player}", entry.name(),
+                        "{inviter}", entry.inviterName()));
                 }
                 
-                sender.sendMessage(msg.get("list.footer", "{count}", String.valueOf(whitelisted.size())));
+                sender.sendMessage(msg.get("list.footer",
+                    "{page}", String.valueOf(finalPage),
+                    "{count}", cacheCount(plugin.getWhitelistCache())));
+                if (hasNext) {
+                    sender.sendMessage(msg.get("list.next-page",
+                        "{next}", String.valueOf(finalPage + 1),
+                        "{filter}", finalFilter != null ? " " + finalFilter : ""));
+                }
             });
+        }).exceptionally(ex -> {
+            Bukkit.getScheduler().runTask(plugin, () -> sender.sendMessage(msg.get("list.error")));
+            return null;
         });
         
         return true;
     }
     
+    /**
+     * Last entry of each page a sender has viewed, for keyset pagination
+     */
+    private static final class ListCursor {
+        private final String filter;
+        private final List<WhitelistEntry> pageEnds = new ArrayList<>();
+        
+        private ListCursor(String filter) {
+            this.filter = filter;
+        }
+    }
+    
     private boolean handleReloadCommand(CommandSender sender, String type) {
         InviteList plugin = InviteList.getInstance();
         MessagesManager msg = plugin.getMessagesManager();
@@ -280,78 +603,276 @@ public class InviteListExecutor implements CommandExecutor {
         switch (type.toLowerCase()) {
             case "config":
                 plugin.reloadConfig();
+                plugin.reloadLoginThrottle();
                 sender.sendMessage(msg.get("reload.config-success"));
                 return true;
-                
+            
             case "messages":
                 plugin.getMessagesManager().reloadMessages();
                 sender.sendMessage(msg.get("reload.messages-success"));
                 return true;
-                
+            
             case "database":
                 sender.sendMessage(msg.get("reload.database-loading"));
-                plugin.reloadDatabase();
-                plugin.getWhitelistCache().refresh();
-                sender.sendMessage(msg.get("reload.database-success"));
+                plugin.reloadDatabase().thenRun(() -> {
+                    // Completes on the main thread
+                    plugin.getWhitelistCache().loadCache();
+                    sender.sendMessage(msg.get("reload.database-success"));
+                }).exceptionally(ex -> {
+                    plugin.getLogger().log(Level.SEVERE, "Database reload failed", ex);
+                    Bukkit.getScheduler().runTask(plugin, () ->
+                        sender.sendMessage(msg.get("reload.database-failed", "{error}", String.valueOf(ex.getMessage()))));
+                    return null;
+                });
                 return true;
-                
+            
             default:
                 sender.sendMessage(msg.get("reload.usage"));
                 return true;
         }
     }
     
+    /**
+     * Cached player count for display, marked "~" when it is only an estimate (filter mode)
+     */
+    private static String cacheCount(WhitelistCache cache) {
+        return (cache.isCacheSizeApproximate() ? "~" : "") + cache.getCacheSize();
+    }
+    
     private boolean handleCacheCommand(CommandSender sender) {
         InviteList plugin = InviteList.getInstance();
         MessagesManager msg = plugin.getMessagesManager();
         
-        int cacheSize = plugin.getWhitelistCache().getCacheSize();
         boolean loaded = plugin.getWhitelistCache().isLoaded();
         boolean loading = plugin.getWhitelistCache().isLoading();
         
         sender.sendMessage(msg.get("cache.info-header"));
-        sender.sendMessage(msg.get("cache.size", "{count}", String.valueOf(cacheSize)));
+        sender.sendMessage(msg.get("cache.size", "{count}", cacheCount(plugin.getWhitelistCache())));
         sender.sendMessage(msg.get("cache.status", "{status}", 
             loading ? "Loading..." : (loaded ? "Loaded" : "Not Loaded")));
         
-        long estimatedMemory = cacheSize * 40L / 1024; // KB
-        sender.sendMessage(msg.get("cache.memory", "{memory}", estimatedMemory + " KB"));
+        long memoryKb = plugin.getWhitelistCache().getMemoryUsageBytes() / 1024;
+        String memory = memoryKb + " KB" + (plugin.getWhitelistCache().isOffHeap() ? " (off-heap)" : "");
+        sender.sendMessage(msg.get("cache.memory", "{memory}", memory));
+        sender.sendMessage(msg.get("cache.mode", "{mode}", plugin.getWhitelistCache().getMode().name().toLowerCase()));
+        
+        WhitelistCache.FilterStats filter = plugin.getWhitelistCache().getFilterStats();
+        if (filter != null) {
+            sender.sendMessage(msg.get("cache.filter-size",
+                "{kb}", String.valueOf(filter.bits() / 8 / 1024),
+                "{hashes}", String.valueOf(filter.hashes()),
+                "{entries}", String.valueOf(filter.insertions()),
+                "{target}", String.format("%.3f%%", filter.targetFpp() * 100),
+                "{expected}", String.format("%.3f%%", filter.expectedFpp() * 100)));
+            
+            long lookups = filter.negatives() + filter.lruHits() + filter.databaseConfirms();
+            long positives = filter.lruHits() + filter.databaseConfirms();
+            sender.sendMessage(msg.get("cache.filter-hits",
+                "{negatives}", String.valueOf(filter.negatives()),
+                "{negative-ratio}", percent(filter.negatives(), lookups),
+                "{lru-hits}", String.valueOf(filter.lruHits()),
+                "{lru-ratio}", percent(filter.lruHits(), positives),
+                "{lru-size}", String.valueOf(filter.lruSize()),
+                "{db}", String.valueOf(filter.databaseConfirms()),
+                "{false-positives}", String.valueOf(filter.falsePositives())));
+        }
+        
+        DatabaseExecutor executor = plugin.getDatabase().getExecutor();
+        if (executor != null) {
+            sender.sendMessage(msg.get("cache.db-executor",
+                "{mode}", executor.getMode().name().toLowerCase(),
+                "{active}", String.valueOf(executor.getActiveCount()),
+                "{threads}", String.valueOf(executor.getThreads()),
+                "{queued}", String.valueOf(executor.getQueueDepth()),
+                "{rejected}", String.valueOf(executor.getRejectedCount())));
+        }
+        
+        InvitationWriter writer = plugin.getInvitationWriter();
+        if (writer != null) {
+            sender.sendMessage(msg.get("cache.invitation-writer",
+                "{queued}", String.valueOf(writer.getQueueDepth()),
+                "{written}", String.valueOf(writer.getWrittenCount()),
+                "{fallback}", String.valueOf(writer.getFallbackCount())));
+        }
+        
+        InviteGraph graph = plugin.getInviteGraph();
+        if (graph.isLoaded()) {
+            sender.sendMessage(msg.get("cache.invite-graph",
+                "{players}", String.valueOf(graph.size()),
+                "{links}", String.valueOf(graph.getLinkCount()),
+                "{kb}", String.valueOf(graph.getMemoryUsageBytes() / 1024)));
+        }
+        
+        InvalidationBus bus = plugin.getInvalidationBus();
+        if (bus != null) {
+            sender.sendMessage(msg.get("cache.sync-channel",
+                "{channel}", bus.getChannelName(),
+                "{sent}", String.valueOf(bus.getPublishedCount()),
+                "{received}", String.valueOf(bus.getReceivedCount())));
+        }
         
         return true;
     }
     
-    private boolean handleMigrateCommand(CommandSender sender) {
+    private boolean handleStatsCommand(CommandSender sender) {
         InviteList plugin = InviteList.getInstance();
         MessagesManager msg = plugin.getMessagesManager();
+        Metrics metrics = plugin.getMetrics();
+        
+        sender.sendMessage(msg.get("stats.header"));
+        sender.sendMessage(msg.get("stats.login-lookups",
+            "{cache}", String.valueOf(metrics.getCacheHits()),
+            "{database}", String.valueOf(metrics.getDatabaseFallbacks())));
+        sender.sendMessage(msg.get("stats.login-decisions",
+            "{allow}", String.valueOf(metrics.getAllowed()),
+            "{deny}", String.valueOf(metrics.getDenied()),
+            "{throttled}", String.valueOf(metrics.getThrottled()),
+            "{error}", String.valueOf(metrics.getErrors())));
+        sendLatency(sender, "Login gate", metrics.getLoginLatency(), 0);
+        
+        DenyCache denyCache = plugin.getWhitelistCache().getDenyCache();
+        if (denyCache != null) {
+            sender.sendMessage(msg.get("stats.deny-cache", "{hits}", String.valueOf(denyCache.getHits())));
+        }
+        
+        Map<String, LatencyHistogram> refreshes = metrics.getRefreshLatency();
+        for (Map.Entry<String, LatencyHistogram> entry : refreshes.entrySet()) {
+            sendLatency(sender, "Cache refresh (" + entry.getKey() + ")", entry.getValue(), 0);
+        }
+        
+        Map<String, Metrics.Operation> operations = metrics.getDatabaseOperations();
+        if (!operations.isEmpty()) {
+            sender.sendMessage(msg.get("stats.database-header"));
+            for (Map.Entry<String, Metrics.Operation> entry : operations.entrySet()) {
+                sendLatency(sender, entry.getKey(), entry.getValue().getLatency(), entry.getValue().getErrors());
+            }
+        }
+        
+        PrometheusEndpoint endpoint = plugin.getMetricsEndpoint();
+        InetSocketAddress address = endpoint != null ? endpoint.getAddress() : null;
+        sender.sendMessage(address != null ?
+            msg.get("stats.endpoint", "{address}", "http://" + address.getHostString() + ":" + address.getPort() + "/metrics") :
+            msg.get("stats.endpoint-disabled"));
+        return true;
+    }
+    
+    private void sendLatency(CommandSender sender, String name, LatencyHistogram histogram, long errors) {
+        MessagesManager msg = InviteList.getInstance().getMessagesManager();
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        if (snapshot.getCount() == 0) {
+            return;
+        }
+        
+        sender.sendMessage(msg.get("stats.latency",
+            "{name}", name,
+            "{count}", String.valueOf(snapshot.getCount()),
+            "{p50}", formatNanos(snapshot.valueAt(0.5)),
+            "{p99}", formatNanos(snapshot.valueAt(0.99)),
+            "{p999}", formatNanos(snapshot.valueAt(0.999)),
+            "{max}", formatNanos(snapshot.getMaxNanos()),
+            "{errors}", String.valueOf(errors)));
+    }
+    
+    private static String formatNanos(long nanos) {
+        if (nanos < 1_000_000L) {
+            return String.format("%.1fµs", nanos / 1_000.0);
+        }
+        if (nanos < 1_000_000_000L) {
+            return String.format("%.2fms", nanos / 1_000_000.0);
+        }
+        return String.format("%.2fs", nanos / 1_000_000_000.0);
+    }
+    
+    private static String percent(long part, long total) {
+        return total == 0 ? "-" : String.format("%.1f%%", part * 100.0 / total);
+    }
+    
+    private boolean handleMigrateCommand(CommandSender sender, String[] args) {
+        InviteList plugin = InviteList.getInstance();
+        MessagesManager msg = plugin.getMessagesManager();
+        
+        String target = args.length >= 2 ? args[1].toLowerCase() : "mysql";
+        boolean fresh = args.length >= 3 && args[2].equalsIgnoreCase("fresh");
+        
+        if (DatabaseMigrator.isRunning()) {
+            sender.sendMessage(msg.get("migrate.already-running"));
+            return true;
+        }
         
         // Check current database type
         String currentType = plugin.getConfig().getString("database.type", "sqlite").toUpperCase();
-        if (currentType.equals("MYSQL")) {
-            sender.sendMessage(msg.get("migrate.already-mysql"));
-            return true;
+        DatabaseMigrator migrator = new DatabaseMigrator(plugin);
+        CompletableFuture<DatabaseMigrator.MigrationResult> migration;
+        
+        switch (target) {
+            case "mysql":
+                if (currentType.equals("MYSQL")) {
+                    sender.sendMessage(msg.get("migrate.already-mysql"));
+                    return true;
+                }
+                
+                // Warn about backup
+                sender.sendMessage(msg.get("migrate.warning-1"));
+                sender.sendMessage(msg.get("migrate.warning-2"));
+                sender.sendMessage(msg.get("migrate.warning-3"));
+                migration = migrator.migrateToMySQL(sender, fresh);
+                break;
+            
+            case "sqlite":
+                if (!currentType.equals("MYSQL")) {
+                    sender.sendMessage(msg.get("migrate.already-sqlite"));
+                    return true;
+                }
+                
+                sender.sendMessage(msg.get("migrate.warning-1"));
+                sender.sendMessage(msg.get("migrate.warning-sqlite"));
+                migration = migrator.migrateToSQLite(sender, fresh);
+                break;
+            
+            case "backup":
+                migration = migrator.backup(sender);
+                break;
+            
+            default:
+                sender.sendMessage(msg.get("migrate.usage"));
+                return true;
         }
         
-        // Warn about backup
-        sender.sendMessage(msg.get("migrate.warning-1"));
-        sender.sendMessage(msg.get("migrate.warning-2"));
-        sender.sendMessage(msg.get("migrate.warning-3"));
         sender.sendMessage(msg.get("migrate.confirm"));
         sender.sendMessage("");
         sender.sendMessage(msg.get("migrate.starting"));
         
-        // Start migration
-        DatabaseMigrator migrator = new DatabaseMigrator(plugin);
-        migrator.migrateToMySQL(sender).thenAccept(result -> {
+        migration.thenAccept(result -> {
             Bukkit.getScheduler().runTask(plugin, () -> {
-                if (result.success) {
-                    sender.sendMessage(msg.get("migrate.success"));
-                    sender.sendMessage(msg.get("migrate.whitelist-count", "{count}", String.valueOf(result.whitelistCount)));
-                    sender.sendMessage(msg.get("migrate.invitations-count", "{count}", String.valueOf(result.invitationsCount)));
-                    sender.sendMessage(msg.get("migrate.next-step-1"));
-                    sender.sendMessage(msg.get("migrate.next-step-2"));
-                    sender.sendMessage(msg.get("migrate.next-step-3"));
-                } else {
+                if (!result.success) {
                     sender.sendMessage(msg.get("migrate.failed", "{error}", result.message));
+                    return;
+                }
+                
+                sender.sendMessage(msg.get("migrate.success"));
+                if (result.resumed) {
+                    sender.sendMessage(msg.get("migrate.resumed"));
+                }
+                sender.sendMessage(msg.get("migrate.whitelist-count", "{count}", String.valueOf(result.whitelistCount)));
+                sender.sendMessage(msg.get("migrate.invitations-count", "{count}", String.valueOf(result.invitationsCount)));
+                sender.sendMessage(msg.get("migrate.throughput",
+                    "{seconds}", String.format("%.1f", result.elapsedMillis / 1000.0),
+                    "{rate}", String.valueOf(result.rowsPerSecond())));
+                
+                switch (target) {
+                    case "mysql":
+                        sender.sendMessage(msg.get("migrate.next-step-1"));
+                        sender.sendMessage(msg.get("migrate.next-step-2"));
+                        sender.sendMessage(msg.get("migrate.next-step-3"));
+                        break;
+                    case "sqlite":
+                        sender.sendMessage(msg.get("migrate.next-step-1"));
+                        sender.sendMessage(msg.get("migrate.next-step-sqlite"));
+                        sender.sendMessage(msg.get("migrate.next-step-3"));
+                        break;
+                    default:
+                        sender.sendMessage(msg.get("migrate.backup-file", "{file}", result.targetFile));
+                        break;
                 }
             });
         });
@@ -359,6 +880,87 @@ public class InviteListExecutor implements CommandExecutor {
         return true;
     }
     
+    /**
+     * Import or export the whitelist from/to a file in the plugin folder
+     * Runs on an async task rather than the database executor, so a long transfer can't starve regular queries
+     */
+    private boolean handleBulkCommand(CommandSender sender, boolean importing, String fileName) {
+        InviteList plugin = InviteList.getInstance();
+        MessagesManager msg = plugin.getMessagesManager();
+        
+        TransferFormat format = TransferFormat.fromFileName(fileName);
+        if (format == null) {
+            sender.sendMessage(msg.get("bulk.unknown-format", "{file}", fileName));
+            return true;
+        }
+        
+        Path file = resolveBulkFile(plugin, fileName, importing);
+        if (file == null) {
+            sender.sendMessage(msg.get("bulk.invalid-path", "{file}", fileName));
+            return true;
+        }
+        if (importing && !Files.isRegularFile(file)) {
+            sender.sendMessage(msg.get("bulk.file-not-found", "{file}", fileName));
+            return true;
+        }
+        
+        if (!bulkRunning.compareAndSet(false, true)) {
+            sender.sendMessage(msg.get("bulk.already-running"));
+            return true;
+        }
+        
+        String prefix = importing ? "import." : "export.";
+        sender.sendMessage(msg.get(prefix + "started", "{file}", file.getFileName().toString()));
+        
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            try {
+                TransferResult result = importing ?
+                    new BulkImporter(plugin, plugin.getDatabase()).importFile(file, format) :
+                    new BulkExporter(plugin, plugin.getDatabase()).exportFile(file, format);
+                
+                if (importing && result.mayHaveInserted()) {
+                    // One bulk swap instead of touching the cache per row
+                    plugin.getWhitelistCache().loadCache();
+                }
+                
+                Bukkit.getScheduler().runTask(plugin, () -> sender.sendMessage(msg.get(prefix + "success",
+                    "{count}", String.valueOf(result.processed()),
+                    "{added}", result.uncounted() > 0 ?
+                        "≤" + (result.inserted() + result.uncounted()) : String.valueOf(result.inserted()),
+                    "{skipped}", String.valueOf(result.skipped()),
+                    "{seconds}", String.format("%.1f", result.elapsedMillis() / 1000.0),
+                    "{rate}", String.valueOf(result.rowsPerSecond()))));
+                    
+            } catch (Exception e) {
+                plugin.getLogger().log(Level.SEVERE, "Bulk " + (importing ? "import" : "export") + " failed", e);
+                Bukkit.getScheduler().runTask(plugin, () ->
+                    sender.sendMessage(msg.get(prefix + "failed", "{error}", String.valueOf(e.getMessage()))));
+            } finally {
+                bulkRunning.set(false);
+            }
+        });
+        
+        return true;
+    }
+    
+    /**
+     * Resolve a file name inside the plugin folder, rejecting paths that escape it
+     * Importing "whitelist.json" falls back to the server's own whitelist.json
+     * @return the path or null if it points outside the plugin folder
+     */
+    private Path resolveBulkFile(InviteList plugin, String fileName, boolean importing) {
+        Path base = plugin.getDataFolder().toPath().toAbsolutePath().normalize();
+        Path file = base.resolve(fileName).normalize();
+        if (!file.startsWith(base)) {
+            return null;
+        }
+        
+        if (importing && !Files.exists(file) && fileName.equalsIgnoreCase("whitelist.json")) {
+            return Bukkit.getWorldContainer().toPath().toAbsolutePath().resolve("whitelist.json").normalize();
+        }
+        return file;
+    }
+    
     private boolean handleToggleCommand(CommandSender sender) {
         InviteList plugin = InviteList.getInstance();
         MessagesManager msg = plugin.getMessagesManager();
@@ -3,21 +3,42 @@ package anderssxn.com.inviteList;
 import anderssxn.com.inviteList.CommandExecutors.InviteExecutor;
 import anderssxn.com.inviteList.CommandExecutors.InviteListExecutor;
 import anderssxn.com.inviteList.Listeners.PlayerLoginListener;
+import anderssxn.com.inviteList.Subroutines.LoginThrottle;
 import anderssxn.com.inviteList.Subroutines.WhitelistManager;
+import anderssxn.com.inviteList.cache.InviteGraph;
 import anderssxn.com.inviteList.cache.WhitelistCache;
 import anderssxn.com.inviteList.database.DatabaseType;
+import anderssxn.com.inviteList.database.DatabaseExecutor;
+import anderssxn.com.inviteList.database.InvitationWriter;
 import anderssxn.com.inviteList.database.InviteDatabase;
+import anderssxn.com.inviteList.metrics.Metrics;
+import anderssxn.com.inviteList.metrics.PrometheusEndpoint;
+import anderssxn.com.inviteList.sync.InvalidationBus;
 import anderssxn.com.inviteList.tasks.CacheRefreshTask;
 import org.bukkit.plugin.java.JavaPlugin;
 
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
 public final class InviteList extends JavaPlugin {
     
     private static InviteList instance;
-    private InviteDatabase database;
+    private volatile InviteDatabase database; // Read from async tasks, swapped by reloadDatabase()
+    private CompletableFuture<Void> databaseReload;
     private WhitelistCache whitelistCache;
+    private final InviteGraph inviteGraph = new InviteGraph();
+    private volatile long inviteGraphLastId; // Highest invitations.id in the graph, for incremental updates
     private CacheRefreshTask refreshTask;
+    private InvalidationBus invalidationBus;
+    private InvitationWriter invitationWriter;
     private MessagesManager messagesManager;
-
+    private final Metrics metrics = new Metrics();
+    private PrometheusEndpoint metricsEndpoint;
+    
     @Override
     public void onEnable() {
         instance = this;
@@ -41,21 +62,45 @@ public final class InviteList extends JavaPlugin {
         database = new InviteDatabase(this, dbType);
         database.connect();
         
+        // Invitation history is batched in the background (and parked on disk while the database is down)
+        invitationWriter = new InvitationWriter(this,
+            getConfig().getInt("database.invitation-writer.queue-size", 10000),
+            getConfig().getInt("database.invitation-writer.batch-size", 200),
+            getConfig().getLong("database.invitation-writer.flush-interval-ms", 1000));
+        invitationWriter.start();
+        WhitelistManager.setInvitationWriter(invitationWriter);
+        
         // Initialize whitelist cache for high-performance lookups
         whitelistCache = new WhitelistCache(this, database);
-        whitelistCache.loadCache();
+        whitelistCache.warmStart();
         
         // Set database in WhitelistManager
         WhitelistManager.setDatabase(database);
         WhitelistManager.setCache(whitelistCache);
+        reloadLoginThrottle();
+        
+        // Who-invited-whom tree for /invitelist tree, chain and top
+        if (getConfig().getBoolean("invite-graph.enabled", true)) {
+            WhitelistManager.setInviteGraph(inviteGraph);
+            loadInviteGraph();
+        }
+        
+        // Push whitelist changes to (and receive them from) other servers
+        invalidationBus = new InvalidationBus(this, whitelistCache);
+        invalidationBus.start();
+        WhitelistManager.setInvalidationBus(invalidationBus);
         
         // Start cache refresh task
         startCacheRefreshTask();
         
+        startMetricsEndpoint();
+        
         // Register commands and listeners
-        getCommand("invitelist").setExecutor(new InviteListExecutor());
+        InviteListExecutor inviteListExecutor = new InviteListExecutor();
+        getCommand("invitelist").setExecutor(inviteListExecutor);
+        getCommand("invitelist").setTabCompleter(inviteListExecutor);
         getCommand("invite").setExecutor(new InviteExecutor());
-        getServer().getPluginManager().registerEvents(new PlayerLoginListener(), this);
+        getServer().getPluginManager().registerEvents(new PlayerLoginListener(this), this);
         
         getLogger().info("InviteList enabled with " + dbType + " database + in-memory cache!");
     }
@@ -70,7 +115,10 @@ public final class InviteList extends JavaPlugin {
             return;
         }
         
-        long intervalSeconds = getConfig().getLong("cache.refresh-interval-seconds", 300);
+        // With a sync channel pushing changes, the refresh is only a slow consistency check
+        long intervalSeconds = invalidationBus != null && invalidationBus.isActive() ?
+            getConfig().getLong("sync.consistency-check-seconds", 300) :
+            getConfig().getLong("cache.refresh-interval-seconds", 300);
         long intervalTicks = intervalSeconds * 20; // Convert seconds to ticks
         
         refreshTask = new CacheRefreshTask(this, whitelistCache);
@@ -78,7 +126,105 @@ public final class InviteList extends JavaPlugin {
         
         getLogger().info("Cache auto-refresh started (interval: " + intervalSeconds + " seconds)");
     }
-
+    
+    /**
+     * Rebuild the invite graph from the invitations table; invites made meanwhile are kept
+     */
+    public void loadInviteGraph() {
+        if (!getConfig().getBoolean("invite-graph.enabled", true)) {
+            return;
+        }
+        
+        // Write queued history first so the reload sees it
+        InviteDatabase db = database;
+        InviteGraph.Builder builder = inviteGraph.builder();
+        invitationWriter.flushAsync().thenCompose(v -> db.forEachInvitation(0, builder::add)).thenAccept(lastId -> {
+            inviteGraph.publish(builder);
+            inviteGraphLastId = lastId;
+            getLogger().info("Loaded invite graph: " + inviteGraph.size() + " players, " + inviteGraph.getLinkCount() + " invite links");
+        }).exceptionally(ex -> {
+            inviteGraph.cancel();
+            getLogger().warning("Failed to load invite graph: " + ex.getMessage());
+            return null;
+        });
+    }
+    
+    /**
+     * Add invitations recorded since the last load (e.g. on other servers) to the invite graph
+     * Falls back to a full {@link #loadInviteGraph()} if the graph hasn't been loaded yet
+     */
+    public void updateInviteGraph() {
+        if (!getConfig().getBoolean("invite-graph.enabled", true)) {
+            return;
+        }
+        if (!inviteGraph.isLoaded()) {
+            loadInviteGraph();
+            return;
+        }
+        
+        // Adding an invitation twice (local invites are already in the graph) changes nothing
+        InviteDatabase db = database;
+        long afterId = inviteGraphLastId;
+        invitationWriter.flushAsync().thenCompose(v -> db.forEachInvitation(afterId, inviteGraph::add)).thenAccept(lastId -> {
+            if (lastId > afterId) {
+                inviteGraphLastId = Math.max(inviteGraphLastId, lastId);
+                getLogger().fine("Updated invite graph with invitations " + (afterId + 1) + ".." + lastId);
+            }
+        }).exceptionally(ex -> {
+            getLogger().warning("Failed to update invite graph: " + ex.getMessage());
+            return null;
+        });
+    }
+    
+    /**
+     * (Re)build the per-IP login throttle from login-protection.rate-limit
+     */
+    public void reloadLoginThrottle() {
+        if (!getConfig().getBoolean("login-protection.rate-limit.enabled", true)) {
+            WhitelistManager.setLoginThrottle(null);
+            return;
+        }
+        
+        WhitelistManager.setLoginThrottle(new LoginThrottle(
+            getConfig().getInt("login-protection.rate-limit.burst", 5),
+            getConfig().getDouble("login-protection.rate-limit.per-second", 0.2),
+            getConfig().getInt("login-protection.rate-limit.max-tracked-ips", 65536)));
+    }
+    
+    /**
+     * Serve metrics to a local Prometheus scraper if metrics.prometheus.enabled is set
+     */
+    private void startMetricsEndpoint() {
+        if (!getConfig().getBoolean("metrics.prometheus.enabled", false)) {
+            return;
+        }
+        
+        String host = getConfig().getString("metrics.prometheus.bind-host", "127.0.0.1");
+        int port = getConfig().getInt("metrics.prometheus.port", 9464);
+        
+        metricsEndpoint = new PrometheusEndpoint(metrics, () -> {
+            Map<String, Number> gauges = new LinkedHashMap<>();
+            gauges.put("cache_entries", whitelistCache.getCacheSize());
+            gauges.put("cache_memory_bytes", whitelistCache.getMemoryUsageBytes());
+            gauges.put("invitation_queue_depth", invitationWriter.getQueueDepth());
+            gauges.put("invitation_fallback_records", invitationWriter.getFallbackCount());
+            DatabaseExecutor executor = database.getExecutor();
+            if (executor != null) {
+                gauges.put("database_queue_depth", executor.getQueueDepth());
+                gauges.put("database_active_queries", executor.getActiveCount());
+            }
+            return gauges;
+        });
+        
+        try {
+            metricsEndpoint.start(new InetSocketAddress(host, port));
+            getLogger().info("Prometheus metrics available at http://" + host + ":" + port + "/metrics");
+        } catch (IOException e) {
+            getLogger().warning("Failed to start metrics endpoint on " + host + ":" + port + ": " + e.getMessage());
+            metricsEndpoint = null;
+        }
+    }
+    
     @Override
     public void onDisable() {
         // Cancel refresh task
@@ -86,6 +232,24 @@ public final class InviteList extends JavaPlugin {
             refreshTask.cancel();
         }
         
+        if (invalidationBus != null) {
+            invalidationBus.close();
+        }
+        
+        if (metricsEndpoint != null) {
+            metricsEndpoint.stop();
+        }
+        
+        // Let the next start serve logins from disk right away
+        if (whitelistCache != null) {
+            whitelistCache.saveSnapshot();
+        }
+        
+        // Write queued invitation history while the pool is still open
+        if (invitationWriter != null) {
+            invitationWriter.close();
+        }
+        
         // Disconnect database
         if (database != null) {
             database.disconnect();
@@ -110,16 +274,36 @@ public final class InviteList extends JavaPlugin {
         return whitelistCache;
     }
     
+    public InvitationWriter getInvitationWriter() {
+        return invitationWriter;
+    }
+    
+    public InviteGraph getInviteGraph() {
+        return inviteGraph;
+    }
+    
+    public InvalidationBus getInvalidationBus() {
+        return invalidationBus;
+    }
+    
+    public Metrics getMetrics() {
+        return metrics;
+    }
+    
+    public PrometheusEndpoint getMetricsEndpoint() {
+        return metricsEndpoint;
+    }
+    
     /**
      * Reload database connection and data
+     * Flushing, disconnecting and reconnecting run on an async task; the new database is swapped in on the main thread
+     * @return future completed on the main thread once the new database is in use (the running one if a reload is in progress)
      */
-    public void reloadDatabase() {
-        getLogger().info("Reloading database...");
-        
-        // Disconnect old connection
-        if (database != null) {
-            database.disconnect();
+    public CompletableFuture<Void> reloadDatabase() {
+        if (databaseReload != null && !databaseReload.isDone()) {
+            return databaseReload;
         }
+        getLogger().info("Reloading database...");
         
         // Reconnect with current config
         String dbTypeStr = getConfig().getString("database.type", "sqlite").toUpperCase();
@@ -131,10 +315,37 @@ public final class InviteList extends JavaPlugin {
             dbType = DatabaseType.SQLITE;
         }
         
-        database = new InviteDatabase(this, dbType);
-        database.connect();
-        WhitelistManager.setDatabase(database);
+        DatabaseType newType = dbType;
+        InviteDatabase old = database;
+        Executor async = task -> getServer().getScheduler().runTaskAsynchronously(this, task);
+        Executor mainThread = task -> getServer().getScheduler().runTask(this, task);
         
-        getLogger().info("Database reloaded successfully!");
+        // Disconnect old connection (after writing queued history to it)
+        CompletableFuture<Void> flushed = invitationWriter != null ?
+            invitationWriter.flushAsync() : CompletableFuture.completedFuture(null);
+        databaseReload = flushed.thenApplyAsync(ignored -> {
+            if (old != null) {
+                old.disconnect();
+            }
+            InviteDatabase fresh = new InviteDatabase(this, newType);
+            fresh.connect();
+            return fresh;
+        }, async).thenAcceptAsync(fresh -> {
+            database = fresh;
+            WhitelistManager.setDatabase(fresh);
+            if (whitelistCache != null) {
+                whitelistCache.setDatabase(fresh);
+            }
+            loadInviteGraph();
+            
+            // Outbox versions belong to the old database; restart so the channel follows the new one
+            if (invalidationBus != null) {
+                invalidationBus.close();
+                invalidationBus.start();
+            }
+            
+            getLogger().info("Database reloaded successfully!");
+        }, mainThread);
+        return databaseReload;
     }
 }
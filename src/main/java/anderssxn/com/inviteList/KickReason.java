@@ -0,0 +1,24 @@
+package anderssxn.com.inviteList;
+
+/**
+ * Why a login was rejected; each reason has its own pre-rendered kick message
+ */
+public enum KickReason {
+    NOT_INVITED("login.not-whitelisted"),
+    REVOKED("login.revoked"),           // Removed from the whitelist since the server started
+    RATE_LIMITED("login.rate-limited"),
+    STARTING_UP("login.starting-up");   // Cache still warming up and no answer in time
+    
+    private final String path;
+    
+    KickReason(String path) {
+        this.path = path;
+    }
+    
+    /**
+     * Path of the message in messages.yml
+     */
+    public String getPath() {
+        return path;
+    }
+}
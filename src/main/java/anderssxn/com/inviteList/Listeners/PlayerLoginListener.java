@@ -1,9 +1,10 @@
 package anderssxn.com.inviteList.Listeners;
 
 import anderssxn.com.inviteList.InviteList;
+import anderssxn.com.inviteList.KickReason;
 import anderssxn.com.inviteList.MessagesManager;
 import anderssxn.com.inviteList.Subroutines.WhitelistManager;
-import net.kyori.adventure.text.serializer.legacy.LegacyComponentSerializer;
+import anderssxn.com.inviteList.metrics.Metrics;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
@@ -12,23 +13,50 @@ import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
 import java.util.UUID;
 
 public class PlayerLoginListener implements Listener {
-
+    
+    // Both live as long as the plugin (messages reload in place)
+    private final MessagesManager messages;
+    private final Metrics metrics;
+    
+    public PlayerLoginListener(InviteList plugin) {
+        this.messages = plugin.getMessagesManager();
+        this.metrics = plugin.getMetrics();
+    }
+    
     @EventHandler(priority = EventPriority.HIGHEST)
     public void onAsyncPreLogin(AsyncPlayerPreLoginEvent event) {
+        long start = System.nanoTime();
         UUID playerUUID = event.getUniqueId();
         
         // Note: Can't check isOp() here since player isn't loaded yet
         // Ops will be allowed by Minecraft's own whitelist system
         
         // Check whitelist using ultra-fast cache
-        if (WhitelistManager.isWhitelisted(playerUUID) != 0) {
-            // Not whitelisted - kick player
-            MessagesManager msg = InviteList.getInstance().getMessagesManager();
+        int result = WhitelistManager.checkLogin(playerUUID, event.getAddress());
+        if (result != 0) {
+            KickReason reason;
+            Metrics.Decision decision;
+            if (result == 1) {
+                reason = WhitelistManager.wasRevoked(playerUUID) ? KickReason.REVOKED : KickReason.NOT_INVITED;
+                decision = Metrics.Decision.DENY;
+            } else if (result == 4) {
+                reason = KickReason.RATE_LIMITED;
+                decision = Metrics.Decision.THROTTLED;
+            } else {
+                // Cache still warming up and no answer in time - ask them to retry instead of claiming they aren't invited
+                reason = KickReason.STARTING_UP;
+                decision = Metrics.Decision.ERROR;
+            }
             
-            // Use modern Adventure API Component for kick message
-            event.disallow(AsyncPlayerPreLoginEvent.Result.KICK_WHITELIST, 
-                msg.parseMessage(msg.getRaw("login.not-whitelisted")));
+            // Pre-rendered Adventure Component, nothing is parsed per rejected login
+            event.disallow(AsyncPlayerPreLoginEvent.Result.KICK_WHITELIST, messages.getKickMessage(reason));
+            metrics.recordLogin(decision, start);
+            return;
         }
+        
         // If whitelisted, event.allow() is called automatically
+        // Keep the name index current in case the player changed their name
+        WhitelistManager.recordLoginName(playerUUID, event.getName());
+        metrics.recordLogin(Metrics.Decision.ALLOW, start);
     }
 }
@@ -0,0 +1,218 @@
+package anderssxn.com.inviteList;
+
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.TextComponent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A message parsed once into a Component, with its {placeholder} slots located in the text
+ *
+ * Rendering a message without placeholders returns the cached Component as is. With placeholders,
+ * only the text nodes that hold a slot are rebuilt, by plain concatenation; everything else is shared
+ * (Components are immutable). Values are inserted as literal text in the style around the slot, so
+ * a player name can't inject color codes or tags.
+ *
+ * A placeholder the parser moved out of the plain text (e.g. into a click or hover event) can't be
+ * filled that way; such templates fall back to replacing in the raw string and parsing on every render.
+ */
+public final class MessageTemplate {
+    
+    private static final Pattern SLOT = Pattern.compile("\\{[A-Za-z0-9_-]+}");
+    
+    private final String raw;
+    private final Component component;
+    private final String[] slots;
+    private final Node root; // Null when the message has no placeholders
+    private final Function<String, Component> parser; // Non-null only for the raw-string fallback
+    
+    private MessageTemplate(String raw, Component component, String[] slots, Node root, Function<String, Component> parser) {
+        this.raw = raw;
+        this.component = component;
+        this.slots = slots;
+        this.root = root;
+        this.parser = parser;
+    }
+    
+    /**
+     * Parse a message and locate its placeholders
+     * @param parser Turns a raw message into a Component (legacy codes, MiniMessage, ...)
+     */
+    public static MessageTemplate compile(String raw, Function<String, Component> parser) {
+        Component component = parser.apply(raw);
+        
+        int expected = 0;
+        Matcher matcher = SLOT.matcher(raw);
+        while (matcher.find()) {
+            expected++;
+        }
+        if (expected == 0) {
+            return new MessageTemplate(raw, component, new String[0], null, null);
+        }
+        
+        List<String> slots = new ArrayList<>();
+        int[] found = new int[1];
+        Node root = Node.build(component, slots, found);
+        if (found[0] != expected) {
+            // Some placeholder didn't survive as plain text; keep the old replace-then-parse behavior
+            return new MessageTemplate(raw, component, slots.toArray(new String[0]), null, parser);
+        }
+        return new MessageTemplate(raw, component, slots.toArray(new String[0]), root, null);
+    }
+    
+    /**
+     * Render with placeholder values
+     * @param replacements Pairs of placeholder and value, e.g. "{player}", "Notch"; slots without a value are left as is
+     */
+    public Component render(String... replacements) {
+        if (parser != null) {
+            String message = raw;
+            if (replacements.length % 2 == 0) {
+                for (int i = 0; i < replacements.length; i += 2) {
+                    message = message.replace(replacements[i], replacements[i + 1]);
+                }
+            }
+            return parser.apply(message);
+        }
+        if (root == null || replacements.length == 0 || replacements.length % 2 != 0) {
+            return component;
+        }
+        
+        String[] values = new String[slots.length];
+        for (int slot = 0; slot < slots.length; slot++) {
+            for (int i = 0; i < replacements.length; i += 2) {
+                if (slots[slot].equals(replacements[i])) {
+                    values[slot] = replacements[i + 1];
+                    break;
+                }
+            }
+        }
+        return root.render(values, slots);
+    }
+    
+    /**
+     * The parsed message with placeholders left in
+     */
+    public Component component() {
+        return component;
+    }
+    
+    /**
+     * Placeholders in the message, including braces, e.g. "{player}"
+     */
+    public List<String> slots() {
+        return List.of(slots);
+    }
+    
+    public String raw() {
+        return raw;
+    }
+    
+    /**
+     * A component in the parsed tree, with the slot positions of its text and of its children
+     */
+    private static final class Node {
+        private final Component component;
+        private final Object[] parts;  // Literal Strings and Integer slot indexes, or null if the text has no slot
+        private final Node[] children; // Null if no child (or grandchild) has a slot
+        
+        private Node(Component component, Object[] parts, Node[] children) {
+            this.component = component;
+            this.parts = parts;
+            this.children = children;
+        }
+        
+        /**
+         * @return the node, or null if neither it nor its children contain a slot
+         */
+        static Node build(Component component, List<String> slots, int[] found) {
+            Object[] parts = null;
+            if (component instanceof TextComponent text) {
+                parts = split(text.content(), slots, found);
+            }
+            
+            Node[] children = null;
+            List<Component> childComponents = component.children();
+            for (int i = 0; i < childComponents.size(); i++) {
+                Node child = build(childComponents.get(i), slots, found);
+                if (child != null) {
+                    if (children == null) {
+                        children = new Node[childComponents.size()];
+                    }
+                    children[i] = child;
+                }
+            }
+            if (children != null) {
+                // Children without slots are reused unchanged
+                for (int i = 0; i < children.length; i++) {
+                    if (children[i] == null) {
+                        children[i] = new Node(childComponents.get(i), null, null);
+                    }
+                }
+            }
+            
+            return parts == null && children == null ? null : new Node(component, parts, children);
+        }
+        
+        private static Object[] split(String content, List<String> slots, int[] found) {
+            Matcher matcher = SLOT.matcher(content);
+            List<Object> parts = null;
+            int last = 0;
+            while (matcher.find()) {
+                if (parts == null) {
+                    parts = new ArrayList<>();
+                }
+                if (matcher.start() > last) {
+                    parts.add(content.substring(last, matcher.start()));
+                }
+                
+                String slot = matcher.group();
+                int index = slots.indexOf(slot);
+                if (index < 0) {
+                    index = slots.size();
+                    slots.add(slot);
+                }
+                parts.add(index);
+                found[0]++;
+                last = matcher.end();
+            }
+            if (parts == null) {
+                return null;
+            }
+            if (last < content.length()) {
+                parts.add(content.substring(last));
+            }
+            return parts.toArray();
+        }
+        
+        Component render(String[] values, String[] slots) {
+            Component result = component;
+            
+            if (parts != null) {
+                StringBuilder content = new StringBuilder();
+                for (Object part : parts) {
+                    if (part instanceof String literal) {
+                        content.append(literal);
+                    } else {
+                        int slot = (Integer) part;
+                        content.append(values[slot] != null ? values[slot] : slots[slot]);
+                    }
+                }
+                result = ((TextComponent) result).content(content.toString());
+            }
+            
+            if (children != null) {
+                List<Component> rendered = new ArrayList<>(children.length);
+                for (Node child : children) {
+                    rendered.add(child.parts == null && child.children == null ? child.component : child.render(values, slots));
+                }
+                result = result.children(rendered);
+            }
+            return result;
+        }
+    }
+}
@@ -10,6 +10,9 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -22,11 +25,27 @@ public class MessagesManager {
     private final LegacyComponentSerializer legacySerializer = LegacyComponentSerializer.legacyAmpersand();
     private static final Pattern HEX_PATTERN = Pattern.compile("&#([A-Fa-f0-9]{6})");
     
+    // Every message parsed once at load/reload; swapped as a whole so readers never see a partial set
+    private volatile Map<String, MessageTemplate> templates = Map.of();
+    
+    // Kick messages built once per reason, so rejecting a flood of logins does no lookups or parsing
+    private volatile Map<KickReason, Component> kickMessages = Map.of();
+    
     public MessagesManager(InviteList plugin) {
         this.plugin = plugin;
         loadMessages();
     }
     
+    /**
+     * Use already-loaded messages, without a plugin or a messages.yml on disk (e.g. benchmarks)
+     * {@link #reloadMessages()} is not available on such an instance
+     */
+    public MessagesManager(FileConfiguration messages) {
+        this.plugin = null;
+        this.messages = messages;
+        compileTemplates();
+    }
+    
     public void loadMessages() {
         messagesFile = new File(plugin.getDataFolder(), "messages.yml");
         
@@ -38,6 +57,27 @@ public class MessagesManager {
         
         // Auto-merge missing keys from default messages
         mergeDefaults();
+        
+        compileTemplates();
+    }
+    
+    private void compileTemplates() {
+        Map<String, MessageTemplate> compiled = new HashMap<>();
+        for (String key : messages.getKeys(true)) {
+            if (messages.isString(key)) {
+                compiled.put(key, MessageTemplate.compile(messages.getString(key), this::parseMessage));
+            }
+        }
+        templates = Map.copyOf(compiled);
+        
+        Map<KickReason, Component> kicks = new EnumMap<>(KickReason.class);
+        for (KickReason reason : KickReason.values()) {
+            // A variant left empty falls back to the generic "not whitelisted" message
+            String raw = messages.getString(reason.getPath(), "");
+            MessageTemplate template = compiled.get(raw.isEmpty() ? KickReason.NOT_INVITED.getPath() : reason.getPath());
+            kicks.put(reason, template != null ? template.component() : parseMessage("Missing message: " + reason.getPath()));
+        }
+        kickMessages = kicks;
     }
     
     private void mergeDefaults() {
@@ -74,17 +114,30 @@ public class MessagesManager {
         return messages.getString(path, "Missing message: " + path);
     }
     
+    /**
+     * Get a message from its precompiled template (no parsing)
+     * @param replacements Pairs of placeholder and value, e.g. "{player}", "Notch"
+     */
     public Component get(String path, String... replacements) {
-        String message = getRaw(path);
-        
-        // Apply replacements
-        if (replacements.length > 0 && replacements.length % 2 == 0) {
-            for (int i = 0; i < replacements.length; i += 2) {
-                message = message.replace(replacements[i], replacements[i + 1]);
-            }
+        MessageTemplate template = templates.get(path);
+        if (template == null) {
+            return parseMessage("Missing message: " + path);
         }
-        
-        return parseMessage(message);
+        return template.render(replacements);
+    }
+    
+    /**
+     * Pre-rendered kick message for a rejected login (rebuilt only on reload)
+     */
+    public Component getKickMessage(KickReason reason) {
+        return kickMessages.get(reason);
+    }
+    
+    /**
+     * @return the compiled message, or null if the path doesn't exist
+     */
+    public MessageTemplate getTemplate(String path) {
+        return templates.get(path);
     }
     
     public Component parseMessage(String message) {
@@ -0,0 +1,163 @@
+package anderssxn.com.inviteList.Subroutines;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-IP token bucket for rejected logins
+ *
+ * Every rejected login takes a token from its IP's bucket; once the bucket is empty, further
+ * logins from that IP are turned away before any whitelist lookup until it refills. Accepted
+ * logins cost nothing, so whitelisted players are only affected if their IP is also flooding.
+ *
+ * IPv4 addresses get a bucket each; IPv6 addresses share one per /64 prefix, since a single host
+ * usually owns a whole /64. Buckets live in fixed arrays split over 64 independently locked stripes;
+ * the key's hash only picks the stripe and slots, the full key is stored and compared. A full set of
+ * slots evicts the least recently used bucket. Nothing is allocated per login.
+ */
+public final class LoginThrottle {
+    
+    private static final int STRIPES = 64;
+    private static final int WAYS = 4;
+    private static final long TOKEN = 1_000_000L; // Tokens are kept in millionths
+    
+    private static final byte FREE = 0;
+    private static final byte IPV4 = 4;
+    private static final byte IPV6 = 6;
+    
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final int slotMask;
+    private final long capacity;
+    private final double refillPerNano;
+    private final LongAdder throttled = new LongAdder();
+    
+    /**
+     * @param burst Rejected logins an IP may make in a row
+     * @param perSecond Rejected logins an IP regains per second
+     * @param maxTrackedAddresses Upper bound on IPs tracked at once
+     */
+    public LoginThrottle(int burst, double perSecond, int maxTrackedAddresses) {
+        int perStripe = Integer.highestOneBit(Math.max(WAYS, (maxTrackedAddresses + STRIPES - 1) / STRIPES) - 1) << 1;
+        this.slotMask = perStripe - 1;
+        this.capacity = Math.max(1, burst) * TOKEN;
+        this.refillPerNano = Math.max(0, perSecond) * TOKEN / 1_000_000_000.0;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(perStripe);
+        }
+    }
+    
+    /**
+     * @return true if the address has used up its rejected logins (counted as a throttled login)
+     */
+    public boolean isThrottled(InetAddress address) {
+        byte family = family(address);
+        long key = key(address);
+        int hash = mix(key, family);
+        Stripe stripe = stripes[hash & (STRIPES - 1)];
+        int base = hash >>> 6;
+        long now = System.nanoTime();
+        
+        synchronized (stripe) {
+            for (int i = 0; i < WAYS; i++) {
+                int slot = (base + i) & slotMask;
+                if (stripe.family[slot] == family && stripe.keys[slot] == key) {
+                    if (refill(stripe, slot, now) < TOKEN) {
+                        throttled.increment();
+                        return true;
+                    }
+                    return false;
+                }
+            }
+        }
+        return false; // Unknown address: full bucket
+    }
+    
+    /**
+     * Take a token for a rejected login
+     */
+    public void recordRejected(InetAddress address) {
+        byte family = family(address);
+        long key = key(address);
+        int hash = mix(key, family);
+        Stripe stripe = stripes[hash & (STRIPES - 1)];
+        int base = hash >>> 6;
+        long now = System.nanoTime();
+        
+        synchronized (stripe) {
+            // This address's bucket, else a free slot, else the least recently used one
+            int target = -1;
+            long oldest = Long.MAX_VALUE;
+            for (int i = 0; i < WAYS; i++) {
+                int slot = (base + i) & slotMask;
+                if (stripe.family[slot] == family && stripe.keys[slot] == key) {
+                    target = slot;
+                    break;
+                }
+                long age = stripe.family[slot] != FREE ? stripe.updated[slot] - now : Long.MIN_VALUE;
+                if (age < oldest) {
+                    oldest = age;
+                    target = slot;
+                }
+            }
+            
+            if (stripe.family[target] != family || stripe.keys[target] != key) {
+                stripe.family[target] = family;
+                stripe.keys[target] = key;
+                stripe.tokens[target] = capacity;
+                stripe.updated[target] = now;
+            }
+            stripe.tokens[target] = Math.max(0, refill(stripe, target, now) - TOKEN);
+        }
+    }
+    
+    /**
+     * Logins turned away because their IP was throttled
+     */
+    public long getThrottledCount() {
+        return throttled.sum();
+    }
+    
+    private long refill(Stripe stripe, int slot, long now) {
+        long elapsed = now - stripe.updated[slot];
+        long tokens = Math.min(capacity, stripe.tokens[slot] + (long) (elapsed * refillPerNano));
+        stripe.tokens[slot] = tokens;
+        stripe.updated[slot] = now;
+        return tokens;
+    }
+    
+    private static byte family(InetAddress address) {
+        return address instanceof Inet4Address ? IPV4 : IPV6;
+    }
+    
+    /**
+     * The IPv4 address, or the first 64 bits of an IPv6 address
+     */
+    private static long key(InetAddress address) {
+        byte[] bytes = address.getAddress();
+        long key = 0;
+        for (int i = 0; i < Math.min(8, bytes.length); i++) {
+            key = (key << 8) | (bytes[i] & 0xFF);
+        }
+        return key;
+    }
+    
+    private static int mix(long key, byte family) {
+        long h = (key ^ family) * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+    
+    private static final class Stripe {
+        private final long[] keys;
+        private final byte[] family; // FREE, IPV4 or IPV6
+        private final long[] tokens;
+        private final long[] updated; // System.nanoTime() of the last refill
+        
+        private Stripe(int slots) {
+            this.keys = new long[slots];
+            this.family = new byte[slots];
+            this.tokens = new long[slots];
+            this.updated = new long[slots];
+        }
+    }
+}
@@ -1,17 +1,27 @@
 package anderssxn.com.inviteList.Subroutines;
 
 import anderssxn.com.inviteList.InviteList;
+import anderssxn.com.inviteList.cache.InviteGraph;
+import anderssxn.com.inviteList.cache.PlayerNameIndex;
 import anderssxn.com.inviteList.cache.WhitelistCache;
 import anderssxn.com.inviteList.database.InviteDatabase;
-import org.bukkit.OfflinePlayer;
-import org.bukkit.entity.Player;
+import anderssxn.com.inviteList.database.Invitation;
+import anderssxn.com.inviteList.database.InvitationWriter;
+import anderssxn.com.inviteList.sync.InvalidationBus;
 
+import java.net.InetAddress;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 public class WhitelistManager {
     
     private static InviteDatabase database;
     private static WhitelistCache cache;
+    private static InvalidationBus bus;
+    private static LoginThrottle throttle;
+    private static InviteGraph graph;
+    private static InvitationWriter invitationWriter;
     
     public static void setDatabase(InviteDatabase db) {
         database = db;
@@ -20,56 +30,146 @@ public class WhitelistManager {
     public static void setCache(WhitelistCache c) {
         cache = c;
     }
-
-    public static int addToWhitelist(Player inviter, OfflinePlayer invitee) {
-        UUID inviteeUUID = invitee.getUniqueId();
-        UUID inviterUUID = inviter != null ? inviter.getUniqueId() : null;
-        String inviterName = inviter != null ? inviter.getName() : "Console";
-        
-        try {
-            // Check if already whitelisted
-            if (database.isWhitelisted(inviteeUUID).join()) {
-                return 1; // Already whitelisted
+    
+    public static void setInvalidationBus(InvalidationBus b) {
+        bus = b;
+    }
+    
+    public static void setLoginThrottle(LoginThrottle t) {
+        throttle = t;
+    }
+    
+    public static void setInviteGraph(InviteGraph g) {
+        graph = g;
+    }
+    
+    public static void setInvitationWriter(InvitationWriter w) {
+        invitationWriter = w;
+    }
+    
+    /**
+     * Whitelist a player without blocking the calling thread
+     * @return future of 0 = success, 1 = already whitelisted, 3 = error
+     */
+    public static CompletableFuture<Integer> addToWhitelistAsync(UUID inviterUUID, String inviterName, UUID inviteeUUID, String inviteeName) {
+        // Single transaction: the conditional insert doubles as the "already whitelisted" check
+        return database.addToWhitelist(inviteeUUID, inviteeName, inviterUUID, inviterName).handle((added, ex) -> {
+            if (ex != null) {
+                InviteList.getInstance().getLogger().warning("Failed to whitelist " + inviteeName + ": " + ex.getMessage());
+                return 3; // Error
             }
             
-            // Add to whitelist
-            boolean success = database.addToWhitelist(
-                inviteeUUID, 
-                invitee.getName(), 
-                inviterUUID, 
-                inviterName
-            ).join();
+            if (!added) {
+                return 1; // Already whitelisted
+            }
             
             // Update cache immediately
-            if (success && cache != null) {
+            if (cache != null) {
                 cache.addToCache(inviteeUUID);
+                if (cache.isNameIndexEnabled()) {
+                    cache.getNameIndex().update(inviteeUUID, inviteeName);
+                }
+            }
+            // Invitation history is written behind, off the invite's critical path
+            if (inviterUUID != null) {
+                Invitation invitation = new Invitation(inviterUUID, inviterName, inviteeUUID, inviteeName, System.currentTimeMillis());
+                if (invitationWriter != null) {
+                    invitationWriter.add(invitation);
+                }
+                if (graph != null) {
+                    graph.add(invitation);
+                }
             }
             
-            return success ? 0 : 3; // 0 = success, 3 = error
+            // Tell the other servers right away instead of waiting for their next refresh
+            if (bus != null) {
+                bus.publish(inviteeUUID, true, inviteeName);
+            }
             
-        } catch (Exception e) {
-            e.printStackTrace();
-            return 3;
+            return 0; // Success
+        });
+    }
+    
+    /**
+     * Login gate: per-IP throttle in front of the whitelist lookup
+     * @return 0 = whitelisted, 1 = not whitelisted, 2 = error, 3 = unavailable (cache warming up),
+     *         4 = rate limited (too many rejected logins from this IP)
+     */
+    public static int checkLogin(UUID playerUUID, InetAddress address) {
+        if (throttle != null && address != null && throttle.isThrottled(address)) {
+            return 4; // Rate limited
+        }
+        
+        int result = isWhitelisted(playerUUID);
+        if (result == 1 && throttle != null && address != null) {
+            throttle.recordRejected(address);
         }
+        return result;
     }
-
+    
     public static int isWhitelisted(UUID playerUUID) {
-        // Use cache for instant lookup if available
-        if (cache != null && cache.isLoaded()) {
-            boolean whitelisted = cache.isWhitelisted(playerUUID);
-            return whitelisted ? 0 : 1; // 0 = whitelisted, 1 = not whitelisted
+        if (cache == null) {
+            return 2; // Error
         }
         
-        // Fallback to database if cache not ready
-        try {
-            boolean whitelisted = database.isWhitelisted(playerUUID).join();
-            return whitelisted ? 0 : 1;
-        } catch (Exception e) {
-            e.printStackTrace();
-            return 2; // Error
+        // Cache answers instantly once loaded; while warming up it applies the cold-lookup policy
+        // with a bounded deadline instead of blocking on the database
+        switch (cache.check(playerUUID)) {
+            case WHITELISTED:
+                return 0;
+            case NOT_WHITELISTED:
+                return 1;
+            default:
+                return 3; // Unavailable (cache warming up)
+        }
+    }
+    
+    /**
+     * Whether a player who isn't whitelisted was removed while the server was running
+     */
+    public static boolean wasRevoked(UUID playerUUID) {
+        return cache != null && cache.wasRevoked(playerUUID);
+    }
+    
+    /**
+     * Keep the name index (and the stored name) current when a whitelisted player logs in
+     * The database is only written for a rename: the loaded index held a different name for this player
+     */
+    public static void recordLoginName(UUID playerUUID, String name) {
+        if (cache == null || name == null || !cache.isNameIndexEnabled()) {
+            return;
+        }
+        
+        PlayerNameIndex index = cache.getNameIndex();
+        String previous = index.getName(playerUUID);
+        if (index.update(playerUUID, name) && index.isLoaded() && previous != null) {
+            database.updatePlayerName(playerUUID, name);
         }
     }
     
+    /**
+     * Resolve a player name from the plugin's own index (no disk or network access)
+     * @return the player or null if the name isn't known
+     */
+    public static PlayerNameIndex.Entry findPlayer(String name) {
+        return cache != null ? cache.getNameIndex().find(name) : null;
+    }
+    
+    /**
+     * Names starting with the given prefix, for tab-completion
+     */
+    public static List<String> completeName(String prefix, int limit) {
+        return cache != null ? cache.getNameIndex().complete(prefix, limit) : List.of();
+    }
+    
+    /**
+     * Last known name of a player from the plugin's own index
+     * @return the name or null if unknown
+     */
+    public static String resolveUUID(UUID playerUUID) {
+        return cache != null ? cache.getNameIndex().getName(playerUUID) : null;
+    }
+    
     public static boolean removeFromWhitelist(UUID playerUUID) {
         try {
             boolean removed = database.removeFromWhitelist(playerUUID).join();
@@ -78,6 +178,9 @@ public class WhitelistManager {
             if (removed && cache != null) {
                 cache.removeFromCache(playerUUID);
             }
+            if (removed && bus != null) {
+                bus.publish(playerUUID, false, null);
+            }
             
             return removed;
         } catch (Exception e) {
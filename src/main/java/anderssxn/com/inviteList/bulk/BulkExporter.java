@@ -0,0 +1,100 @@
+package anderssxn.com.inviteList.bulk;
+
+import anderssxn.com.inviteList.InviteList;
+import anderssxn.com.inviteList.database.InviteDatabase;
+import anderssxn.com.inviteList.database.UUIDCodec;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.UUID;
+
+/**
+ * Streams the whitelist table into a file
+ *
+ * Reads in primary-key order one chunk at a time ({@code WHERE uuid > ? LIMIT ?}), so neither the
+ * plugin nor the JDBC driver buffers the whole table and the connection is released between chunks.
+ * Output goes to a temporary file that replaces the target only once the export is complete.
+ */
+public class BulkExporter {
+    
+    private final InviteList plugin;
+    private final InviteDatabase database;
+    private final int chunkSize;
+    private final int progressEvery;
+    
+    public BulkExporter(InviteList plugin, InviteDatabase database) {
+        this.plugin = plugin;
+        this.database = database;
+        this.chunkSize = Math.max(1, plugin.getConfig().getInt("bulk.commit-every", 10000));
+        this.progressEvery = Math.max(1, plugin.getConfig().getInt("bulk.progress-every", 50000));
+    }
+    
+    /**
+     * Export the whitelist (blocking, call from an async task)
+     */
+    public TransferResult exportFile(Path file, TransferFormat format) throws IOException, SQLException {
+        String sql = "SELECT uuid, name, invited_by, invited_at FROM whitelist WHERE uuid > ? ORDER BY uuid LIMIT ?";
+        
+        long start = System.currentTimeMillis();
+        long written = 0;
+        long skipped = 0;
+        long nextProgress = progressEvery;
+        byte[] lastUuid = new byte[0];
+        
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (BufferedWriter out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8);
+             TransferFormat.RecordWriter writer = format.writer(out)) {
+            
+            int rows;
+            do {
+                rows = 0;
+                try (Connection conn = database.getReadConnection();
+                     PreparedStatement stmt = conn.prepareStatement(sql)) {
+                    
+                    stmt.setBytes(1, lastUuid);
+                    stmt.setInt(2, chunkSize);
+                    stmt.setFetchSize(chunkSize);
+                    
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        while (rs.next()) {
+                            rows++;
+                            lastUuid = rs.getBytes("uuid");
+                            
+                            UUID uuid = UUIDCodec.fromBytes(lastUuid);
+                            if (uuid == null) {
+                                skipped++;
+                                continue;
+                            }
+                            
+                            UUID invitedBy = UUIDCodec.fromBytes(rs.getBytes("invited_by"));
+                            writer.write(new WhitelistRecord(uuid, rs.getString("name"),
+                                invitedBy != null ? invitedBy.toString() : "CONSOLE", rs.getLong("invited_at")));
+                            written++;
+                        }
+                    }
+                }
+                
+                if (written >= nextProgress) {
+                    nextProgress = (written / progressEvery + 1) * progressEvery;
+                    long elapsed = Math.max(1, System.currentTimeMillis() - start);
+                    plugin.getLogger().info("[Export] " + written + " rows written (" + (written * 1000L / elapsed) + " rows/s)");
+                }
+            } while (rows == chunkSize);
+            
+        } catch (IOException | SQLException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        return new TransferResult(written, 0, skipped, 0, System.currentTimeMillis() - start);
+    }
+}
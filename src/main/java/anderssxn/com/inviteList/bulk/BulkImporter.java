@@ -0,0 +1,181 @@
+package anderssxn.com.inviteList.bulk;
+
+import anderssxn.com.inviteList.InviteList;
+import anderssxn.com.inviteList.database.DatabaseType;
+import anderssxn.com.inviteList.database.InviteDatabase;
+import anderssxn.com.inviteList.database.UUIDCodec;
+import anderssxn.com.inviteList.database.WhitelistChange;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.UUID;
+import java.util.logging.Level;
+
+/**
+ * Streams a whitelist file into the database with batched inserts
+ *
+ * Rows are sent in JDBC batches of {@code bulk.batch-size} and committed every {@code bulk.commit-every} rows.
+ * The connection is handed back to the pool between commits, so regular queries (logins, /invite)
+ * keep running during a long import. Memory use is one batch, whatever the file size.
+ * Players that are already whitelisted are left untouched.
+ */
+public class BulkImporter {
+    
+    private static final int MAX_NAME_LENGTH = 16;
+    private static final int MAX_LOGGED_ERRORS = 10;
+    
+    private final InviteList plugin;
+    private final InviteDatabase database;
+    private final int batchSize;
+    private final int commitEvery;
+    private final int progressEvery;
+    
+    // Rows accepted without a per-row update count (rewritten MySQL batches)
+    private long uncounted;
+    
+    public BulkImporter(InviteList plugin, InviteDatabase database) {
+        this.plugin = plugin;
+        this.database = database;
+        this.batchSize = Math.max(1, plugin.getConfig().getInt("bulk.batch-size", 1000));
+        this.commitEvery = Math.max(batchSize, plugin.getConfig().getInt("bulk.commit-every", 10000));
+        this.progressEvery = Math.max(1, plugin.getConfig().getInt("bulk.progress-every", 50000));
+    }
+    
+    /**
+     * Import a file (blocking, call from an async task)
+     */
+    public TransferResult importFile(Path file, TransferFormat format) throws IOException, SQLException {
+        String insertSql = database.getType() == DatabaseType.SQLITE ?
+            "INSERT OR IGNORE INTO whitelist (uuid, name, invited_by, invited_at) VALUES (?, ?, ?, ?)" :
+            "INSERT IGNORE INTO whitelist (uuid, name, invited_by, invited_at) VALUES (?, ?, ?, ?)";
+        String changeSql = "INSERT INTO whitelist_changes (uuid, action, changed_at) VALUES (?, ?, ?)";
+        
+        long start = System.currentTimeMillis();
+        long processed = 0;
+        long inserted = 0;
+        long skipped = 0;
+        long nextProgress = progressEvery;
+        uncounted = 0;
+        
+        // UUIDs of the batch in flight, so the change log only gets rows that were actually inserted
+        UUID[] batch = new UUID[batchSize];
+        
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+             TransferFormat.RecordReader reader = format.reader(in)) {
+            
+            boolean endOfFile = false;
+            while (!endOfFile) {
+                // One transaction per chunk; the connection goes back to the pool afterwards
+                try (Connection conn = database.getConnection()) {
+                    conn.setAutoCommit(false);
+                    try (PreparedStatement insert = conn.prepareStatement(insertSql);
+                         PreparedStatement change = conn.prepareStatement(changeSql)) {
+                        
+                        int inChunk = 0;
+                        int inBatch = 0;
+                        while (inChunk < commitEvery) {
+                            WhitelistRecord record;
+                            try {
+                                record = reader.next();
+                            } catch (IllegalArgumentException e) {
+                                skipped++;
+                                if (skipped <= MAX_LOGGED_ERRORS) {
+                                    plugin.getLogger().warning("Skipping malformed record in " + file.getFileName() + ": " + e.getMessage());
+                                }
+                                continue;
+                            }
+                            
+                            if (record == null) {
+                                endOfFile = true;
+                                break;
+                            }
+                            if (record.name().length() > MAX_NAME_LENGTH) {
+                                skipped++;
+                                continue;
+                            }
+                            
+                            insert.setBytes(1, UUIDCodec.toBytes(record.uuid()));
+                            insert.setString(2, record.name());
+                            insert.setBytes(3, UUIDCodec.parse(record.invitedBy())); // "CONSOLE" becomes NULL
+                            insert.setLong(4, record.invitedAt());
+                            insert.addBatch();
+                            batch[inBatch++] = record.uuid();
+                            inChunk++;
+                            processed++;
+                            
+                            if (inBatch == batchSize) {
+                                inserted += flush(insert, change, batch, inBatch);
+                                inBatch = 0;
+                            }
+                        }
+                        
+                        if (inBatch > 0) {
+                            inserted += flush(insert, change, batch, inBatch);
+                        }
+                        conn.commit();
+                        
+                    } catch (SQLException | IOException | RuntimeException e) {
+                        conn.rollback();
+                        throw e;
+                    } finally {
+                        conn.setAutoCommit(true);
+                    }
+                }
+                
+                if (processed >= nextProgress) {
+                    nextProgress = (processed / progressEvery + 1) * progressEvery;
+                    long elapsed = Math.max(1, System.currentTimeMillis() - start);
+                    plugin.getLogger().info("[Import] " + processed + " rows processed, " + inserted + " added (" +
+                        (processed * 1000L / elapsed) + " rows/s)");
+                }
+            }
+        }
+        
+        if (skipped > MAX_LOGGED_ERRORS) {
+            plugin.getLogger().warning("[Import] " + skipped + " malformed records skipped in total");
+        }
+        if (uncounted > 0) {
+            plugin.getLogger().info("[Import] " + uncounted + " rows were sent as rewritten batches; " +
+                "the driver doesn't report which of them were new");
+        }
+        return new TransferResult(processed, inserted, skipped, uncounted, System.currentTimeMillis() - start);
+    }
+    
+    /**
+     * Send one batch and log the rows that were inserted to the change log
+     * Rows reported as SUCCESS_NO_INFO are counted in {@link #uncounted} instead of the return value
+     * @return number of players known to be added
+     */
+    private int flush(PreparedStatement insert, PreparedStatement change, UUID[] batch, int size) throws SQLException {
+        int[] counts = insert.executeBatch();
+        long now = System.currentTimeMillis();
+        int added = 0;
+        
+        for (int i = 0; i < size; i++) {
+            // Drivers that rewrite batches report SUCCESS_NO_INFO; an extra 'A' entry is harmless for delta sync
+            int count = i < counts.length ? counts[i] : Statement.SUCCESS_NO_INFO;
+            if (count > 0 || count == Statement.SUCCESS_NO_INFO) {
+                change.setBytes(1, UUIDCodec.toBytes(batch[i]));
+                change.setString(2, String.valueOf(WhitelistChange.ADDED));
+                change.setLong(3, now);
+                change.addBatch();
+                if (count > 0) {
+                    added++;
+                } else {
+                    uncounted++;
+                }
+            }
+            batch[i] = null;
+        }
+        
+        change.executeBatch();
+        return added;
+    }
+}
@@ -0,0 +1,301 @@
+package anderssxn.com.inviteList.bulk;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.UUID;
+
+/**
+ * File formats supported by /invitelist import and export
+ * All readers and writers stream one record at a time, so memory use doesn't depend on file size
+ *
+ * CSV:     uuid,name,invited_by,invited_at (header optional, last two columns optional)
+ * NDJSON:  one {"uuid","name","invited_by","invited_at"} object per line
+ * VANILLA: the server's whitelist.json, a JSON array of {"uuid","name"}
+ */
+public enum TransferFormat {
+    CSV,
+    NDJSON,
+    VANILLA;
+    
+    /**
+     * Streams records out of a file
+     */
+    public interface RecordReader extends Closeable {
+        /**
+         * @return the next record, or null at end of file
+         * @throws IllegalArgumentException for a malformed record (the reader can continue after it)
+         */
+        WhitelistRecord next() throws IOException;
+    }
+    
+    /**
+     * Streams records into a file
+     */
+    public interface RecordWriter extends Closeable {
+        void write(WhitelistRecord record) throws IOException;
+    }
+    
+    /**
+     * Pick the format from a file name (.csv, .ndjson/.jsonl, .json)
+     * @return the format or null if the extension isn't recognised
+     */
+    public static TransferFormat fromFileName(String fileName) {
+        String lower = fileName.toLowerCase(Locale.ROOT);
+        if (lower.endsWith(".csv")) {
+            return CSV;
+        }
+        if (lower.endsWith(".ndjson") || lower.endsWith(".jsonl")) {
+            return NDJSON;
+        }
+        if (lower.endsWith(".json")) {
+            return VANILLA;
+        }
+        return null;
+    }
+    
+    public RecordReader reader(BufferedReader in) throws IOException {
+        switch (this) {
+            case CSV:
+                return new CsvReader(in);
+            case NDJSON:
+                return new JsonRecordReader(in, false);
+            default:
+                return new JsonRecordReader(in, true);
+        }
+    }
+    
+    public RecordWriter writer(BufferedWriter out) throws IOException {
+        switch (this) {
+            case CSV:
+                return new CsvWriter(out);
+            case NDJSON:
+                return new NdjsonWriter(out);
+            default:
+                return new VanillaWriter(out);
+        }
+    }
+    
+    private static WhitelistRecord toRecord(String uuid, String name, String invitedBy, String invitedAt) {
+        if (uuid == null || name == null || name.isEmpty()) {
+            throw new IllegalArgumentException("missing uuid or name");
+        }
+        long timestamp = invitedAt == null || invitedAt.isEmpty() ? System.currentTimeMillis() : Long.parseLong(invitedAt);
+        String inviter = invitedBy == null || invitedBy.isEmpty() ? "CONSOLE" : invitedBy;
+        return new WhitelistRecord(UUID.fromString(uuid), name, inviter, timestamp);
+    }
+    
+    private static final class CsvReader implements RecordReader {
+        private final BufferedReader in;
+        private boolean first = true;
+        
+        private CsvReader(BufferedReader in) {
+            this.in = in;
+        }
+        
+        @Override
+        public WhitelistRecord next() throws IOException {
+            String line;
+            while ((line = in.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                if (first) {
+                    first = false;
+                    if (line.toLowerCase(Locale.ROOT).startsWith("uuid")) {
+                        continue; // Header row
+                    }
+                }
+                
+                String[] columns = line.split(",", -1);
+                return toRecord(unquote(columns, 0), unquote(columns, 1), unquote(columns, 2), unquote(columns, 3));
+            }
+            return null;
+        }
+        
+        private static String unquote(String[] columns, int index) {
+            if (index >= columns.length) {
+                return null;
+            }
+            String value = columns[index].trim();
+            if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+                value = value.substring(1, value.length() - 1);
+            }
+            return value;
+        }
+        
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+    
+    private static final class JsonRecordReader implements RecordReader {
+        private final JsonReader json;
+        private final boolean array;
+        private boolean started;
+        
+        private JsonRecordReader(BufferedReader in, boolean array) {
+            this.json = new JsonReader(in);
+            this.array = array;
+            // Lenient mode lets one reader walk consecutive top-level objects (NDJSON)
+            this.json.setLenient(true);
+        }
+        
+        @Override
+        public WhitelistRecord next() throws IOException {
+            if (array && !started) {
+                json.beginArray();
+            }
+            started = true;
+            
+            if (array ? !json.hasNext() : json.peek() == JsonToken.END_DOCUMENT) {
+                return null;
+            }
+            
+            if (json.peek() != JsonToken.BEGIN_OBJECT) {
+                json.skipValue(); // Consume it so the next call moves on
+                throw new IllegalArgumentException("expected an object");
+            }
+            
+            String uuid = null;
+            String name = null;
+            String invitedBy = null;
+            String invitedAt = null;
+            
+            json.beginObject();
+            while (json.hasNext()) {
+                String field = json.nextName();
+                switch (field) {
+                    case "uuid":
+                        uuid = nextScalar();
+                        break;
+                    case "name":
+                        name = nextScalar();
+                        break;
+                    case "invited_by":
+                        invitedBy = nextScalar();
+                        break;
+                    case "invited_at":
+                        invitedAt = nextScalar();
+                        break;
+                    default:
+                        json.skipValue();
+                        break;
+                }
+            }
+            json.endObject();
+            
+            return toRecord(uuid, name, invitedBy, invitedAt);
+        }
+        
+        /**
+         * Read a string, number or boolean as text; anything else is skipped and reads as null
+         */
+        private String nextScalar() throws IOException {
+            switch (json.peek()) {
+                case STRING:
+                case NUMBER:
+                    return json.nextString();
+                case BOOLEAN:
+                    return String.valueOf(json.nextBoolean());
+                default:
+                    json.skipValue();
+                    return null;
+            }
+        }
+        
+        @Override
+        public void close() throws IOException {
+            json.close();
+        }
+    }
+    
+    private static final class CsvWriter implements RecordWriter {
+        private final BufferedWriter out;
+        
+        private CsvWriter(BufferedWriter out) throws IOException {
+            this.out = out;
+            out.write("uuid,name,invited_by,invited_at");
+            out.newLine();
+        }
+        
+        @Override
+        public void write(WhitelistRecord record) throws IOException {
+            out.write(record.uuid().toString());
+            out.write(',');
+            out.write(record.name());
+            out.write(',');
+            out.write(record.invitedBy());
+            out.write(',');
+            out.write(Long.toString(record.invitedAt()));
+            out.newLine();
+        }
+        
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+    
+    private static final class NdjsonWriter implements RecordWriter {
+        private final BufferedWriter out;
+        private final JsonWriter json;
+        
+        private NdjsonWriter(BufferedWriter out) {
+            this.out = out;
+            this.json = new JsonWriter(out);
+            // Lenient mode allows more than one top-level value
+            this.json.setLenient(true);
+        }
+        
+        @Override
+        public void write(WhitelistRecord record) throws IOException {
+            json.beginObject()
+                .name("uuid").value(record.uuid().toString())
+                .name("name").value(record.name())
+                .name("invited_by").value(record.invitedBy())
+                .name("invited_at").value(record.invitedAt())
+                .endObject();
+            json.flush();
+            out.newLine();
+        }
+        
+        @Override
+        public void close() throws IOException {
+            // Every record is already flushed; JsonWriter.close() would reject an empty document
+            out.close();
+        }
+    }
+    
+    private static final class VanillaWriter implements RecordWriter {
+        private final JsonWriter json;
+        
+        private VanillaWriter(BufferedWriter out) throws IOException {
+            this.json = new JsonWriter(out);
+            this.json.setIndent("  ");
+            this.json.beginArray();
+        }
+        
+        @Override
+        public void write(WhitelistRecord record) throws IOException {
+            json.beginObject()
+                .name("uuid").value(record.uuid().toString())
+                .name("name").value(record.name())
+                .endObject();
+        }
+        
+        @Override
+        public void close() throws IOException {
+            json.endArray();
+            json.close();
+        }
+    }
+}
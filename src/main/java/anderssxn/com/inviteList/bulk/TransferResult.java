@@ -0,0 +1,26 @@
+package anderssxn.com.inviteList.bulk;
+
+/**
+ * Outcome of an import or export
+ * @param processed Records read (import) or written (export)
+ * @param inserted Players newly whitelisted (import only)
+ * @param skipped Malformed records (import only)
+ * @param uncounted Rows the driver accepted without saying whether they were new, e.g. rewritten MySQL batches (import only)
+ * @param elapsedMillis Wall-clock duration
+ */
+public record TransferResult(long processed, long inserted, long skipped, long uncounted, long elapsedMillis) {
+    
+    /**
+     * Whether the import may have whitelisted anyone, i.e. whether the cache needs reloading
+     */
+    public boolean mayHaveInserted() {
+        return inserted > 0 || uncounted > 0;
+    }
+    
+    /**
+     * Records per second over the whole run
+     */
+    public long rowsPerSecond() {
+        return elapsedMillis > 0 ? processed * 1000L / elapsedMillis : processed;
+    }
+}
@@ -0,0 +1,13 @@
+package anderssxn.com.inviteList.bulk;
+
+import java.util.UUID;
+
+/**
+ * One whitelist row as read from or written to an import/export file
+ * @param uuid Player UUID
+ * @param name Player name
+ * @param invitedBy Inviter UUID in text form, or "CONSOLE"
+ * @param invitedAt Epoch millis the player was whitelisted
+ */
+public record WhitelistRecord(UUID uuid, String name, String invitedBy, long invitedAt) {
+}
@@ -0,0 +1,125 @@
+package anderssxn.com.inviteList.cache;
+
+import java.util.UUID;
+
+/**
+ * Bloom filter over UUIDs, used instead of a full UUIDSet when cache.mode is "filter"
+ * A negative answer is definite; a positive one may be false at roughly the configured rate
+ *
+ * Thread-safety: add() must be externally serialized, mightContain() is lock-free.
+ * Entries can't be removed; removed players just become false positives until the next rebuild
+ * (WhitelistCache rebuilds once the filter is past its capacity or well past its target rate).
+ */
+public final class BloomFilter {
+    
+    private final long[] bits;
+    private final long bitCount;
+    private final long capacity;
+    private final int hashes;
+    private final double targetFpp;
+    
+    // Written after the bits of each insertion, read before probing (publishes the bit writes)
+    private volatile long insertions;
+    
+    /**
+     * @param expectedInsertions Entries the filter is sized for
+     * @param fpp Target false-positive probability, e.g. 0.01
+     */
+    public BloomFilter(long expectedInsertions, double fpp) {
+        long n = Math.max(1, expectedInsertions);
+        double p = Math.min(0.5, Math.max(1e-9, fpp));
+        
+        // m = -n ln p / (ln 2)^2, k = m/n ln 2
+        long m = (long) Math.ceil(-n * Math.log(p) / (Math.log(2) * Math.log(2)));
+        m = Math.max(64, Math.min(m, (long) Integer.MAX_VALUE * 64));
+        
+        this.bits = new long[(int) ((m + 63) >>> 6)];
+        this.bitCount = (long) bits.length * 64;
+        this.capacity = n;
+        this.hashes = Math.max(1, (int) Math.round((double) bitCount / n * Math.log(2)));
+        this.targetFpp = p;
+    }
+    
+    public void add(UUID uuid) {
+        add(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+    }
+    
+    public void add(long msb, long lsb) {
+        long h1 = mix(msb ^ Long.rotateLeft(lsb, 32));
+        long h2 = mix(lsb + 0x9E3779B97F4A7C15L) | 1L;
+        
+        for (int i = 0; i < hashes; i++) {
+            long index = Long.remainderUnsigned(h1 + i * h2, bitCount);
+            bits[(int) (index >>> 6)] |= 1L << index;
+        }
+        insertions = insertions + 1;
+    }
+    
+    /**
+     * @return false if the UUID was definitely never added
+     */
+    public boolean mightContain(UUID uuid) {
+        return mightContain(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+    }
+    
+    public boolean mightContain(long msb, long lsb) {
+        if (insertions == 0) {
+            return false;
+        }
+        
+        long h1 = mix(msb ^ Long.rotateLeft(lsb, 32));
+        long h2 = mix(lsb + 0x9E3779B97F4A7C15L) | 1L;
+        
+        for (int i = 0; i < hashes; i++) {
+            long index = Long.remainderUnsigned(h1 + i * h2, bitCount);
+            if ((bits[(int) (index >>> 6)] & (1L << index)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    public long getInsertions() {
+        return insertions;
+    }
+    
+    /**
+     * Insertions the filter was sized for
+     */
+    public long getCapacity() {
+        return capacity;
+    }
+    
+    public long getBitCount() {
+        return bitCount;
+    }
+    
+    public int getHashCount() {
+        return hashes;
+    }
+    
+    public double getTargetFpp() {
+        return targetFpp;
+    }
+    
+    /**
+     * Expected false-positive rate at the current number of insertions: (1 - e^(-kn/m))^k
+     */
+    public double getExpectedFpp() {
+        return Math.pow(1 - Math.exp(-hashes * (double) insertions / bitCount), hashes);
+    }
+    
+    public long memoryUsageBytes() {
+        return bits.length * 8L + 64L;
+    }
+    
+    private static long mix(long h) {
+        // MurmurHash3 fmix64
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
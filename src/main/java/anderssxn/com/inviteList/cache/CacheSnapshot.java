@@ -0,0 +1,239 @@
+package anderssxn.com.inviteList.cache;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * On-disk copy of the whitelist cache, memory-mapped at startup so logins are answered
+ * before the database has been read
+ *
+ * Layout (big-endian): a 48 byte header followed by the UUIDs as sorted (msb, lsb) long pairs
+ *   int magic "ILSN", int format, long count, long change log version,
+ *   long created-at millis, long source database hash, long CRC32 of the UUID section
+ */
+final class CacheSnapshot {
+
+    private static final int MAGIC = 0x494C534E; // "ILSN"
+    private static final int FORMAT = 1;
+    private static final int HEADER_BYTES = 48;
+    private static final long MAX_BYTES = Integer.MAX_VALUE; // Single mapping
+
+    private final LongBuffer uuids;
+    private final int count;
+    private final long version;
+    private final long createdAt;
+
+    private CacheSnapshot(LongBuffer uuids, int count, long version, long createdAt) {
+        this.uuids = uuids;
+        this.count = count;
+        this.version = version;
+        this.createdAt = createdAt;
+    }
+
+    /**
+     * Map and verify a snapshot
+     * @param sourceHash Hash of the database the cache is loaded from; snapshots of another database are rejected
+     * @throws IOException if the file is missing, damaged, from another database or older than maxAgeMillis
+     */
+    static CacheSnapshot open(Path file, long sourceHash, long maxAgeMillis) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES || channel.size() > MAX_BYTES) {
+                throw new IOException("unexpected file size " + channel.size());
+            }
+            // The mapping stays valid after the channel is closed
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        buffer.order(ByteOrder.BIG_ENDIAN);
+
+        if (buffer.getInt(0) != MAGIC) {
+            throw new IOException("not a cache snapshot");
+        }
+        if (buffer.getInt(4) != FORMAT) {
+            throw new IOException("unsupported format " + buffer.getInt(4));
+        }
+        long count = buffer.getLong(8);
+        long version = buffer.getLong(16);
+        long createdAt = buffer.getLong(24);
+
+        if (buffer.getLong(32) != sourceHash) {
+            throw new IOException("written for a different database");
+        }
+        if (count < 0 || HEADER_BYTES + count * 16 != buffer.capacity()) {
+            throw new IOException("count " + count + " doesn't match file size");
+        }
+        if (System.currentTimeMillis() - createdAt > maxAgeMillis) {
+            throw new IOException("older than the configured max age");
+        }
+
+        ByteBuffer body = buffer.slice(HEADER_BYTES, (int) count * 16);
+        CRC32 crc = new CRC32();
+        crc.update(body.duplicate());
+        if (crc.getValue() != buffer.getLong(40)) {
+            throw new IOException("checksum mismatch");
+        }
+
+        return new CacheSnapshot(body.order(ByteOrder.BIG_ENDIAN).asLongBuffer(), (int) count, version, createdAt);
+    }
+
+    /**
+     * Binary search over the sorted pairs (lock-free, allocation-free)
+     */
+    boolean contains(long msb, long lsb) {
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compare(uuids.get(mid << 1), uuids.get((mid << 1) + 1), msb, lsb);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    void forEach(UUIDSet.Visitor visitor) {
+        for (int i = 0; i < count; i++) {
+            visitor.visit(uuids.get(i << 1), uuids.get((i << 1) + 1));
+        }
+    }
+
+    int size() {
+        return count;
+    }
+
+    long version() {
+        return version;
+    }
+
+    long createdAt() {
+        return createdAt;
+    }
+
+    /**
+     * Write a snapshot of the set: filled into a mapped temp file, sorted in place, then moved over the old one
+     * @param version Change log version the set reflects (an older version is safe, the delta just replays more)
+     */
+    static void write(Path file, UUIDSet set, long version, long sourceHash) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+
+            // Hold the set's lock so the size can't change while entries are copied (mutators are synchronized on it)
+            MappedByteBuffer buffer;
+            int[] written = new int[1];
+            synchronized (set) {
+                long bytes = HEADER_BYTES + set.size() * 16L;
+                if (bytes > MAX_BYTES) {
+                    throw new IOException("cache too large for a snapshot (" + set.size() + " entries)");
+                }
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+                LongBuffer out = buffer.slice(HEADER_BYTES, set.size() * 16).order(ByteOrder.BIG_ENDIAN).asLongBuffer();
+                set.forEach((msb, lsb) -> {
+                    out.put(msb);
+                    out.put(lsb);
+                    written[0]++;
+                });
+            }
+            
+            int count = written[0];
+            ByteBuffer body = buffer.slice(HEADER_BYTES, count * 16);
+            sort(body.duplicate().order(ByteOrder.BIG_ENDIAN).asLongBuffer(), 0, count - 1);
+
+            CRC32 crc = new CRC32();
+            crc.update(body.duplicate());
+
+            buffer.order(ByteOrder.BIG_ENDIAN);
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, FORMAT);
+            buffer.putLong(8, count);
+            buffer.putLong(16, version);
+            buffer.putLong(24, System.currentTimeMillis());
+            buffer.putLong(32, sourceHash);
+            buffer.putLong(40, crc.getValue());
+            buffer.force();
+
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static int compare(long msbA, long lsbA, long msbB, long lsbB) {
+        int cmp = Long.compare(msbA, msbB);
+        return cmp != 0 ? cmp : Long.compare(lsbA, lsbB);
+    }
+
+    /**
+     * In-place quicksort of (msb, lsb) pairs; recurses into the smaller half so the stack stays O(log n)
+     */
+    private static void sort(LongBuffer pairs, int low, int high) {
+        while (low < high) {
+            if (high - low < 16) {
+                insertionSort(pairs, low, high);
+                return;
+            }
+
+            int mid = (low + high) >>> 1;
+            long pivotMsb = pairs.get(mid << 1);
+            long pivotLsb = pairs.get((mid << 1) + 1);
+            int i = low;
+            int j = high;
+            while (i <= j) {
+                while (compare(pairs.get(i << 1), pairs.get((i << 1) + 1), pivotMsb, pivotLsb) < 0) i++;
+                while (compare(pairs.get(j << 1), pairs.get((j << 1) + 1), pivotMsb, pivotLsb) > 0) j--;
+                if (i <= j) {
+                    swap(pairs, i++, j--);
+                }
+            }
+
+            if (j - low < high - i) {
+                sort(pairs, low, j);
+                low = i;
+            } else {
+                sort(pairs, i, high);
+                high = j;
+            }
+        }
+    }
+
+    private static void insertionSort(LongBuffer pairs, int low, int high) {
+        for (int i = low + 1; i <= high; i++) {
+            long msb = pairs.get(i << 1);
+            long lsb = pairs.get((i << 1) + 1);
+            int j = i - 1;
+            while (j >= low && compare(pairs.get(j << 1), pairs.get((j << 1) + 1), msb, lsb) > 0) {
+                pairs.put((j + 1) << 1, pairs.get(j << 1));
+                pairs.put(((j + 1) << 1) + 1, pairs.get((j << 1) + 1));
+                j--;
+            }
+            pairs.put((j + 1) << 1, msb);
+            pairs.put(((j + 1) << 1) + 1, lsb);
+        }
+    }
+
+    private static void swap(LongBuffer pairs, int a, int b) {
+        long msb = pairs.get(a << 1);
+        long lsb = pairs.get((a << 1) + 1);
+        pairs.put(a << 1, pairs.get(b << 1));
+        pairs.put((a << 1) + 1, pairs.get((b << 1) + 1));
+        pairs.put(b << 1, msb);
+        pairs.put((b << 1) + 1, lsb);
+    }
+}
@@ -0,0 +1,140 @@
+package anderssxn.com.inviteList.cache;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Bounded map of UUID -> whitelisted, for filter positives the database has already confirmed
+ *
+ * Laid out like {@link DenyCache}: fixed arrays split over 64 independently locked stripes, each UUID
+ * may sit in one of 4 slots of its stripe. A full set of slots evicts the least recently used entry,
+ * so logins never contend on one global lock and lookups don't allocate.
+ */
+public final class ConfirmedCache {
+    
+    private static final int STRIPES = 64;
+    private static final int WAYS = 4;
+    
+    private static final byte EMPTY = 0;
+    private static final byte WHITELISTED = 1;
+    private static final byte NOT_WHITELISTED = 2;
+    
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final int slotMask;
+    
+    /**
+     * @param maxEntries Upper bound on remembered UUIDs (rounded up to a power of two)
+     */
+    public ConfirmedCache(int maxEntries) {
+        int perStripe = Integer.highestOneBit(Math.max(WAYS, (maxEntries + STRIPES - 1) / STRIPES) - 1) << 1;
+        this.slotMask = perStripe - 1;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(perStripe);
+        }
+    }
+    
+    /**
+     * @return the confirmed answer, or null if this UUID isn't remembered
+     */
+    public Boolean get(UUID uuid) {
+        long msb = uuid.getMostSignificantBits();
+        long lsb = uuid.getLeastSignificantBits();
+        long hash = hash(msb, lsb);
+        Stripe stripe = stripes[(int) hash & (STRIPES - 1)];
+        int base = (int) (hash >>> 32);
+        
+        synchronized (stripe) {
+            for (int i = 0; i < WAYS; i++) {
+                int slot = (base + i) & slotMask;
+                if (stripe.state[slot] != EMPTY && stripe.msb[slot] == msb && stripe.lsb[slot] == lsb) {
+                    stripe.lastUsed[slot] = ++stripe.clock;
+                    return stripe.state[slot] == WHITELISTED;
+                }
+            }
+        }
+        return null;
+    }
+    
+    public void put(UUID uuid, boolean whitelisted) {
+        long msb = uuid.getMostSignificantBits();
+        long lsb = uuid.getLeastSignificantBits();
+        long hash = hash(msb, lsb);
+        Stripe stripe = stripes[(int) hash & (STRIPES - 1)];
+        int base = (int) (hash >>> 32);
+        
+        synchronized (stripe) {
+            // Same UUID, else an empty slot, else the least recently used one
+            int target = -1;
+            long oldest = Long.MAX_VALUE;
+            for (int i = 0; i < WAYS; i++) {
+                int slot = (base + i) & slotMask;
+                if (stripe.state[slot] != EMPTY && stripe.msb[slot] == msb && stripe.lsb[slot] == lsb) {
+                    target = slot;
+                    break;
+                }
+                long used = stripe.state[slot] == EMPTY ? Long.MIN_VALUE : stripe.lastUsed[slot];
+                if (used < oldest) {
+                    oldest = used;
+                    target = slot;
+                }
+            }
+            if (stripe.state[target] == EMPTY) {
+                stripe.size++;
+            }
+            stripe.msb[target] = msb;
+            stripe.lsb[target] = lsb;
+            stripe.state[target] = whitelisted ? WHITELISTED : NOT_WHITELISTED;
+            stripe.lastUsed[target] = ++stripe.clock;
+        }
+    }
+    
+    public void clear() {
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                Arrays.fill(stripe.state, EMPTY);
+                stripe.size = 0;
+            }
+        }
+    }
+    
+    /**
+     * Remembered entries (summed stripe by stripe, so only a snapshot under concurrent writes)
+     */
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size;
+            }
+        }
+        return size;
+    }
+    
+    public long memoryUsageBytes() {
+        // msb + lsb + lastUsed + state per slot
+        return (long) STRIPES * (slotMask + 1) * (8 + 8 + 8 + 1);
+    }
+    
+    private static long hash(long msb, long lsb) {
+        long h = msb * 0x9E3779B97F4A7C15L ^ lsb;
+        h ^= h >>> 31;
+        h *= 0xBF58476D1CE4E5B9L;
+        return h ^ (h >>> 29);
+    }
+    
+    private static final class Stripe {
+        private final long[] msb;
+        private final long[] lsb;
+        private final long[] lastUsed; // Stripe clock value at the last get/put
+        private final byte[] state;
+        private long clock;
+        private int size;
+        
+        private Stripe(int slots) {
+            this.msb = new long[slots];
+            this.lsb = new long[slots];
+            this.lastUsed = new long[slots];
+            this.state = new byte[slots];
+        }
+    }
+}
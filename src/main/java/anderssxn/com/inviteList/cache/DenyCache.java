@@ -0,0 +1,140 @@
+package anderssxn.com.inviteList.cache;
+
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded, time-expiring set of UUIDs the database recently said are not whitelisted
+ *
+ * Lets repeated connections from the same unknown players be rejected from memory while the
+ * cache can't answer on its own (cold start, filter mode). Entries live in fixed arrays split
+ * over 64 independently locked stripes; each UUID may sit in one of 4 slots of its stripe and
+ * a full set of slots evicts the entry closest to expiring. Lookups and inserts don't allocate.
+ */
+public final class DenyCache {
+    
+    private static final int STRIPES = 64;
+    private static final int WAYS = 4;
+    
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final int slotMask;
+    private final long ttlNanos;
+    private final LongAdder hits = new LongAdder();
+    
+    /**
+     * @param maxEntries Upper bound on remembered UUIDs (rounded up to a power of two)
+     * @param ttlMillis How long a negative answer is trusted
+     */
+    public DenyCache(int maxEntries, long ttlMillis) {
+        int perStripe = Integer.highestOneBit(Math.max(WAYS, (maxEntries + STRIPES - 1) / STRIPES) - 1) << 1;
+        this.slotMask = perStripe - 1;
+        this.ttlNanos = Math.max(1, ttlMillis) * 1_000_000L;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(perStripe);
+        }
+    }
+    
+    public boolean contains(UUID uuid) {
+        long msb = uuid.getMostSignificantBits();
+        long lsb = uuid.getLeastSignificantBits();
+        long hash = hash(msb, lsb);
+        Stripe stripe = stripes[(int) hash & (STRIPES - 1)];
+        int base = (int) (hash >>> 32);
+        long now = System.nanoTime();
+        
+        synchronized (stripe) {
+            for (int i = 0; i < WAYS; i++) {
+                int slot = (base + i) & slotMask;
+                if (stripe.msb[slot] == msb && stripe.lsb[slot] == lsb && stripe.expires[slot] - now > 0) {
+                    hits.increment();
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+    
+    public void add(UUID uuid) {
+        long msb = uuid.getMostSignificantBits();
+        long lsb = uuid.getLeastSignificantBits();
+        long hash = hash(msb, lsb);
+        Stripe stripe = stripes[(int) hash & (STRIPES - 1)];
+        int base = (int) (hash >>> 32);
+        long now = System.nanoTime();
+        
+        synchronized (stripe) {
+            // Same UUID, else an expired/empty slot, else the one expiring first
+            int target = -1;
+            long soonest = Long.MAX_VALUE;
+            for (int i = 0; i < WAYS; i++) {
+                int slot = (base + i) & slotMask;
+                if (stripe.msb[slot] == msb && stripe.lsb[slot] == lsb) {
+                    target = slot;
+                    break;
+                }
+                long remaining = stripe.expires[slot] - now;
+                if (remaining < soonest) {
+                    soonest = remaining;
+                    target = slot;
+                }
+            }
+            stripe.msb[target] = msb;
+            stripe.lsb[target] = lsb;
+            stripe.expires[target] = now + ttlNanos;
+        }
+    }
+    
+    public void remove(UUID uuid) {
+        long msb = uuid.getMostSignificantBits();
+        long lsb = uuid.getLeastSignificantBits();
+        long hash = hash(msb, lsb);
+        Stripe stripe = stripes[(int) hash & (STRIPES - 1)];
+        int base = (int) (hash >>> 32);
+        
+        synchronized (stripe) {
+            for (int i = 0; i < WAYS; i++) {
+                int slot = (base + i) & slotMask;
+                if (stripe.msb[slot] == msb && stripe.lsb[slot] == lsb) {
+                    stripe.expires[slot] = System.nanoTime(); // Already expired
+                }
+            }
+        }
+    }
+    
+    public void clear() {
+        long now = System.nanoTime();
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                Arrays.fill(stripe.expires, now);
+            }
+        }
+    }
+    
+    /**
+     * Connections rejected from this cache
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+    
+    private static long hash(long msb, long lsb) {
+        long h = msb * 0x9E3779B97F4A7C15L ^ lsb;
+        h ^= h >>> 31;
+        h *= 0xBF58476D1CE4E5B9L;
+        return h ^ (h >>> 29);
+    }
+    
+    private static final class Stripe {
+        private final long[] msb;
+        private final long[] lsb;
+        private final long[] expires; // System.nanoTime() deadline
+        
+        private Stripe(int slots) {
+            this.msb = new long[slots];
+            this.lsb = new long[slots];
+            this.expires = new long[slots];
+            Arrays.fill(expires, System.nanoTime());
+        }
+    }
+}
@@ -0,0 +1,433 @@
+package anderssxn.com.inviteList.cache;
+
+import anderssxn.com.inviteList.database.Invitation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory invite tree built from the invitations table
+ *
+ * Every player seen in an invitation gets a dense int id. The tree lives in parallel primitive
+ * arrays (parent, first child, next sibling), UUIDs are stored as two longs and found through an
+ * open-addressing id table. Lineage, subtree and top-inviter queries walk the arrays without a
+ * database round trip; only the returned nodes are allocated.
+ *
+ * Each invitee has a single parent: the most recent invitation wins, so a player who was removed
+ * and re-invited by someone else moves under the new inviter. The tree is kept free of loops.
+ */
+public class InviteGraph {
+    
+    private static final int NONE = -1;
+    
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private Store store = new Store(16);
+    private boolean loaded;
+    
+    // Invitations recorded while a rebuild is running, replayed onto the new graph when it is published
+    private List<Invitation> pendingInvitations;
+    
+    /**
+     * A player in the graph
+     * @param name Last known name from the invitations table (may be null)
+     * @param invitedAt When the player was invited (0 for players nobody invited)
+     * @param invited Number of players they invited directly
+     */
+    public record Node(UUID uuid, String name, long invitedAt, int invited) {
+    }
+    
+    /**
+     * A player below the root of a subtree
+     * @param depth 1 for players the root invited, 2 for the ones they invited, ...
+     */
+    public record Branch(Node node, int depth) {
+    }
+    
+    /**
+     * Result of a subtree query
+     * @param branches Players in depth-first order (newest invite first), limited by depth and count
+     * @param total Every player below the root, regardless of the limits
+     * @param depth Deepest generation below the root
+     */
+    public record Subtree(Node root, List<Branch> branches, int total, int depth) {
+    }
+    
+    /**
+     * Collects invitations for a full rebuild, published with {@link #publish(Builder)}
+     */
+    public static final class Builder {
+        private final Store store = new Store(1024);
+        
+        public void add(Invitation invitation) {
+            store.add(invitation);
+        }
+    }
+    
+    public Builder builder() {
+        lock.writeLock().lock();
+        try {
+            pendingInvitations = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return new Builder();
+    }
+    
+    /**
+     * Swap in a fully built graph
+     */
+    public void publish(Builder builder) {
+        lock.writeLock().lock();
+        try {
+            store = builder.store;
+            loaded = true;
+            if (pendingInvitations != null) {
+                for (Invitation invitation : pendingInvitations) {
+                    store.add(invitation);
+                }
+                pendingInvitations = null;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * Drop a rebuild that failed; the current graph stays in place
+     */
+    public void cancel() {
+        lock.writeLock().lock();
+        try {
+            pendingInvitations = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * Record a new invitation
+     */
+    public void add(Invitation invitation) {
+        lock.writeLock().lock();
+        try {
+            if (pendingInvitations != null) {
+                pendingInvitations.add(invitation);
+            }
+            store.add(invitation);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * Whether the graph has been loaded from the database at least once
+     */
+    public boolean isLoaded() {
+        lock.readLock().lock();
+        try {
+            return loaded;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * A player and their inviters up to the root
+     * @param limit Most nodes returned
+     * @return the player first and the root last, or an empty list if the player is not in the graph
+     */
+    public List<Node> chain(UUID uuid, int limit) {
+        lock.readLock().lock();
+        try {
+            int id = store.find(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+            List<Node> chain = new ArrayList<>();
+            while (id != NONE && chain.size() < limit) {
+                chain.add(store.node(id));
+                id = store.parent[id];
+            }
+            return chain;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Everyone a player brought in, directly or through the players they invited
+     * @param maxDepth Deepest generation listed in {@link Subtree#branches()}
+     * @param maxEntries Most players listed in {@link Subtree#branches()}
+     * @return the subtree, or null if the player is not in the graph
+     */
+    public Subtree subtree(UUID uuid, int maxDepth, int maxEntries) {
+        lock.readLock().lock();
+        try {
+            Store s = store;
+            int root = s.find(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+            if (root == NONE) {
+                return null;
+            }
+            
+            // Pre-order walk over the sibling links, no stack needed
+            List<Branch> branches = new ArrayList<>(Math.min(maxEntries, 64));
+            int total = 0;
+            int deepest = 0;
+            int depth = 1;
+            int node = s.firstChild[root];
+            while (node != NONE) {
+                total++;
+                deepest = Math.max(deepest, depth);
+                if (depth <= maxDepth && branches.size() < maxEntries) {
+                    branches.add(new Branch(s.node(node), depth));
+                }
+                
+                if (s.firstChild[node] != NONE) {
+                    node = s.firstChild[node];
+                    depth++;
+                    continue;
+                }
+                while (node != root && s.nextSibling[node] == NONE) {
+                    node = s.parent[node];
+                    depth--;
+                }
+                node = node == root ? NONE : s.nextSibling[node];
+            }
+            
+            return new Subtree(s.node(root), branches, total, deepest);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Players who invited the most others directly, most first
+     */
+    public List<Node> topInviters(int limit) {
+        if (limit <= 0) {
+            return List.of();
+        }
+        
+        lock.readLock().lock();
+        try {
+            Store s = store;
+            int[] best = new int[limit];
+            int found = 0;
+            
+            for (int id = 0; id < s.size; id++) {
+                int count = s.childCount[id];
+                if (count == 0 || (found == best.length && count <= s.childCount[best[found - 1]])) {
+                    continue;
+                }
+                
+                // Insertion into the short sorted list
+                int pos = Math.min(found, best.length - 1);
+                while (pos > 0 && s.childCount[best[pos - 1]] < count) {
+                    best[pos] = best[pos - 1];
+                    pos--;
+                }
+                best[pos] = id;
+                found = Math.min(found + 1, best.length);
+            }
+            
+            List<Node> top = new ArrayList<>(found);
+            for (int i = 0; i < found; i++) {
+                top.add(s.node(best[i]));
+            }
+            return top;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Players in the graph (inviters and invitees)
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return store.size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Invite links in the graph (one per invited player)
+     */
+    public int getLinkCount() {
+        lock.readLock().lock();
+        try {
+            return store.links;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Rough heap footprint of the arrays
+     */
+    public long getMemoryUsageBytes() {
+        lock.readLock().lock();
+        try {
+            Store s = store;
+            return (long) s.table.length * 4 + (long) s.msb.length * (8 * 3 + 4 * 5); // 3 long, 4 int and 1 reference array
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    private static final class Store {
+        private int[] table; // Open-addressing slots holding id + 1 (0 = empty)
+        private long[] msb;
+        private long[] lsb;
+        private long[] invitedAt;
+        private String[] names;
+        private int[] parent;
+        private int[] firstChild;
+        private int[] nextSibling;
+        private int[] childCount;
+        private int size;
+        private int links;
+        
+        private Store(int capacity) {
+            table = new int[Integer.highestOneBit(Math.max(16, capacity * 2) - 1) << 1];
+            msb = new long[capacity];
+            lsb = new long[capacity];
+            invitedAt = new long[capacity];
+            names = new String[capacity];
+            parent = new int[capacity];
+            firstChild = new int[capacity];
+            nextSibling = new int[capacity];
+            childCount = new int[capacity];
+        }
+        
+        void add(Invitation invitation) {
+            int inviter = intern(invitation.inviterUuid(), invitation.inviterName());
+            int invitee = intern(invitation.inviteeUuid(), invitation.inviteeName());
+            if (inviter == invitee) {
+                return;
+            }
+            
+            invitedAt[invitee] = invitation.invitedAt();
+            if (parent[invitee] == inviter) {
+                return;
+            }
+            
+            // Re-invited by one of their own descendants: that branch's link to them is stale, cut it
+            for (int node = inviter; parent[node] != NONE; node = parent[node]) {
+                if (parent[node] == invitee) {
+                    unlink(node);
+                    break;
+                }
+            }
+            
+            if (parent[invitee] != NONE) {
+                unlink(invitee);
+            }
+            nextSibling[invitee] = firstChild[inviter];
+            firstChild[inviter] = invitee;
+            parent[invitee] = inviter;
+            childCount[inviter]++;
+            links++;
+        }
+        
+        private void unlink(int child) {
+            int p = parent[child];
+            if (firstChild[p] == child) {
+                firstChild[p] = nextSibling[child];
+            } else {
+                int sibling = firstChild[p];
+                while (nextSibling[sibling] != child) {
+                    sibling = nextSibling[sibling];
+                }
+                nextSibling[sibling] = nextSibling[child];
+            }
+            childCount[p]--;
+            parent[child] = NONE;
+            nextSibling[child] = NONE;
+            links--;
+        }
+        
+        int find(long m, long l) {
+            int mask = table.length - 1;
+            for (int slot = hash(m, l) & mask; ; slot = (slot + 1) & mask) {
+                int entry = table[slot];
+                if (entry == 0) {
+                    return NONE;
+                }
+                int id = entry - 1;
+                if (msb[id] == m && lsb[id] == l) {
+                    return id;
+                }
+            }
+        }
+        
+        private int intern(UUID uuid, String name) {
+            long m = uuid.getMostSignificantBits();
+            long l = uuid.getLeastSignificantBits();
+            int id = find(m, l);
+            
+            if (id == NONE) {
+                if (size == msb.length) {
+                    grow();
+                }
+                id = size++;
+                msb[id] = m;
+                lsb[id] = l;
+                parent[id] = NONE;
+                firstChild[id] = NONE;
+                nextSibling[id] = NONE;
+                insert(id);
+                if (size * 2 > table.length) {
+                    rehash();
+                }
+            }
+            
+            // Rows arrive oldest first, so the latest name wins
+            if (name != null) {
+                names[id] = name;
+            }
+            return id;
+        }
+        
+        private void insert(int id) {
+            int mask = table.length - 1;
+            int slot = hash(msb[id], lsb[id]) & mask;
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = id + 1;
+        }
+        
+        private void rehash() {
+            table = new int[table.length * 2];
+            for (int id = 0; id < size; id++) {
+                insert(id);
+            }
+        }
+        
+        private void grow() {
+            int capacity = msb.length * 2;
+            msb = Arrays.copyOf(msb, capacity);
+            lsb = Arrays.copyOf(lsb, capacity);
+            invitedAt = Arrays.copyOf(invitedAt, capacity);
+            names = Arrays.copyOf(names, capacity);
+            parent = Arrays.copyOf(parent, capacity);
+            firstChild = Arrays.copyOf(firstChild, capacity);
+            nextSibling = Arrays.copyOf(nextSibling, capacity);
+            childCount = Arrays.copyOf(childCount, capacity);
+        }
+        
+        Node node(int id) {
+            return new Node(new UUID(msb[id], lsb[id]), names[id], invitedAt[id], childCount[id]);
+        }
+        
+        private static int hash(long m, long l) {
+            long h = m * 0x9E3779B97F4A7C15L ^ l;
+            h ^= h >>> 31;
+            h *= 0xBF58476D1CE4E5B9L;
+            return (int) (h ^ (h >>> 29));
+        }
+    }
+}
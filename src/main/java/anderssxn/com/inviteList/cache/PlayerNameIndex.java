@@ -0,0 +1,187 @@
+package anderssxn.com.inviteList.cache;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Plugin-owned name <-> UUID index built from the whitelist table
+ * Lets commands and tab-completion resolve players without touching Bukkit's
+ * user cache, the disk or the Mojang API
+ */
+public class PlayerNameIndex {
+    
+    // Lower-cased name -> UUID; sorted so tab-completion can do a prefix range scan
+    private volatile ConcurrentSkipListMap<String, UUID> byName = new ConcurrentSkipListMap<>();
+    private volatile ConcurrentHashMap<UUID, String> byUUID = new ConcurrentHashMap<>();
+    
+    // Names learned while a rebuild is running, replayed onto the new index when it is published (null value = removed)
+    private volatile Map<UUID, String> pendingUpdates;
+    private volatile boolean loaded;
+    
+    /**
+     * A resolved player
+     */
+    public record Entry(UUID uuid, String name) {
+    }
+    
+    /**
+     * Collects entries for a full rebuild, published with {@link #publish(Builder)}
+     */
+    public static final class Builder {
+        private final ConcurrentSkipListMap<String, UUID> byName = new ConcurrentSkipListMap<>();
+        private final ConcurrentHashMap<UUID, String> byUUID = new ConcurrentHashMap<>();
+        
+        public void add(UUID uuid, String name) {
+            if (uuid == null || name == null) {
+                return;
+            }
+            byName.put(key(name), uuid);
+            byUUID.put(uuid, name);
+        }
+    }
+    
+    public synchronized Builder builder() {
+        pendingUpdates = new HashMap<>();
+        return new Builder();
+    }
+    
+    /**
+     * Swap in a fully built index
+     */
+    public synchronized void publish(Builder builder) {
+        byName = builder.byName;
+        byUUID = builder.byUUID;
+        loaded = true;
+        
+        if (pendingUpdates != null) {
+            Map<UUID, String> replay = pendingUpdates;
+            pendingUpdates = null;
+            replay.forEach((uuid, name) -> {
+                if (name != null) {
+                    update(uuid, name);
+                } else {
+                    remove(uuid);
+                }
+            });
+        }
+    }
+    
+    /**
+     * Whether the index has been built from the database at least once (so it knows every whitelisted player)
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+    
+    /**
+     * Drop a rebuild that failed; the current index stays in place
+     */
+    public synchronized void abort() {
+        pendingUpdates = null;
+    }
+    
+    /**
+     * Record a player's current name
+     * @return true if the name is new or changed for this UUID
+     */
+    public boolean update(UUID uuid, String name) {
+        // Most logins: same name as last time, no lock needed
+        if (pendingUpdates == null && name.equals(byUUID.get(uuid))) {
+            return false;
+        }
+        return updateLocked(uuid, name);
+    }
+    
+    private synchronized boolean updateLocked(UUID uuid, String name) {
+        if (pendingUpdates != null) {
+            pendingUpdates.put(uuid, name);
+        }
+        
+        String previous = byUUID.put(uuid, name);
+        if (name.equals(previous)) {
+            return false;
+        }
+        
+        if (previous != null) {
+            byName.remove(key(previous), uuid);
+        }
+        byName.put(key(name), uuid);
+        return true;
+    }
+    
+    /**
+     * Forget a player (removed from the whitelist)
+     */
+    public synchronized void remove(UUID uuid) {
+        if (pendingUpdates != null) {
+            pendingUpdates.put(uuid, null);
+        }
+        
+        String previous = byUUID.remove(uuid);
+        if (previous != null) {
+            byName.remove(key(previous), uuid);
+        }
+    }
+    
+    /**
+     * Look up a UUID by (case-insensitive) name
+     * @return the UUID or null if unknown
+     */
+    public UUID getUUID(String name) {
+        return byName.get(key(name));
+    }
+    
+    /**
+     * Look up a player by (case-insensitive) name
+     * @return the UUID and properly-cased name, or null if unknown
+     */
+    public Entry find(String name) {
+        UUID uuid = getUUID(name);
+        if (uuid == null) {
+            return null;
+        }
+        String stored = byUUID.get(uuid);
+        return new Entry(uuid, stored != null ? stored : name);
+    }
+    
+    /**
+     * Look up the last known name of a player
+     * @return the name or null if unknown
+     */
+    public String getName(UUID uuid) {
+        return byUUID.get(uuid);
+    }
+    
+    /**
+     * Names starting with the given prefix, for tab-completion
+     */
+    public List<String> complete(String prefix, int limit) {
+        String from = key(prefix);
+        ConcurrentNavigableMap<String, UUID> range = byName.tailMap(from, true);
+        List<String> names = new ArrayList<>(Math.min(limit, 32));
+        
+        for (Map.Entry<String, UUID> entry : range.entrySet()) {
+            if (!entry.getKey().startsWith(from) || names.size() >= limit) {
+                break;
+            }
+            String name = byUUID.get(entry.getValue());
+            names.add(name != null ? name : entry.getKey());
+        }
+        return names;
+    }
+    
+    public int size() {
+        return byUUID.size();
+    }
+    
+    private static String key(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,342 @@
+package anderssxn.com.inviteList.cache;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.util.UUID;
+
+/**
+ * Primitive open-addressing set of UUIDs keyed on their two 64-bit halves
+ * Entries live in a flat long table (on-heap long[] or an off-heap direct buffer),
+ * so there is no per-entry object and lookups never allocate
+ *
+ * Thread-safety: mutators are synchronized, contains() is lock-free.
+ * A resize builds a new table and publishes it, so readers never see a half-rehashed table.
+ */
+public final class UUIDSet {
+
+    // Slot markers; the two UUIDs that collide with them are tracked in flags instead
+    private static final long EMPTY_LSB = 0L;
+    private static final long TOMBSTONE_LSB = 1L;
+
+    private static final int MIN_CAPACITY = 16;
+    private static final int MAX_HEAP_CAPACITY = 1 << 29; // Two longs per slot; one more doubling would overflow the int array size
+    private static final int MAX_OFF_HEAP_CAPACITY = 1 << 26; // 1 GB per direct buffer
+    private static final float MAX_LOAD = 0.7f;
+
+    private final boolean offHeap;
+
+    private volatile Table table;
+    private volatile int size;
+    private int tombstones;
+    private volatile boolean hasEmptyKey;
+    private volatile boolean hasTombstoneKey;
+
+    public UUIDSet(int expectedSize, boolean offHeap) {
+        this.offHeap = offHeap;
+        this.table = newTable(capacityFor(expectedSize));
+    }
+
+    public UUIDSet(boolean offHeap) {
+        this(0, offHeap);
+    }
+
+    /**
+     * Check if the set contains the given UUID (lock-free, allocation-free)
+     */
+    public boolean contains(UUID uuid) {
+        return contains(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+    }
+
+    public boolean contains(long msb, long lsb) {
+        if (size == 0) {
+            return false; // Volatile read also publishes slot writes made before the last mutation
+        }
+        if (msb == 0L && lsb == EMPTY_LSB) {
+            return hasEmptyKey;
+        }
+        if (msb == 0L && lsb == TOMBSTONE_LSB) {
+            return hasTombstoneKey;
+        }
+
+        Table t = table;
+        int mask = t.capacity - 1;
+        int slot = hash(msb, lsb) & mask;
+
+        for (int probes = 0; probes < t.capacity; probes++) {
+            long slotMsb = t.msb(slot);
+            long slotLsb = t.lsb(slot);
+
+            if (slotMsb == msb && slotLsb == lsb) {
+                return true;
+            }
+            if (slotMsb == 0L && slotLsb == EMPTY_LSB) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    public boolean add(UUID uuid) {
+        return add(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+    }
+
+    /**
+     * Add a UUID
+     * @return true if it was not already present
+     */
+    public synchronized boolean add(long msb, long lsb) {
+        if (msb == 0L && lsb == EMPTY_LSB) {
+            if (hasEmptyKey) return false;
+            hasEmptyKey = true;
+            size = size + 1;
+            return true;
+        }
+        if (msb == 0L && lsb == TOMBSTONE_LSB) {
+            if (hasTombstoneKey) return false;
+            hasTombstoneKey = true;
+            size = size + 1;
+            return true;
+        }
+
+        Table t = table;
+        if ((size + tombstones + 1) > t.capacity * MAX_LOAD) {
+            t = rehash(size + 1);
+        }
+
+        int mask = t.capacity - 1;
+        int slot = hash(msb, lsb) & mask;
+        int firstTombstone = -1;
+
+        while (true) {
+            long slotMsb = t.msb(slot);
+            long slotLsb = t.lsb(slot);
+
+            if (slotMsb == msb && slotLsb == lsb) {
+                return false;
+            }
+            if (slotMsb == 0L && slotLsb == TOMBSTONE_LSB) {
+                if (firstTombstone < 0) firstTombstone = slot;
+            } else if (slotMsb == 0L && slotLsb == EMPTY_LSB) {
+                break;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        if (firstTombstone >= 0) {
+            slot = firstTombstone;
+            tombstones--;
+        }
+
+        // msb first: a concurrent reader never sees a half-written slot as EMPTY
+        t.setMsb(slot, msb);
+        t.setLsb(slot, lsb);
+        size = size + 1;
+        return true;
+    }
+
+    public boolean remove(UUID uuid) {
+        return remove(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+    }
+
+    /**
+     * Remove a UUID (leaves a tombstone so probe chains stay intact for concurrent readers)
+     * @return true if it was present
+     */
+    public synchronized boolean remove(long msb, long lsb) {
+        if (msb == 0L && lsb == EMPTY_LSB) {
+            if (!hasEmptyKey) return false;
+            hasEmptyKey = false;
+            size = size - 1;
+            return true;
+        }
+        if (msb == 0L && lsb == TOMBSTONE_LSB) {
+            if (!hasTombstoneKey) return false;
+            hasTombstoneKey = false;
+            size = size - 1;
+            return true;
+        }
+
+        Table t = table;
+        int mask = t.capacity - 1;
+        int slot = hash(msb, lsb) & mask;
+
+        for (int probes = 0; probes < t.capacity; probes++) {
+            long slotMsb = t.msb(slot);
+            long slotLsb = t.lsb(slot);
+
+            if (slotMsb == msb && slotLsb == lsb) {
+                // Never pass through (0, 0) while turning the slot into a tombstone
+                if (lsb == EMPTY_LSB) {
+                    t.setLsb(slot, TOMBSTONE_LSB);
+                    t.setMsb(slot, 0L);
+                } else {
+                    t.setMsb(slot, 0L);
+                    t.setLsb(slot, TOMBSTONE_LSB);
+                }
+                tombstones++;
+                size = size - 1;
+                return true;
+            }
+            if (slotMsb == 0L && slotLsb == EMPTY_LSB) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * Receives both halves of each UUID in the set
+     */
+    @FunctionalInterface
+    public interface Visitor {
+        void visit(long msb, long lsb);
+    }
+
+    /**
+     * Visit every entry (holds the set's lock, so mutators wait until it returns)
+     */
+    public synchronized void forEach(Visitor visitor) {
+        if (hasEmptyKey) {
+            visitor.visit(0L, EMPTY_LSB);
+        }
+        if (hasTombstoneKey) {
+            visitor.visit(0L, TOMBSTONE_LSB);
+        }
+
+        Table t = table;
+        for (int i = 0; i < t.capacity; i++) {
+            long slotMsb = t.msb(i);
+            long slotLsb = t.lsb(i);
+            if (slotMsb == 0L && (slotLsb == EMPTY_LSB || slotLsb == TOMBSTONE_LSB)) {
+                continue;
+            }
+            visitor.visit(slotMsb, slotLsb);
+        }
+    }
+
+    /**
+     * Remove all entries and shrink back to the minimum table
+     */
+    public synchronized void clear() {
+        table = newTable(MIN_CAPACITY);
+        tombstones = 0;
+        hasEmptyKey = false;
+        hasTombstoneKey = false;
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isOffHeap() {
+        return offHeap;
+    }
+
+    /**
+     * Real footprint of the set: slot table plus object headers
+     */
+    public long memoryUsageBytes() {
+        return table.capacity * 16L + 64L;
+    }
+
+    private Table rehash(int required) {
+        Table old = table;
+        Table fresh = newTable(capacityFor(required));
+        int mask = fresh.capacity - 1;
+
+        for (int i = 0; i < old.capacity; i++) {
+            long slotMsb = old.msb(i);
+            long slotLsb = old.lsb(i);
+            if (slotMsb == 0L && (slotLsb == EMPTY_LSB || slotLsb == TOMBSTONE_LSB)) {
+                continue;
+            }
+
+            int slot = hash(slotMsb, slotLsb) & mask;
+            while (fresh.msb(slot) != 0L || fresh.lsb(slot) != EMPTY_LSB) {
+                slot = (slot + 1) & mask;
+            }
+            fresh.setMsb(slot, slotMsb);
+            fresh.setLsb(slot, slotLsb);
+        }
+
+        tombstones = 0;
+        table = fresh;
+        return fresh;
+    }
+
+    private int capacityFor(int expectedSize) {
+        int maxCapacity = offHeap ? MAX_OFF_HEAP_CAPACITY : MAX_HEAP_CAPACITY;
+        long needed = (long) Math.ceil(Math.max(expectedSize, 1) / (double) MAX_LOAD);
+        if (needed > maxCapacity) {
+            throw new IllegalStateException("UUIDSet cannot hold " + expectedSize + " entries" +
+                (offHeap ? " off-heap" : ""));
+        }
+        int capacity = MIN_CAPACITY;
+        while (capacity < needed) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private Table newTable(int capacity) {
+        return offHeap ? new DirectTable(capacity) : new HeapTable(capacity);
+    }
+
+    private static int hash(long msb, long lsb) {
+        // MurmurHash3 fmix64 over both halves
+        long h = msb ^ Long.rotateLeft(lsb, 32);
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+
+    private abstract static class Table {
+        final int capacity;
+
+        Table(int capacity) {
+            this.capacity = capacity;
+        }
+
+        abstract long msb(int slot);
+        abstract long lsb(int slot);
+        abstract void setMsb(int slot, long value);
+        abstract void setLsb(int slot, long value);
+    }
+
+    private static final class HeapTable extends Table {
+        private final long[] slots;
+
+        HeapTable(int capacity) {
+            super(capacity);
+            this.slots = new long[capacity * 2];
+        }
+
+        @Override long msb(int slot) { return slots[slot << 1]; }
+        @Override long lsb(int slot) { return slots[(slot << 1) + 1]; }
+        @Override void setMsb(int slot, long value) { slots[slot << 1] = value; }
+        @Override void setLsb(int slot, long value) { slots[(slot << 1) + 1] = value; }
+    }
+
+    private static final class DirectTable extends Table {
+        private final LongBuffer slots;
+
+        DirectTable(int capacity) {
+            super(capacity);
+            this.slots = ByteBuffer.allocateDirect(capacity * 16)
+                .order(ByteOrder.nativeOrder())
+                .asLongBuffer();
+        }
+
+        @Override long msb(int slot) { return slots.get(slot << 1); }
+        @Override long lsb(int slot) { return slots.get((slot << 1) + 1); }
+        @Override void setMsb(int slot, long value) { slots.put(slot << 1, value); }
+        @Override void setLsb(int slot, long value) { slots.put((slot << 1) + 1, value); }
+    }
+}
@@ -2,12 +2,25 @@ package anderssxn.com.inviteList.cache;
 
 import anderssxn.com.inviteList.InviteList;
 import anderssxn.com.inviteList.database.InviteDatabase;
+import anderssxn.com.inviteList.database.WhitelistChange;
+import anderssxn.com.inviteList.metrics.Metrics;
 
-import java.util.HashSet;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * High-performance in-memory whitelist cache
@@ -15,76 +28,682 @@ import java.util.concurrent.atomic.AtomicBoolean;
  */
 public class WhitelistCache {
     
+    // Filter mode: rebuild once the expected false-positive rate reaches this multiple of the target
+    private static final double FILTER_REBUILD_FACTOR = 2.0;
+    
     private final InviteList plugin;
-    private final InviteDatabase database;
+    private final Metrics metrics;
+    private volatile InviteDatabase database;
+    
+    // Primitive open-addressing set: ~16 bytes per slot, no per-entry objects
+    // Reloads build a fresh set and publish it with a single volatile write
+    private volatile UUIDSet whitelistedUUIDs;
+    private final boolean offHeap;
     
-    // HashSet for O(1) lookup performance
-    private final Set<UUID> whitelistedUUIDs = ConcurrentHashMap.newKeySet();
+    // Adds/removes made while a reload is in flight, replayed onto the new set before the swap
+    private final Object swapLock = new Object();
+    private final List<PendingChange> pendingChanges = new ArrayList<>();
     
     private final AtomicBoolean isLoaded = new AtomicBoolean(false);
     private final AtomicBoolean isLoading = new AtomicBoolean(false);
     
+    // Completed whenever a loaded set is published; logins that arrive before that wait on it (bounded)
+    private volatile CompletableFuture<Void> ready = new CompletableFuture<>();
+    
+    // One in-flight database query per UUID (cache warming up, or confirming a filter positive)
+    private final ConcurrentHashMap<UUID, CompletableFuture<Boolean>> pendingLookups = new ConcurrentHashMap<>();
+    
+    // FULL keeps every UUID in whitelistedUUIDs; FILTER keeps a bloom filter plus a small LRU of confirmed answers
+    private final CacheMode mode;
+    private volatile BloomFilter filter;
+    private final ConfirmedCache confirmed;
+    private long changeEpoch; // Bumped on every change (under swapLock) so a slow DB answer can't overwrite a newer one
+    
+    // Recent "not whitelisted" answers from the database (null if disabled)
+    private final DenyCache denyCache;
+    
+    // Players removed since startup (locally or on another server), so their kick message can say so
+    private final Set<UUID> revoked = ConcurrentHashMap.newKeySet();
+    
+    private final LongAdder filterNegatives = new LongAdder();
+    private final LongAdder confirmedHits = new LongAdder();
+    private final LongAdder databaseConfirms = new LongAdder();
+    private final LongAdder falsePositives = new LongAdder();
+    
+    // Name <-> UUID index, rebuilt with every full load
+    private final PlayerNameIndex nameIndex = new PlayerNameIndex();
+    
+    // Change log version the cache reflects (-1 = unknown, next refresh must be a full load)
+    private volatile long syncedVersion = -1;
+    
+    // Memory-mapped snapshot that answers lookups at startup until the first full set is published,
+    // plus the changes made since it was mapped (last change per UUID wins)
+    private volatile CacheSnapshot bootSnapshot;
+    private final ConcurrentHashMap<UUID, Boolean> bootOverrides = new ConcurrentHashMap<>();
+    
     public WhitelistCache(InviteList plugin, InviteDatabase database) {
         this.plugin = plugin;
+        this.metrics = plugin.getMetrics();
         this.database = database;
+        this.offHeap = plugin.getConfig().getBoolean("cache.off-heap", false);
+        this.whitelistedUUIDs = new UUIDSet(offHeap);
+        
+        CacheMode configured;
+        try {
+            configured = CacheMode.valueOf(plugin.getConfig().getString("cache.mode", "full").toUpperCase());
+        } catch (IllegalArgumentException e) {
+            plugin.getLogger().warning("Invalid cache mode, defaulting to full");
+            configured = CacheMode.FULL;
+        }
+        this.mode = configured;
+        
+        this.denyCache = plugin.getConfig().getBoolean("login-protection.deny-cache.enabled", true) ?
+            new DenyCache(plugin.getConfig().getInt("login-protection.deny-cache.max-entries", 65536),
+                plugin.getConfig().getLong("login-protection.deny-cache.ttl-seconds", 30) * 1000L) :
+            null;
+        
+        int lruSize = Math.max(16, plugin.getConfig().getInt("cache.filter.lru-size", 10000));
+        this.confirmed = new ConfirmedCache(lruSize);
+    }
+    
+    /**
+     * How much of the whitelist is kept in memory
+     */
+    public enum CacheMode {
+        FULL,  // Every UUID, every lookup answered from memory
+        FILTER // Bloom filter only; negatives answered from memory, positives confirmed via LRU + database
     }
     
     /**
      * Load whitelist into cache from database
      * This is async and won't block the main thread
+     * The live set keeps answering lookups until the new one is swapped in
      */
     public void loadCache() {
-        if (isLoading.get()) {
+        if (!isLoading.compareAndSet(false, true)) {
             plugin.getLogger().warning("Cache is already loading!");
             return;
         }
         
-        isLoading.set(true);
         long startTime = System.currentTimeMillis();
+        long startNanos = System.nanoTime();
         
         plugin.getLogger().info("Loading whitelist cache from database...");
         
-        database.getAllWhitelisted().thenAccept(uuids -> {
-            whitelistedUUIDs.clear();
-            whitelistedUUIDs.addAll(uuids);
-            
-            isLoaded.set(true);
-            isLoading.set(false);
-            
-            long loadTime = System.currentTimeMillis() - startTime;
-            plugin.getLogger().info("Loaded " + whitelistedUUIDs.size() + " UUIDs into cache (" + loadTime + "ms)");
-            
-            // Log memory usage
-            long estimatedMemory = whitelistedUUIDs.size() * 40L; // ~40 bytes per UUID in HashSet
-            plugin.getLogger().info("Estimated cache memory usage: " + (estimatedMemory / 1024) + " KB");
+        // Read the change log version first: anything committed during the scan is re-applied by the next delta
+        InviteDatabase db = database;
+        loadNames(db);
+        
+        db.getLatestChangeVersion().thenCompose(version -> {
+            if (mode == CacheMode.FILTER) {
+                AtomicReference<BloomFilter> target = new AtomicReference<>();
+                return db.streamWhitelisted(expected -> {
+                    // Headroom for invites; refresh() rebuilds the filter once they (or the false-positive rate) outgrow it
+                    BloomFilter bloom = new BloomFilter(expected + Math.max(1000, expected / 10),
+                        plugin.getConfig().getDouble("cache.filter.false-positive-rate", 0.01));
+                    target.set(bloom);
+                    return bloom::add;
+                }).thenAccept(count -> {
+                    BloomFilter bloom = target.get();
+                    publish(new UUIDSet(offHeap), bloom, version);
+                    metrics.recordRefresh("full", startNanos);
+                    
+                    plugin.getLogger().info("Built whitelist filter for " + count + " UUIDs (" +
+                        (System.currentTimeMillis() - startTime) + "ms, " + (bloom.memoryUsageBytes() / 1024) + " KB, " +
+                        bloom.getHashCount() + " hashes)");
+                });
+            }
             
+            // Rows stream straight into the replacement, sized from the row count so it never rehashes
+            AtomicReference<UUIDSet> target = new AtomicReference<>();
+            return db.streamWhitelisted(expected -> {
+                UUIDSet set = new UUIDSet(expected, offHeap);
+                target.set(set);
+                return set::add;
+            }).thenAccept(count -> {
+                UUIDSet snapshot = target.get();
+                publish(snapshot, null, version);
+                metrics.recordRefresh("full", startNanos);
+                
+                long loadTime = System.currentTimeMillis() - startTime;
+                plugin.getLogger().info("Loaded " + snapshot.size() + " UUIDs into cache (" + loadTime + "ms)");
+                
+                // Log memory usage
+                plugin.getLogger().info("Cache memory usage: " + (snapshot.memoryUsageBytes() / 1024) + " KB" +
+                    (snapshot.isOffHeap() ? " (off-heap)" : ""));
+            });
         }).exceptionally(ex -> {
             plugin.getLogger().severe("Failed to load whitelist cache: " + ex.getMessage());
-            isLoading.set(false);
+            synchronized (swapLock) {
+                pendingChanges.clear();
+                isLoading.set(false);
+            }
+            return null;
+        });
+    }
+    
+    /**
+     * Start the cache: if a usable snapshot is on disk, serve lookups from it right away,
+     * build the live set from it in the background and catch up with a delta sync
+     * Otherwise (or if anything goes wrong) this is a regular {@link #loadCache()}
+     */
+    public void warmStart() {
+        CacheSnapshot snapshot = mode == CacheMode.FULL ? openSnapshot() : null;
+        if (snapshot == null || !isLoading.compareAndSet(false, true)) {
+            loadCache();
+            return;
+        }
+        
+        bootOverrides.clear();
+        bootSnapshot = snapshot;
+        plugin.getLogger().info("Serving logins from cache snapshot (" + snapshot.size() + " UUIDs, version " +
+            snapshot.version() + ") while the database catches up");
+        
+        loadNames(database);
+        
+        plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> {
+            try {
+                long startTime = System.currentTimeMillis();
+                UUIDSet set = new UUIDSet(snapshot.size(), offHeap);
+                snapshot.forEach(set::add);
+                publish(set, null, snapshot.version());
+                plugin.getLogger().info("Loaded " + set.size() + " UUIDs from snapshot (" +
+                    (System.currentTimeMillis() - startTime) + "ms), syncing changes since version " + snapshot.version());
+            } catch (RuntimeException e) {
+                plugin.getLogger().warning("Failed to load cache snapshot, loading from database: " + e.getMessage());
+                synchronized (swapLock) {
+                    bootSnapshot = null;
+                    bootOverrides.clear();
+                    pendingChanges.clear();
+                    isLoading.set(false);
+                }
+                loadCache();
+                return;
+            }
+            
+            // Falls back to a full load if the change log no longer reaches back to the snapshot
+            syncChanges();
+        });
+    }
+    
+    /**
+     * Map the on-disk snapshot if it is enabled, intact, recent enough and from the current database
+     * @return the snapshot or null
+     */
+    private CacheSnapshot openSnapshot() {
+        if (!plugin.getConfig().getBoolean("cache.snapshot.enabled", true)) {
+            return null;
+        }
+        
+        Path file = snapshotFile();
+        if (!file.toFile().exists()) {
+            return null;
+        }
+        
+        long maxAgeMillis = plugin.getConfig().getLong("cache.snapshot.max-age-hours", 24) * 60 * 60 * 1000L;
+        try {
+            return CacheSnapshot.open(file, sourceHash(database), maxAgeMillis);
+        } catch (IOException | RuntimeException e) {
+            plugin.getLogger().info("Ignoring cache snapshot: " + e.getMessage());
+            return null;
+        }
+    }
+    
+    /**
+     * Write the cache to disk for the next warm start
+     * Blocks on disk I/O, so call it from an async task or while shutting down
+     */
+    public void saveSnapshot() {
+        if (mode != CacheMode.FULL || !plugin.getConfig().getBoolean("cache.snapshot.enabled", true)) {
+            return; // A filter-mode cache doesn't hold the UUIDs to save
+        }
+        
+        UUIDSet set;
+        long version;
+        InviteDatabase db;
+        synchronized (swapLock) {
+            if (!isLoaded.get() || syncedVersion < 0) {
+                return; // Nothing trustworthy to save yet
+            }
+            set = whitelistedUUIDs;
+            version = syncedVersion;
+            db = database;
+        }
+        
+        long startTime = System.currentTimeMillis();
+        try {
+            CacheSnapshot.write(snapshotFile(), set, version, sourceHash(db));
+            plugin.getLogger().fine("Wrote cache snapshot (" + set.size() + " UUIDs, version " + version + ", " +
+                (System.currentTimeMillis() - startTime) + "ms)");
+        } catch (IOException | RuntimeException e) {
+            plugin.getLogger().warning("Failed to write cache snapshot: " + e.getMessage());
+        }
+    }
+    
+    private Path snapshotFile() {
+        return new File(plugin.getDataFolder(), plugin.getConfig().getString("cache.snapshot.file", "cache.snapshot")).toPath();
+    }
+    
+    /**
+     * Identifies the database a snapshot was taken from, so switching databases never serves stale data
+     */
+    private static long sourceHash(InviteDatabase db) {
+        return UUID.nameUUIDFromBytes(db.getLocation().getBytes(StandardCharsets.UTF_8)).getMostSignificantBits();
+    }
+    
+    /**
+     * Whether the name index is kept at all
+     * Filter mode is for whitelists too big to keep in memory, names included
+     */
+    public boolean isNameIndexEnabled() {
+        return mode == CacheMode.FULL && plugin.getConfig().getBoolean("cache.name-index", true);
+    }
+    
+    /**
+     * Rebuild the name index from the whitelist table alongside the UUID load
+     */
+    private void loadNames(InviteDatabase db) {
+        if (!isNameIndexEnabled()) {
+            return;
+        }
+        
+        PlayerNameIndex.Builder builder = nameIndex.builder();
+        db.forEachPlayerName(builder::add).thenAccept(count -> {
+            nameIndex.publish(builder);
+            plugin.getLogger().info("Indexed " + count + " player names");
+        }).exceptionally(ex -> {
+            nameIndex.abort();
+            plugin.getLogger().warning("Failed to load player name index: " + ex.getMessage());
             return null;
         });
     }
     
+    /**
+     * Replay changes made during the reload onto the new set (or filter), then swap it in
+     */
+    private void publish(UUIDSet snapshot, BloomFilter bloom, long version) {
+        synchronized (swapLock) {
+            for (PendingChange change : pendingChanges) {
+                if (change.added) {
+                    snapshot.add(change.uuid);
+                    if (bloom != null) {
+                        bloom.add(change.uuid);
+                    }
+                } else {
+                    snapshot.remove(change.uuid);
+                }
+            }
+            pendingChanges.clear();
+            
+            whitelistedUUIDs = snapshot;
+            filter = bloom;
+            syncedVersion = version;
+            
+            // A full load may add players no change event told us about, and any confirmed answer may be stale
+            changeEpoch++;
+            confirmed.clear();
+            if (denyCache != null) {
+                denyCache.clear();
+            }
+            bootSnapshot = null;
+            bootOverrides.clear();
+            isLoaded.set(true);
+            isLoading.set(false);
+            ready.complete(null);
+        }
+    }
+    
+    /**
+     * Apply changes recorded in the database change log since the last sync
+     * Falls back to a full reload on first start or when a gap in the log is detected
+     * Blocks on the database, so only call this from an async task
+     */
+    public void syncChanges() {
+        if (isLoading.get()) {
+            return; // The running load will pick everything up
+        }
+        
+        long fromVersion = syncedVersion;
+        if (!isLoaded.get() || fromVersion < 0) {
+            loadCache();
+            return;
+        }
+        
+        long startNanos = System.nanoTime();
+        int batchSize = Math.max(100, plugin.getConfig().getInt("cache.delta.batch-size", 5000));
+        long overlap = Math.max(0, plugin.getConfig().getLong("cache.delta.overlap-versions", 100));
+        
+        // Re-read a small trailing window: concurrent transactions can commit versions out of order
+        long cursor = Math.max(0, fromVersion - overlap);
+        long newestVersion = fromVersion;
+        int applied = 0;
+        List<UUID> unnamed = new ArrayList<>();
+        boolean nameIndexEnabled = isNameIndexEnabled();
+        
+        try {
+            while (true) {
+                WhitelistChange.Batch batch = database.getChangesSince(cursor, batchSize).join();
+                
+                // Log was reset/replaced, or entries we never saw have been pruned
+                // (an empty log has nothing to miss; skipped AUTO_INCREMENT ids aren't a gap)
+                boolean gap = (batch.maxVersion() > 0 && batch.maxVersion() < fromVersion) ||
+                    batch.prunedThrough() > fromVersion;
+                if (gap) {
+                    plugin.getLogger().warning("Gap detected in whitelist change log (synced to " + fromVersion +
+                        ", log holds " + batch.minVersion() + "-" + batch.maxVersion() + ", pruned through " +
+                        batch.prunedThrough() + "), doing a full reload");
+                    loadCache();
+                    return;
+                }
+                
+                synchronized (swapLock) {
+                    if (isLoading.get() || syncedVersion != fromVersion) {
+                        return; // A full load started meanwhile and supersedes this delta
+                    }
+                    for (WhitelistChange change : batch.changes()) {
+                        applyChange(change.uuid(), change.added());
+                        if (change.added() && nameIndexEnabled && nameIndex.getName(change.uuid()) == null) {
+                            unnamed.add(change.uuid());
+                        }
+                        cursor = change.version();
+                        newestVersion = Math.max(newestVersion, change.version());
+                    }
+                }
+                applied += batch.changes().size();
+                
+                if (batch.changes().size() < batchSize) {
+                    break;
+                }
+            }
+        } catch (Exception e) {
+            plugin.getLogger().warning("Failed to sync whitelist changes: " + e.getMessage());
+            return;
+        }
+        
+        synchronized (swapLock) {
+            if (syncedVersion == fromVersion) {
+                syncedVersion = newestVersion;
+            }
+        }
+        
+        // Players invited on other servers: pull their names so commands can resolve them
+        try {
+            for (int i = 0; i < unnamed.size(); i += 500) {
+                List<UUID> chunk = unnamed.subList(i, Math.min(unnamed.size(), i + 500));
+                database.getPlayerNames(chunk).join().forEach(nameIndex::update);
+            }
+        } catch (Exception e) {
+            plugin.getLogger().warning("Failed to look up names of newly whitelisted players: " + e.getMessage());
+        }
+        
+        metrics.recordRefresh("delta", startNanos);
+        
+        if (newestVersion > fromVersion) {
+            plugin.getLogger().fine("Applied " + applied + " whitelist changes (version " + fromVersion + " -> " + newestVersion + ")");
+        }
+    }
+    
+    /**
+     * Result of a whitelist check
+     */
+    public enum Status {
+        WHITELISTED,
+        NOT_WHITELISTED,
+        UNAVAILABLE // Cache still warming up and no answer within the deadline
+    }
+    
+    /**
+     * What to do with a login while the cache is not loaded yet
+     */
+    public enum ColdPolicy {
+        DENY,  // Fail fast: reject until the cache is ready
+        ALLOW, // Fail open: let everyone in until the cache is ready
+        QUEUE  // Hold the login for a coalesced database query or the cache, up to the deadline
+    }
+    
     /**
      * Check if a player is whitelisted (instant O(1) lookup)
+     * Never blocks longer than cache.cold-lookup.timeout-ms, even while the cache is warming up
      * @param uuid Player UUID
      * @return true if whitelisted
      */
     public boolean isWhitelisted(UUID uuid) {
-        if (!isLoaded.get()) {
-            plugin.getLogger().warning("Cache not loaded yet! Falling back to database query...");
-            // Fallback to database if cache not ready
-            return database.isWhitelisted(uuid).join();
+        return check(uuid) == Status.WHITELISTED;
+    }
+    
+    /**
+     * Check a player's whitelist status
+     * @param uuid Player UUID
+     * @return the status, UNAVAILABLE if the cache is cold and no answer arrived in time
+     */
+    public Status check(UUID uuid) {
+        if (isLoaded.get()) {
+            if (mode == CacheMode.FILTER) {
+                return checkFilter(uuid);
+            }
+            metrics.cacheHit();
+            return whitelistedUUIDs.contains(uuid) ? Status.WHITELISTED : Status.NOT_WHITELISTED;
+        }
+        
+        CacheSnapshot snapshot = bootSnapshot;
+        if (snapshot != null) {
+            metrics.cacheHit();
+            Boolean override = bootOverrides.get(uuid);
+            boolean whitelisted = override != null ? override :
+                snapshot.contains(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+            return whitelisted ? Status.WHITELISTED : Status.NOT_WHITELISTED;
+        }
+        
+        if (denyCache != null && denyCache.contains(uuid)) {
+            metrics.cacheHit();
+            return Status.NOT_WHITELISTED;
+        }
+        return checkCold(uuid);
+    }
+    
+    private Status checkCold(UUID uuid) {
+        ColdPolicy policy;
+        try {
+            policy = ColdPolicy.valueOf(plugin.getConfig().getString("cache.cold-lookup.policy", "queue").toUpperCase());
+        } catch (IllegalArgumentException e) {
+            policy = ColdPolicy.QUEUE;
         }
         
-        return whitelistedUUIDs.contains(uuid);
+        switch (policy) {
+            case ALLOW:
+                return Status.WHITELISTED;
+            case DENY:
+                return Status.UNAVAILABLE;
+            default:
+                break;
+        }
+        
+        long timeoutMillis = Math.max(0, plugin.getConfig().getLong("cache.cold-lookup.timeout-ms", 2000));
+        long epoch = currentEpoch();
+        CompletableFuture<Boolean> query = queryDatabase(uuid);
+        if (query == null) {
+            return Status.UNAVAILABLE; // Shed load instead of piling more queries on the database
+        }
+        
+        // Whichever answers first: this player's query or the full cache
+        try {
+            CompletableFuture.anyOf(query, ready).get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException | ExecutionException e) {
+            // Fall through: the cache may still have become ready
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Status.UNAVAILABLE;
+        }
+        
+        if (isLoaded.get()) {
+            return check(uuid);
+        }
+        if (query.isDone() && !query.isCompletedExceptionally()) {
+            metrics.databaseFallback();
+            boolean whitelisted = query.join();
+            if (!whitelisted) {
+                rememberDenied(uuid, epoch);
+            }
+            return whitelisted ? Status.WHITELISTED : Status.NOT_WHITELISTED;
+        }
+        return Status.UNAVAILABLE;
+    }
+    
+    /**
+     * Filter mode lookup: a filter negative is final, a positive is answered by the LRU or the database
+     */
+    private Status checkFilter(UUID uuid) {
+        BloomFilter bloom = filter;
+        if (!bloom.mightContain(uuid)) {
+            filterNegatives.increment();
+            metrics.cacheHit();
+            return Status.NOT_WHITELISTED;
+        }
+        
+        Boolean known = confirmed.get(uuid);
+        if (known != null) {
+            confirmedHits.increment();
+            metrics.cacheHit();
+            return known ? Status.WHITELISTED : Status.NOT_WHITELISTED;
+        }
+        if (denyCache != null && denyCache.contains(uuid)) {
+            metrics.cacheHit();
+            return Status.NOT_WHITELISTED;
+        }
+        
+        databaseConfirms.increment();
+        long epoch = currentEpoch();
+        
+        CompletableFuture<Boolean> query = queryDatabase(uuid);
+        if (query == null) {
+            return Status.UNAVAILABLE;
+        }
+        
+        long timeoutMillis = Math.max(0, plugin.getConfig().getLong("cache.filter.confirm-timeout-ms", 2000));
+        boolean whitelisted;
+        try {
+            whitelisted = query.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException | ExecutionException e) {
+            return Status.UNAVAILABLE;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Status.UNAVAILABLE;
+        }
+        
+        metrics.databaseFallback();
+        if (!whitelisted) {
+            falsePositives.increment();
+        }
+        if (!whitelisted && denyCache != null) {
+            // Keeps junk UUIDs that pass the filter from evicting real players from the LRU
+            rememberDenied(uuid, epoch);
+        } else {
+            synchronized (swapLock) {
+                // Skip caching if the whitelist changed while the query ran; the answer may predate it
+                if (changeEpoch == epoch) {
+                    confirmed.put(uuid, whitelisted);
+                }
+            }
+        }
+        return whitelisted ? Status.WHITELISTED : Status.NOT_WHITELISTED;
+    }
+    
+    private long currentEpoch() {
+        synchronized (swapLock) {
+            return changeEpoch;
+        }
+    }
+    
+    /**
+     * Put a database "not whitelisted" answer in the deny cache, unless the whitelist changed since the query started
+     */
+    private void rememberDenied(UUID uuid, long epoch) {
+        if (denyCache == null) {
+            return;
+        }
+        synchronized (swapLock) {
+            if (changeEpoch == epoch) {
+                denyCache.add(uuid);
+            }
+        }
+    }
+    
+    /**
+     * Start (or join) the database query for a UUID, so concurrent logins share one query
+     * @return the query, or null if too many are already pending
+     */
+    private CompletableFuture<Boolean> queryDatabase(UUID uuid) {
+        int maxPending = plugin.getConfig().getInt("cache.cold-lookup.max-pending", 256);
+        
+        CompletableFuture<Boolean> query = pendingLookups.get(uuid);
+        if (query != null) {
+            return query;
+        }
+        if (pendingLookups.size() >= maxPending) {
+            return null;
+        }
+        
+        CompletableFuture<Boolean> created = new CompletableFuture<>();
+        query = pendingLookups.putIfAbsent(uuid, created);
+        if (query != null) {
+            return query;
+        }
+        
+        database.isWhitelisted(uuid).whenComplete((whitelisted, ex) -> {
+            pendingLookups.remove(uuid, created);
+            if (ex != null) {
+                created.completeExceptionally(ex);
+            } else {
+                created.complete(whitelisted);
+            }
+        });
+        return created;
+    }
+    
+    /**
+     * Apply one change to the live structure (caller holds swapLock)
+     */
+    private void applyChange(UUID uuid, boolean added) {
+        changeEpoch++;
+        if (added) {
+            revoked.remove(uuid);
+            if (denyCache != null) {
+                denyCache.remove(uuid);
+            }
+        } else {
+            revoked.add(uuid);
+            nameIndex.remove(uuid);
+        }
+        
+        if (mode == CacheMode.FILTER) {
+            BloomFilter bloom = filter;
+            if (added && bloom != null) {
+                bloom.add(uuid);
+            }
+            confirmed.put(uuid, added);
+            return;
+        }
+        
+        if (added) {
+            whitelistedUUIDs.add(uuid);
+        } else {
+            whitelistedUUIDs.remove(uuid);
+        }
     }
     
     /**
      * Add player to cache (call after database insert)
      */
     public void addToCache(UUID uuid) {
-        whitelistedUUIDs.add(uuid);
+        synchronized (swapLock) {
+            applyChange(uuid, true);
+            if (isLoading.get()) {
+                pendingChanges.add(new PendingChange(uuid, true));
+            }
+            if (bootSnapshot != null) {
+                bootOverrides.put(uuid, Boolean.TRUE);
+            }
+        }
         plugin.getLogger().fine("Added " + uuid + " to cache");
     }
     
@@ -92,15 +711,54 @@ public class WhitelistCache {
      * Remove player from cache (call after database delete)
      */
     public void removeFromCache(UUID uuid) {
-        whitelistedUUIDs.remove(uuid);
+        synchronized (swapLock) {
+            applyChange(uuid, false);
+            if (isLoading.get()) {
+                pendingChanges.add(new PendingChange(uuid, false));
+            }
+            if (bootSnapshot != null) {
+                bootOverrides.put(uuid, Boolean.FALSE);
+            }
+        }
         plugin.getLogger().fine("Removed " + uuid + " from cache");
     }
     
     /**
      * Get cache size
+     * In filter mode this is the number of filter insertions, see {@link #isCacheSizeApproximate()}
      */
     public int getCacheSize() {
-        return whitelistedUUIDs.size();
+        BloomFilter bloom = filter;
+        if (mode == CacheMode.FILTER) {
+            return bloom != null ? (int) bloom.getInsertions() : 0;
+        }
+        CacheSnapshot snapshot = bootSnapshot;
+        return !isLoaded.get() && snapshot != null ? snapshot.size() : whitelistedUUIDs.size();
+    }
+    
+    /**
+     * Whether {@link #getCacheSize()} is an estimate (filter mode: insertions, which removals don't undo)
+     */
+    public boolean isCacheSizeApproximate() {
+        return mode == CacheMode.FILTER;
+    }
+    
+    /**
+     * Get the real memory footprint of the cache table in bytes
+     */
+    public long getMemoryUsageBytes() {
+        BloomFilter bloom = filter;
+        if (mode == CacheMode.FILTER) {
+            return (bloom != null ? bloom.memoryUsageBytes() : 0) + confirmed.memoryUsageBytes();
+        }
+        return whitelistedUUIDs.memoryUsageBytes();
+    }
+    
+    /**
+     * Check if the cache table lives off-heap
+     */
+    public boolean isOffHeap() {
+        return whitelistedUUIDs.isOffHeap();
     }
     
     /**
@@ -121,16 +779,110 @@ public class WhitelistCache {
      * Clear cache (useful for troubleshooting)
      */
     public void clearCache() {
-        whitelistedUUIDs.clear();
-        isLoaded.set(false);
+        synchronized (swapLock) {
+            isLoaded.set(false);
+            syncedVersion = -1;
+            whitelistedUUIDs = new UUIDSet(offHeap);
+            filter = null;
+            confirmed.clear();
+            bootSnapshot = null;
+            bootOverrides.clear();
+            if (ready.isDone()) {
+                ready = new CompletableFuture<>();
+            }
+        }
         plugin.getLogger().info("Cache cleared");
     }
     
+    /**
+     * Whether the player was removed from the whitelist while this server was running
+     */
+    public boolean wasRevoked(UUID uuid) {
+        return !revoked.isEmpty() && revoked.contains(uuid);
+    }
+    
+    /**
+     * @return the deny cache, or null if disabled
+     */
+    public DenyCache getDenyCache() {
+        return denyCache;
+    }
+    
+    public CacheMode getMode() {
+        return mode;
+    }
+    
+    /**
+     * Filter size and hit counters
+     * @return the stats, or null when not in filter mode or the filter isn't built yet
+     */
+    public FilterStats getFilterStats() {
+        BloomFilter bloom = filter;
+        if (mode != CacheMode.FILTER || bloom == null) {
+            return null;
+        }
+        return new FilterStats(bloom.getBitCount(), bloom.getHashCount(), bloom.getInsertions(), bloom.getTargetFpp(),
+            bloom.getExpectedFpp(), confirmed.size(), filterNegatives.sum(), confirmedHits.sum(),
+            databaseConfirms.sum(), falsePositives.sum());
+    }
+    
+    /**
+     * Snapshot of the filter-mode counters
+     * @param negatives Lookups rejected by the filter alone
+     * @param lruHits Filter positives answered from the LRU
+     * @param databaseConfirms Filter positives that went to the database
+     * @param falsePositives Database confirms that turned out not to be whitelisted
+     */
+    public record FilterStats(long bits, int hashes, long insertions, double targetFpp, double expectedFpp,
+                              int lruSize, long negatives, long lruHits, long databaseConfirms, long falsePositives) {
+    }
+    
+    /**
+     * Get the name <-> UUID index
+     */
+    public PlayerNameIndex getNameIndex() {
+        return nameIndex;
+    }
+    
+    /**
+     * Get the change log version the cache is synced to (-1 if unknown)
+     */
+    public long getSyncedVersion() {
+        return syncedVersion;
+    }
+    
+    /**
+     * Point the cache at a new database (after a reload); the next refresh does a full load
+     */
+    public void setDatabase(InviteDatabase database) {
+        synchronized (swapLock) {
+            this.database = database;
+            syncedVersion = -1;
+        }
+    }
+    
     /**
      * Refresh cache from database
+     * Uses a delta sync when cache.sync-mode is "delta", otherwise a full reload
      */
     public void refresh() {
-        loadCache();
+        // Delta sync only ever adds bits, so a filter under heavy churn has to be rebuilt from scratch
+        BloomFilter bloom = filter;
+        if (mode == CacheMode.FILTER && bloom != null && !isLoading.get() &&
+            (bloom.getInsertions() > bloom.getCapacity() || bloom.getExpectedFpp() > bloom.getTargetFpp() * FILTER_REBUILD_FACTOR)) {
+            plugin.getLogger().info("Rebuilding whitelist filter (" + bloom.getInsertions() + " insertions for a capacity of " +
+                bloom.getCapacity() + ", expected false-positive rate " + String.format("%.3f%%", bloom.getExpectedFpp() * 100) + ")");
+            loadCache();
+            return;
+        }
+        
+        if ("delta".equalsIgnoreCase(plugin.getConfig().getString("cache.sync-mode", "delta"))) {
+            syncChanges();
+        } else {
+            loadCache();
+        }
+    }
+    
+    private record PendingChange(UUID uuid, boolean added) {
     }
 }
-
@@ -0,0 +1,148 @@
+package anderssxn.com.inviteList.database;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded executor for blocking JDBC work
+ * Keeps database calls off ForkJoinPool.commonPool(), which is shared with the server and other plugins
+ *
+ * PLATFORM: fixed pool of daemon threads sized to the connection pool
+ * VIRTUAL:  one virtual thread per task (Java 21), concurrency capped by a semaphore
+ *
+ * Both modes reject work once {@code threads + queueCapacity} tasks are pending (back-pressure).
+ */
+public class DatabaseExecutor implements Executor {
+
+    public enum Mode {
+        PLATFORM,
+        VIRTUAL
+    }
+
+    private final Mode mode;
+    private final int threads;
+    private final int maxPending;
+    private final ExecutorService delegate;
+    private final Semaphore concurrency;
+
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    public DatabaseExecutor(Mode mode, int threads, int queueCapacity) {
+        this.mode = mode;
+        this.threads = Math.max(1, threads);
+        this.maxPending = this.threads + Math.max(0, queueCapacity);
+
+        if (mode == Mode.VIRTUAL) {
+            this.delegate = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("InviteList-DB-", 0).factory());
+            this.concurrency = new Semaphore(this.threads);
+        } else {
+            AtomicInteger threadId = new AtomicInteger();
+            ThreadFactory factory = runnable -> {
+                Thread thread = new Thread(runnable, "InviteList-DB-" + threadId.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            };
+            // Capacity is enforced by the pending counter, the queue itself never fills up
+            this.delegate = new ThreadPoolExecutor(this.threads, this.threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), factory);
+            this.concurrency = null;
+        }
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        if (pending.incrementAndGet() > maxPending) {
+            pending.decrementAndGet();
+            rejected.increment();
+            throw new RejectedExecutionException("Database executor saturated (" + maxPending + " pending tasks)");
+        }
+
+        try {
+            delegate.execute(() -> run(task));
+        } catch (RejectedExecutionException e) {
+            pending.decrementAndGet();
+            rejected.increment();
+            throw e;
+        }
+    }
+
+    private void run(Runnable task) {
+        boolean acquired = false;
+        try {
+            if (concurrency != null) {
+                concurrency.acquire();
+                acquired = true;
+            }
+            active.incrementAndGet();
+            try {
+                task.run();
+            } finally {
+                active.decrementAndGet();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (acquired) {
+                concurrency.release();
+            }
+            pending.decrementAndGet();
+            completed.increment();
+        }
+    }
+
+    /**
+     * Stop accepting work and wait for in-flight queries to finish
+     * @return true if everything finished within the timeout
+     */
+    public boolean shutdown(long timeout, TimeUnit unit) {
+        delegate.shutdown();
+        try {
+            if (delegate.awaitTermination(timeout, unit)) {
+                return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        delegate.shutdownNow();
+        return false;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Tasks submitted but not yet running
+     */
+    public int getQueueDepth() {
+        return Math.max(0, pending.get() - active.get());
+    }
+
+    public int getActiveCount() {
+        return active.get();
+    }
+
+    public long getCompletedCount() {
+        return completed.sum();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+}
@@ -0,0 +1,14 @@
+package anderssxn.com.inviteList.database;
+
+import java.util.UUID;
+
+/**
+ * A row of the invitations table
+ * @param inviterUuid Player who sent the invite
+ * @param inviterName Inviter name at the time of the invite
+ * @param inviteeUuid Player who was invited
+ * @param inviteeName Invitee name at the time of the invite
+ * @param invitedAt Epoch millis
+ */
+public record Invitation(UUID inviterUuid, String inviterName, UUID inviteeUuid, String inviteeName, long invitedAt) {
+}
@@ -0,0 +1,370 @@
+package anderssxn.com.inviteList.database;
+
+import anderssxn.com.inviteList.InviteList;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+
+/**
+ * Write-behind queue for invitation history
+ *
+ * The invitations table isn't needed to let anyone in, so its rows are no longer written inside the
+ * whitelist transaction. Invites are queued here and written by one background thread in batches,
+ * as soon as batch-size rows are waiting or every flush interval, whichever comes first.
+ *
+ * Rows the database refuses, or that don't fit in the queue, are appended to an NDJSON file in the
+ * plugin folder and replayed once the database takes writes again, so history survives outages and
+ * restarts. {@link #close()} drains the queue before the connection pool shuts down.
+ */
+public class InvitationWriter {
+    
+    private static final String FALLBACK_FILE = "invitations-pending.ndjson";
+    
+    private final InviteList plugin;
+    private final BlockingQueue<Invitation> queue;
+    private final int batchSize;
+    private final long flushIntervalMillis;
+    private final File fallbackFile;
+    private final Object fallbackLock = new Object();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+    private final LongAdder written = new LongAdder();
+    
+    private ScheduledExecutorService scheduler;
+    private volatile boolean closed;
+    private volatile int fallbackCount; // Records waiting in the fallback file
+    private volatile boolean failing;
+    
+    /**
+     * @param queueSize Invitations kept in memory before new ones go straight to the fallback file
+     * @param batchSize Rows per database write; a full batch is flushed right away
+     * @param flushIntervalMillis Longest time a record waits in the queue
+     */
+    public InvitationWriter(InviteList plugin, int queueSize, int batchSize, long flushIntervalMillis) {
+        this.plugin = plugin;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueSize));
+        this.batchSize = Math.max(1, batchSize);
+        this.flushIntervalMillis = Math.max(50, flushIntervalMillis);
+        this.fallbackFile = new File(plugin.getDataFolder(), FALLBACK_FILE);
+    }
+    
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "InviteList-InvitationWriter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        
+        // Left over from an outage or a crash: replay on the first flush
+        fallbackCount = countFallbackRecords();
+        if (fallbackCount > 0) {
+            plugin.getLogger().info(fallbackCount + " invitation records are waiting in " + FALLBACK_FILE + ", replaying them");
+        }
+        scheduler.scheduleWithFixedDelay(this::flush, 0, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * Queue an invitation record; never blocks
+     */
+    public void add(Invitation invitation) {
+        if (closed || !queue.offer(invitation)) {
+            // Shutting down or over capacity: keep it on disk instead of dropping it
+            spill(List.of(invitation));
+            return;
+        }
+        
+        if (queue.size() >= batchSize && flushScheduled.compareAndSet(false, true)) {
+            try {
+                scheduler.execute(() -> {
+                    flushScheduled.set(false);
+                    flush();
+                });
+            } catch (RejectedExecutionException e) {
+                flushScheduled.set(false); // Closing; close() drains the queue
+            }
+        }
+    }
+    
+    /**
+     * Write everything queued so far on the writer thread
+     * @return future completed once the queue has been written (or spilled to the fallback file)
+     */
+    public CompletableFuture<Void> flushAsync() {
+        try {
+            return CompletableFuture.runAsync(this::flush, scheduler);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+    
+    /**
+     * Stop the writer thread and write whatever is left, blocking until done
+     * If the writer thread is still busy after the timeout, the rest goes to the fallback file instead
+     */
+    public void close() {
+        closed = true;
+        boolean stopped = true;
+        if (scheduler != null) {
+            scheduler.shutdown();
+            try {
+                stopped = scheduler.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                stopped = false;
+                Thread.currentThread().interrupt();
+            }
+        }
+        
+        if (!stopped) {
+            // A second flush would race the writer thread on the database; park the queue on disk for the next start
+            List<Invitation> rest = new ArrayList<>();
+            queue.drainTo(rest);
+            if (!rest.isEmpty()) {
+                spill(rest);
+            }
+            plugin.getLogger().warning("Invitation writer did not stop in time, " + rest.size() +
+                " queued records were kept in " + FALLBACK_FILE);
+            return;
+        }
+        
+        int remaining = queue.size();
+        flush();
+        if (remaining > 0) {
+            plugin.getLogger().info("Wrote " + remaining + " queued invitation records");
+        }
+    }
+    
+    public int getQueueDepth() {
+        return queue.size();
+    }
+    
+    public long getWrittenCount() {
+        return written.sum();
+    }
+    
+    public int getFallbackCount() {
+        return fallbackCount;
+    }
+    
+    private void flush() {
+        // Older records first, so the table keeps invite order
+        if (fallbackCount > 0) {
+            replayFallback();
+        }
+        
+        List<Invitation> batch = new ArrayList<>(batchSize);
+        while (queue.drainTo(batch, batchSize) > 0) {
+            if (fallbackCount > 0 || !write(batch)) {
+                // Database unavailable: park the batch and everything behind it on disk
+                queue.drainTo(batch);
+                spill(batch);
+                return;
+            }
+            batch.clear();
+        }
+    }
+    
+    private boolean write(List<Invitation> batch) {
+        InviteDatabase database = plugin.getDatabase();
+        if (database == null) {
+            return false;
+        }
+        
+        try {
+            database.insertInvitations(batch).join();
+            written.add(batch.size());
+            if (failing) {
+                failing = false;
+                plugin.getLogger().info("Invitation history writes recovered");
+            }
+            return true;
+        } catch (Exception e) {
+            // Log once per outage, not once per batch
+            if (!failing) {
+                failing = true;
+                plugin.getLogger().log(Level.WARNING, "Failed to write invitation history, keeping it in " + FALLBACK_FILE, e);
+            }
+            return false;
+        }
+    }
+    
+    /**
+     * Append records to the fallback file and sync it to disk
+     */
+    private void spill(List<Invitation> invitations) {
+        synchronized (fallbackLock) {
+            try (FileOutputStream out = new FileOutputStream(fallbackFile, true);
+                 Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8)) {
+                for (Invitation invitation : invitations) {
+                    writer.write(toJson(invitation));
+                    writer.write('\n');
+                }
+                writer.flush();
+                out.getFD().sync();
+                fallbackCount += invitations.size();
+            } catch (IOException e) {
+                plugin.getLogger().log(Level.SEVERE, "Lost " + invitations.size() + " invitation records: could not write " + FALLBACK_FILE, e);
+            }
+        }
+    }
+    
+    /**
+     * Write the fallback file to the database; whatever doesn't make it stays in the file
+     */
+    private void replayFallback() {
+        synchronized (fallbackLock) {
+            List<Invitation> pending = new ArrayList<>();
+            try (BufferedReader reader = Files.newBufferedReader(fallbackFile.toPath(), StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.isBlank()) {
+                        continue;
+                    }
+                    try {
+                        pending.add(fromJson(line));
+                    } catch (IOException | RuntimeException e) {
+                        // A line torn by a crash mid-write
+                        plugin.getLogger().warning("Skipping unreadable line in " + FALLBACK_FILE + ": " + line);
+                    }
+                }
+            } catch (IOException e) {
+                plugin.getLogger().log(Level.WARNING, "Failed to read " + FALLBACK_FILE, e);
+                return;
+            }
+            
+            int done = 0;
+            while (done < pending.size()) {
+                List<Invitation> batch = pending.subList(done, Math.min(pending.size(), done + batchSize));
+                if (!write(batch)) {
+                    break;
+                }
+                done += batch.size();
+            }
+            if (done == 0 && !pending.isEmpty()) {
+                return; // Database still down, file unchanged
+            }
+            
+            try {
+                if (done == pending.size()) {
+                    Files.deleteIfExists(fallbackFile.toPath());
+                    plugin.getLogger().info("Replayed " + done + " invitation records from " + FALLBACK_FILE);
+                } else {
+                    rewriteFallback(pending.subList(done, pending.size()));
+                }
+                fallbackCount = pending.size() - done;
+            } catch (IOException e) {
+                // Rows already written would be replayed twice; history is append-only, so that only duplicates them
+                plugin.getLogger().log(Level.WARNING, "Failed to update " + FALLBACK_FILE, e);
+            }
+        }
+    }
+    
+    private void rewriteFallback(List<Invitation> remaining) throws IOException {
+        File temp = new File(fallbackFile.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp);
+             Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8)) {
+            for (Invitation invitation : remaining) {
+                writer.write(toJson(invitation));
+                writer.write('\n');
+            }
+            writer.flush();
+            out.getFD().sync();
+        }
+        Files.move(temp.toPath(), fallbackFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    
+    private int countFallbackRecords() {
+        if (!fallbackFile.isFile()) {
+            return 0;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(fallbackFile.toPath(), StandardCharsets.UTF_8)) {
+            int count = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isBlank()) {
+                    count++;
+                }
+            }
+            return count;
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "Failed to read " + FALLBACK_FILE, e);
+            return 0;
+        }
+    }
+    
+    private static String toJson(Invitation invitation) throws IOException {
+        StringWriter out = new StringWriter();
+        try (JsonWriter json = new JsonWriter(out)) {
+            json.beginObject()
+                .name("inviter_uuid").value(invitation.inviterUuid().toString())
+                .name("inviter_name").value(invitation.inviterName())
+                .name("invitee_uuid").value(invitation.inviteeUuid().toString())
+                .name("invitee_name").value(invitation.inviteeName())
+                .name("invited_at").value(invitation.invitedAt())
+                .endObject();
+        }
+        return out.toString();
+    }
+    
+    private static Invitation fromJson(String line) throws IOException {
+        String inviterUuid = null;
+        String inviterName = null;
+        String inviteeUuid = null;
+        String inviteeName = null;
+        long invitedAt = 0;
+        
+        try (JsonReader json = new JsonReader(new StringReader(line))) {
+            json.beginObject();
+            while (json.hasNext()) {
+                switch (json.nextName()) {
+                    case "inviter_uuid":
+                        inviterUuid = json.nextString();
+                        break;
+                    case "inviter_name":
+                        inviterName = json.nextString();
+                        break;
+                    case "invitee_uuid":
+                        inviteeUuid = json.nextString();
+                        break;
+                    case "invitee_name":
+                        inviteeName = json.nextString();
+                        break;
+                    case "invited_at":
+                        invitedAt = json.nextLong();
+                        break;
+                    default:
+                        json.skipValue();
+                        break;
+                }
+            }
+            json.endObject();
+        }
+        
+        if (inviterUuid == null || inviteeUuid == null || inviterName == null || inviteeName == null) {
+            throw new IllegalArgumentException("missing field");
+        }
+        return new Invitation(UUID.fromString(inviterUuid), inviterName, UUID.fromString(inviteeUuid), inviteeName, invitedAt);
+    }
+}
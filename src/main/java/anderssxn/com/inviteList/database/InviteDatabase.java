@@ -3,31 +3,76 @@ package anderssxn.com.inviteList.database;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
 import anderssxn.com.inviteList.InviteList;
+import anderssxn.com.inviteList.metrics.Metrics;
 
+import java.io.File;
 import java.sql.*;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 
 public class InviteDatabase {
     
+    private static final int STREAM_FETCH_SIZE = 10_000;
+    
+    /** Schema version this plugin reads and writes */
+    public static final int SCHEMA_VERSION = SchemaMigrator.LATEST_VERSION;
+    
     private final InviteList plugin;
     private final DatabaseType type;
+    private final String sqliteFile;
     private HikariDataSource dataSource;
+    private HikariDataSource readDataSource; // SQLite WAL mode only: read-only connections beside the single writer
+    private DatabaseExecutor executor;
     
     public InviteDatabase(InviteList plugin, DatabaseType type) {
+        this(plugin, type, "invitelist.db");
+    }
+    
+    /**
+     * @param sqliteFile SQLite file relative to the plugin folder (ignored for MySQL), e.g. for backups
+     */
+    public InviteDatabase(InviteList plugin, DatabaseType type, String sqliteFile) {
         this.plugin = plugin;
         this.type = type;
+        this.sqliteFile = sqliteFile;
     }
     
     public void connect() {
+        connect(true);
+    }
+    
+    /**
+     * @param migrate Create or upgrade the schema; false for a database that is only read from (a migration source)
+     */
+    public void connect(boolean migrate) {
         try {
             HikariConfig config = new HikariConfig();
+            String jdbcUrl = null;
+            int readers = 0;
             
             if (type == DatabaseType.SQLITE) {
-                config.setJdbcUrl("jdbc:sqlite:" + plugin.getDataFolder().getAbsolutePath() + "/invitelist.db");
+                File file = new File(plugin.getDataFolder(), sqliteFile);
+                file.getParentFile().mkdirs();
+                jdbcUrl = "jdbc:sqlite:" + file.getAbsolutePath();
+                config.setJdbcUrl(jdbcUrl);
                 config.setDriverClassName("org.sqlite.JDBC");
-                config.setMaximumPoolSize(1);
+                config.setMaximumPoolSize(1); // SQLite allows one writer at a time
+                
+                if (isSqliteWal()) {
+                    readers = Math.max(1, plugin.getConfig().getInt("database.sqlite.read-pool-size", 4));
+                    config.addDataSourceProperty("journal_mode", "WAL");
+                    // In WAL mode only a power loss (not a crash) can lose the last commits, and nothing can corrupt the file
+                    config.addDataSourceProperty("synchronous", "NORMAL");
+                    applySqliteTuning(config);
+                }
             } else {
                 String host = plugin.getConfig().getString("database.mysql.host", "localhost");
                 int port = plugin.getConfig().getInt("database.mysql.port", 3306);
@@ -35,98 +80,254 @@ public class InviteDatabase {
                 String username = plugin.getConfig().getString("database.mysql.username", "root");
                 String password = plugin.getConfig().getString("database.mysql.password", "");
                 
-                config.setJdbcUrl("jdbc:mysql://" + host + ":" + port + "/" + database + "?useSSL=false&autoReconnect=true");
+                // Broken connections are retired by the pool, so no autoReconnect
+                config.setJdbcUrl("jdbc:mysql://" + host + ":" + port + "/" + database + "?useSSL=false" +
+                    "&rewriteBatchedStatements=true"); // Send JDBC batches as multi-row INSERTs
                 config.setUsername(username);
                 config.setPassword(password);
                 config.setDriverClassName("com.mysql.cj.jdbc.Driver");
-                config.setMaximumPoolSize(10);
+                config.setMaximumPoolSize(getMysqlPoolSize());
+                applyStatementCache(config);
             }
             
-            config.setConnectionTestQuery("SELECT 1");
+            applyPoolSettings(config);
+            executor = createExecutor(type == DatabaseType.SQLITE ? 1 + readers : getMysqlPoolSize());
+            
             config.setPoolName("InviteList-Pool");
             
             dataSource = new HikariDataSource(config);
             plugin.getLogger().info("Connected to " + type + " database!");
             
-            createTables();
+            if (migrate) {
+                migrateSchema();
+            }
+            
+            // Opened after the schema is in place; the writer has already switched the file to WAL
+            if (readers > 0) {
+                readDataSource = createSqliteReadPool(jdbcUrl, readers);
+                plugin.getLogger().info("SQLite WAL mode: 1 writer, " + readers + " read-only connections");
+            }
             
         } catch (Exception e) {
             plugin.getLogger().log(Level.SEVERE, "Failed to connect to database!", e);
         }
     }
     
+    /**
+     * MySQL pool size: database.pool.maximum-size, or the older database.mysql.max-pool-size if only that is set
+     */
+    private int getMysqlPoolSize() {
+        String path = plugin.getConfig().isSet("database.pool.maximum-size") || !plugin.getConfig().isSet("database.mysql.max-pool-size") ?
+            "database.pool.maximum-size" : "database.mysql.max-pool-size";
+        return Math.max(1, plugin.getConfig().getInt(path, 10));
+    }
+    
+    /**
+     * Timeouts and leak detection from database.pool, for every pool this database opens
+     * Connections are validated with JDBC4 Connection.isValid(), as no test query is set
+     */
+    private void applyPoolSettings(HikariConfig config) {
+        config.setMinimumIdle(Math.max(0, plugin.getConfig().getInt("database.pool.minimum-idle", 2)));
+        config.setConnectionTimeout(Math.max(250, plugin.getConfig().getLong("database.pool.connection-timeout-ms", 10000)));
+        config.setIdleTimeout(Math.max(0, plugin.getConfig().getLong("database.pool.idle-timeout-ms", 600000)));
+        config.setMaxLifetime(Math.max(30000, plugin.getConfig().getLong("database.pool.max-lifetime-ms", 1800000)));
+        
+        long leakThreshold = plugin.getConfig().getLong("database.pool.leak-detection-threshold-ms", 0);
+        if (leakThreshold > 0) {
+            // Hikari ignores anything under 2s
+            config.setLeakDetectionThreshold(Math.max(2000, leakThreshold));
+        }
+    }
+    
+    /**
+     * Connector/J prepared statement cache, so hot queries are looked up per connection instead of parsed again
+     */
+    private void applyStatementCache(HikariConfig config) {
+        if (!plugin.getConfig().getBoolean("database.pool.statement-cache.enabled", true)) {
+            return;
+        }
+        
+        config.addDataSourceProperty("cachePrepStmts", "true");
+        config.addDataSourceProperty("prepStmtCacheSize", String.valueOf(plugin.getConfig().getInt("database.pool.statement-cache.size", 250)));
+        config.addDataSourceProperty("prepStmtCacheSqlLimit", String.valueOf(plugin.getConfig().getInt("database.pool.statement-cache.sql-limit", 2048)));
+        // Parsed once by the server, then only the parameters are sent
+        config.addDataSourceProperty("useServerPrepStmts", String.valueOf(plugin.getConfig().getBoolean("database.pool.statement-cache.server-side", true)));
+        // Skip the round trips for session state the driver already knows
+        config.addDataSourceProperty("useLocalSessionState", "true");
+        config.addDataSourceProperty("cacheServerConfiguration", "true");
+        config.addDataSourceProperty("elideSetAutoCommits", "true");
+        config.addDataSourceProperty("maintainTimeStats", "false");
+    }
+    
+    private boolean isSqliteWal() {
+        return plugin.getConfig().getString("database.sqlite.mode", "wal").equalsIgnoreCase("wal");
+    }
+    
+    /**
+     * Per-connection SQLite settings shared by the writer and the readers
+     */
+    private void applySqliteTuning(HikariConfig config) {
+        // Negative cache_size is in KiB rather than pages
+        long cacheKib = Math.max(0, plugin.getConfig().getLong("database.sqlite.cache-size-mb", 16)) * 1024;
+        long mmapBytes = Math.max(0, plugin.getConfig().getLong("database.sqlite.mmap-size-mb", 256)) * 1024 * 1024;
+        config.addDataSourceProperty("cache_size", String.valueOf(-cacheKib));
+        // Readers wait out checkpoints instead of failing with SQLITE_BUSY
+        config.addDataSourceProperty("busy_timeout", "5000");
+        config.setConnectionInitSql("PRAGMA mmap_size = " + mmapBytes);
+    }
+    
+    /**
+     * Read-only connections for SQLite in WAL mode, where readers don't block the writer or each other
+     */
+    private HikariDataSource createSqliteReadPool(String jdbcUrl, int size) {
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl(jdbcUrl);
+        config.setDriverClassName("org.sqlite.JDBC");
+        config.setMaximumPoolSize(size);
+        config.addDataSourceProperty("open_mode", "1"); // SQLITE_OPEN_READONLY
+        applySqliteTuning(config);
+        applyPoolSettings(config);
+        config.setPoolName("InviteList-ReadPool");
+        return new HikariDataSource(config);
+    }
+    
+    /**
+     * Build the executor that runs all blocking JDBC work
+     * @param poolSize Connection pool size; more threads than connections would just wait on the pool
+     */
+    private DatabaseExecutor createExecutor(int poolSize) {
+        String modeStr = plugin.getConfig().getString("database.executor.type", "platform").toUpperCase();
+        DatabaseExecutor.Mode mode;
+        try {
+            mode = DatabaseExecutor.Mode.valueOf(modeStr);
+        } catch (IllegalArgumentException e) {
+            plugin.getLogger().warning("Invalid database executor type '" + modeStr + "', defaulting to platform");
+            mode = DatabaseExecutor.Mode.PLATFORM;
+        }
+        
+        int threads = plugin.getConfig().getInt("database.executor.threads", 0);
+        if (threads <= 0) {
+            threads = poolSize;
+        }
+        int queueCapacity = plugin.getConfig().getInt("database.executor.queue-capacity", 1000);
+        
+        plugin.getLogger().info("Database executor: " + mode + " (" + threads + " threads, queue " + queueCapacity + ")");
+        return new DatabaseExecutor(mode, threads, queueCapacity);
+    }
+    
+    /**
+     * Run blocking database work on the dedicated executor
+     * A saturated executor yields a failed future instead of throwing at the caller
+     */
+    private <T> CompletableFuture<T> supplyAsync(String operation, Supplier<T> task) {
+        if (executor == null) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Database is not connected"));
+        }
+        
+        // Time the work itself, not the wait for a thread (that shows up as executor queue depth)
+        Metrics metrics = plugin.getMetrics();
+        Supplier<T> timed = () -> {
+            long start = System.nanoTime();
+            boolean failed = true;
+            try {
+                T result = task.get();
+                failed = false;
+                return result;
+            } finally {
+                metrics.recordDatabase(operation, start, failed);
+            }
+        };
+        
+        try {
+            return CompletableFuture.supplyAsync(timed, executor);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+    
+    public DatabaseExecutor getExecutor() {
+        return executor;
+    }
+    
+    public DatabaseType getType() {
+        return type;
+    }
+    
+    public boolean isConnected() {
+        return dataSource != null && !dataSource.isClosed();
+    }
+    
+    /**
+     * Identifies the underlying database (SQLite file path or MySQL host/port/schema)
+     */
+    public String getLocation() {
+        if (type == DatabaseType.SQLITE) {
+            return "sqlite:" + new File(plugin.getDataFolder(), sqliteFile).getAbsolutePath();
+        }
+        return "mysql:" + plugin.getConfig().getString("database.mysql.host", "localhost") + ":" +
+            plugin.getConfig().getInt("database.mysql.port", 3306) + "/" +
+            plugin.getConfig().getString("database.mysql.database", "invitelist");
+    }
+    
     public void disconnect() {
+        // Let in-flight queries finish before the pool goes away
+        if (executor != null) {
+            if (!executor.shutdown(10, TimeUnit.SECONDS)) {
+                plugin.getLogger().warning("Database executor did not finish in time, pending queries were cancelled");
+            }
+        }
+        
+        if (readDataSource != null && !readDataSource.isClosed()) {
+            readDataSource.close();
+        }
         if (dataSource != null && !dataSource.isClosed()) {
             dataSource.close();
             plugin.getLogger().info("Disconnected from database");
         }
     }
     
-    private void createTables() {
-        try (Connection conn = getConnection()) {
-            
-            // Whitelist table
-            String whitelistTable = type == DatabaseType.SQLITE ?
-                "CREATE TABLE IF NOT EXISTS whitelist (" +
-                "uuid TEXT PRIMARY KEY, " +
-                "name TEXT NOT NULL, " +
-                "invited_by TEXT, " +
-                "invited_at INTEGER NOT NULL" +
-                ")" :
-                "CREATE TABLE IF NOT EXISTS whitelist (" +
-                "uuid VARCHAR(36) PRIMARY KEY, " +
-                "name VARCHAR(16) NOT NULL, " +
-                "invited_by VARCHAR(36), " +
-                "invited_at BIGINT NOT NULL, " +
-                "INDEX idx_inviter (invited_by)" +
-                ")";
-            
-            // Invitations table (tracks who invited whom)
-            String invitationsTable = type == DatabaseType.SQLITE ?
-                "CREATE TABLE IF NOT EXISTS invitations (" +
-                "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
-                "inviter_uuid TEXT NOT NULL, " +
-                "inviter_name TEXT NOT NULL, " +
-                "invitee_uuid TEXT NOT NULL, " +
-                "invitee_name TEXT NOT NULL, " +
-                "invited_at INTEGER NOT NULL" +
-                ")" :
-                "CREATE TABLE IF NOT EXISTS invitations (" +
-                "id INT PRIMARY KEY AUTO_INCREMENT, " +
-                "inviter_uuid VARCHAR(36) NOT NULL, " +
-                "inviter_name VARCHAR(16) NOT NULL, " +
-                "invitee_uuid VARCHAR(36) NOT NULL, " +
-                "invitee_name VARCHAR(16) NOT NULL, " +
-                "invited_at BIGINT NOT NULL, " +
-                "INDEX idx_inviter (inviter_uuid), " +
-                "INDEX idx_invitee (invitee_uuid)" +
-                ")";
-            
-            try (Statement stmt = conn.createStatement()) {
-                stmt.execute(whitelistTable);
-                stmt.execute(invitationsTable);
-                plugin.getLogger().info("Database tables created/verified");
-            }
-            
+    /**
+     * Create the tables, or bring an existing database up to the current schema version
+     */
+    private void migrateSchema() {
+        try {
+            new SchemaMigrator(this, plugin.getLogger()).migrate();
         } catch (SQLException e) {
-            plugin.getLogger().log(Level.SEVERE, "Failed to create tables!", e);
+            plugin.getLogger().log(Level.SEVERE, "Failed to create or upgrade tables!", e);
         }
     }
     
+    /**
+     * Schema version of the database without upgrading it
+     * @return {@link #SCHEMA_VERSION} when current, 0 when there are no tables, lower for an older plugin's schema
+     */
+    public int getSchemaVersion() throws SQLException {
+        return new SchemaMigrator(this, plugin.getLogger()).detectVersion();
+    }
+    
     public Connection getConnection() throws SQLException {
         return dataSource.getConnection();
     }
     
+    /**
+     * Connection for queries that only read
+     * On SQLite in WAL mode it comes from the read-only pool, so it never waits for the writer;
+     * otherwise it is a regular connection
+     */
+    public Connection getReadConnection() throws SQLException {
+        return readDataSource != null ? readDataSource.getConnection() : dataSource.getConnection();
+    }
+    
     // ========== WHITELIST OPERATIONS ==========
     
     public CompletableFuture<Boolean> isWhitelisted(UUID uuid) {
-        return CompletableFuture.supplyAsync(() -> {
+        return supplyAsync("isWhitelisted", () -> {
             String sql = "SELECT uuid FROM whitelist WHERE uuid = ?";
             
-            try (Connection conn = getConnection();
+            try (Connection conn = getReadConnection();
                  PreparedStatement stmt = conn.prepareStatement(sql)) {
                 
-                stmt.setString(1, uuid.toString());
+                stmt.setBytes(1, UUIDCodec.toBytes(uuid));
                 
                 try (ResultSet rs = stmt.executeQuery()) {
                     return rs.next();
@@ -134,132 +335,465 @@ public class InviteDatabase {
                 
             } catch (SQLException e) {
                 plugin.getLogger().log(Level.SEVERE, "Failed to check whitelist", e);
-                return false;
+                throw new CompletionException(e);
             }
         });
     }
     
+    /**
+     * Whitelist a player in a single transaction: conditional insert and change log entry
+     * The invitation record is written behind by {@link InvitationWriter}; the insert itself is the "already whitelisted" check, so two servers can't both invite the same player
+     * @return true if the player was added, false if they were already whitelisted
+     *         (completes exceptionally on database errors)
+     */
     public CompletableFuture<Boolean> addToWhitelist(UUID inviteeUuid, String inviteeName, UUID inviterUuid, String inviterName) {
-        return CompletableFuture.supplyAsync(() -> {
+        return supplyAsync("addToWhitelist", () -> {
+            String insertSql = type == DatabaseType.SQLITE ?
+                "INSERT OR IGNORE INTO whitelist (uuid, name, invited_by, invited_at) VALUES (?, ?, ?, ?)" :
+                "INSERT IGNORE INTO whitelist (uuid, name, invited_by, invited_at) VALUES (?, ?, ?, ?)";
+            
             try (Connection conn = getConnection()) {
-                
-                // Check if already whitelisted
-                String checkSql = "SELECT uuid FROM whitelist WHERE uuid = ?";
-                try (PreparedStatement stmt = conn.prepareStatement(checkSql)) {
-                    stmt.setString(1, inviteeUuid.toString());
-                    try (ResultSet rs = stmt.executeQuery()) {
-                        if (rs.next()) {
+                conn.setAutoCommit(false);
+                try {
+                    long now = System.currentTimeMillis();
+                    
+                    try (PreparedStatement stmt = conn.prepareStatement(insertSql)) {
+                        stmt.setBytes(1, UUIDCodec.toBytes(inviteeUuid));
+                        stmt.setString(2, inviteeName);
+                        stmt.setBytes(3, inviterUuid != null ? UUIDCodec.toBytes(inviterUuid) : null); // NULL = console
+                        stmt.setLong(4, now);
+                        
+                        if (stmt.executeUpdate() == 0) {
+                            conn.rollback();
                             return false; // Already whitelisted
                         }
                     }
-                }
-                
-                // Add to whitelist
-                String insertSql = type == DatabaseType.SQLITE ?
-                    "INSERT OR REPLACE INTO whitelist (uuid, name, invited_by, invited_at) VALUES (?, ?, ?, ?)" :
-                    "INSERT INTO whitelist (uuid, name, invited_by, invited_at) VALUES (?, ?, ?, ?) " +
-                    "ON DUPLICATE KEY UPDATE name=?, invited_by=?, invited_at=?";
-                
-                try (PreparedStatement stmt = conn.prepareStatement(insertSql)) {
-                    long now = System.currentTimeMillis();
-                    stmt.setString(1, inviteeUuid.toString());
-                    stmt.setString(2, inviteeName);
-                    stmt.setString(3, inviterUuid != null ? inviterUuid.toString() : "CONSOLE");
-                    stmt.setLong(4, now);
                     
-                    if (type == DatabaseType.MYSQL) {
-                        stmt.setString(5, inviteeName);
-                        stmt.setString(6, inviterUuid != null ? inviterUuid.toString() : "CONSOLE");
-                        stmt.setLong(7, now);
-                    }
+                    recordChange(conn, inviteeUuid, WhitelistChange.ADDED);
+                    conn.commit();
+                    return true;
                     
-                    stmt.executeUpdate();
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw e;
+                } finally {
+                    conn.setAutoCommit(true);
                 }
                 
-                // Record invitation
-                if (inviterUuid != null) {
-                    recordInvitation(conn, inviterUuid, inviterName, inviteeUuid, inviteeName, System.currentTimeMillis());
+            } catch (SQLException e) {
+                plugin.getLogger().log(Level.SEVERE, "Failed to add to whitelist", e);
+                throw new CompletionException(e);
+            }
+        });
+    }
+    
+    /**
+     * Write a batch of invitation records in one transaction
+     * (one JDBC batch; MySQL rewrites it into multi-row INSERTs)
+     * @return future of the number of rows written (completes exceptionally on database errors)
+     */
+    public CompletableFuture<Integer> insertInvitations(List<Invitation> invitations) {
+        return supplyAsync("insertInvitations", () -> {
+            String sql = "INSERT INTO invitations (inviter_uuid, inviter_name, invitee_uuid, invitee_name, invited_at) VALUES (?, ?, ?, ?, ?)";
+            
+            try (Connection conn = getConnection()) {
+                conn.setAutoCommit(false);
+                try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                    for (Invitation invitation : invitations) {
+                        stmt.setBytes(1, UUIDCodec.toBytes(invitation.inviterUuid()));
+                        stmt.setString(2, invitation.inviterName());
+                        stmt.setBytes(3, UUIDCodec.toBytes(invitation.inviteeUuid()));
+                        stmt.setString(4, invitation.inviteeName());
+                        stmt.setLong(5, invitation.invitedAt());
+                        stmt.addBatch();
+                    }
+                    stmt.executeBatch();
+                    conn.commit();
+                    return invitations.size();
+                    
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw e;
+                } finally {
+                    conn.setAutoCommit(true);
                 }
                 
-                return true;
-                
             } catch (SQLException e) {
-                plugin.getLogger().log(Level.SEVERE, "Failed to add to whitelist", e);
-                return false;
+                throw new CompletionException(e);
             }
         });
     }
     
-    private void recordInvitation(Connection conn, UUID inviterUuid, String inviterName, UUID inviteeUuid, String inviteeName, long timestamp) throws SQLException {
-        String sql = "INSERT INTO invitations (inviter_uuid, inviter_name, invitee_uuid, invitee_name, invited_at) VALUES (?, ?, ?, ?, ?)";
+    private void recordChange(Connection conn, UUID uuid, char action) throws SQLException {
+        String sql = "INSERT INTO whitelist_changes (uuid, action, changed_at) VALUES (?, ?, ?)";
         
         try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setString(1, inviterUuid.toString());
-            stmt.setString(2, inviterName);
-            stmt.setString(3, inviteeUuid.toString());
-            stmt.setString(4, inviteeName);
-            stmt.setLong(5, timestamp);
+            stmt.setBytes(1, UUIDCodec.toBytes(uuid));
+            stmt.setString(2, String.valueOf(action));
+            stmt.setLong(3, System.currentTimeMillis());
             stmt.executeUpdate();
         }
     }
     
-    public CompletableFuture<List<UUID>> getAllWhitelisted() {
-        return CompletableFuture.supplyAsync(() -> {
-            List<UUID> whitelisted = new ArrayList<>();
-            String sql = "SELECT uuid FROM whitelist";
+    // ========== CHANGE LOG (DELTA SYNC) ==========
+    
+    /**
+     * Get the newest change log version (0 if the log is empty)
+     * Read this before a full load so the next delta starts from a consistent point
+     */
+    public CompletableFuture<Long> getLatestChangeVersion() {
+        return supplyAsync("getLatestChangeVersion", () -> {
+            String sql = "SELECT MAX(version) FROM whitelist_changes";
             
-            try (Connection conn = getConnection();
+            try (Connection conn = getReadConnection();
                  Statement stmt = conn.createStatement();
                  ResultSet rs = stmt.executeQuery(sql)) {
                 
-                while (rs.next()) {
-                    try {
-                        whitelisted.add(UUID.fromString(rs.getString("uuid")));
-                    } catch (IllegalArgumentException e) {
-                        plugin.getLogger().warning("Invalid UUID in whitelist: " + rs.getString("uuid"));
+                return rs.next() ? rs.getLong(1) : 0L;
+                
+            } catch (SQLException e) {
+                throw new CompletionException(e);
+            }
+        });
+    }
+    
+    /**
+     * Get up to {@code limit} changes with a version greater than {@code afterVersion}, in version order,
+     * together with the oldest and newest version still in the log (used for gap detection)
+     */
+    public CompletableFuture<WhitelistChange.Batch> getChangesSince(long afterVersion, int limit) {
+        return supplyAsync("getChangesSince", () -> {
+            String boundsSql = "SELECT MIN(version), MAX(version) FROM whitelist_changes";
+            // The prune marker, if any, is always the oldest row
+            String oldestSql = "SELECT version, action FROM whitelist_changes ORDER BY version ASC LIMIT 1";
+            String changesSql = "SELECT version, uuid, action FROM whitelist_changes WHERE version > ? AND action <> ? " +
+                "ORDER BY version ASC LIMIT ?";
+            
+            try (Connection conn = getReadConnection()) {
+                long minVersion = 0;
+                long maxVersion = 0;
+                long prunedThrough = 0;
+                
+                try (Statement stmt = conn.createStatement();
+                     ResultSet rs = stmt.executeQuery(boundsSql)) {
+                    if (rs.next()) {
+                        minVersion = rs.getLong(1);
+                        maxVersion = rs.getLong(2);
+                    }
+                }
+                try (Statement stmt = conn.createStatement();
+                     ResultSet rs = stmt.executeQuery(oldestSql)) {
+                    if (rs.next() && rs.getString("action").charAt(0) == WhitelistChange.PRUNED) {
+                        prunedThrough = rs.getLong("version");
+                    }
+                }
+                
+                List<WhitelistChange> changes = new ArrayList<>();
+                try (PreparedStatement stmt = conn.prepareStatement(changesSql)) {
+                    stmt.setLong(1, afterVersion);
+                    stmt.setString(2, String.valueOf(WhitelistChange.PRUNED));
+                    stmt.setInt(3, limit);
+                    
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        while (rs.next()) {
+                            long version = rs.getLong("version");
+                            String action = rs.getString("action");
+                            UUID uuid = UUIDCodec.fromBytes(rs.getBytes("uuid"));
+                            if (uuid != null) {
+                                changes.add(new WhitelistChange(version, uuid, action.charAt(0) == WhitelistChange.ADDED));
+                            }
+                        }
                     }
                 }
                 
+                return new WhitelistChange.Batch(minVersion, maxVersion, prunedThrough, changes);
+                
             } catch (SQLException e) {
+                throw new CompletionException(e);
+            }
+        });
+    }
+    
+    /**
+     * Delete change log entries older than the given timestamp
+     * The newest pruned entry stays behind as a {@link WhitelistChange#PRUNED} marker, so readers can tell
+     * "entries I never saw were pruned" apart from versions that were simply never used
+     * @return number of entries deleted (turning an entry into the marker doesn't count)
+     */
+    public CompletableFuture<Integer> pruneChanges(long olderThanMillis) {
+        return supplyAsync("pruneChanges", () -> {
+            String boundarySql = "SELECT MAX(version) FROM whitelist_changes WHERE changed_at < ?";
+            String deleteSql = "DELETE FROM whitelist_changes WHERE version < ?";
+            // No-op once the marker is set, so a run with nothing new to prune changes nothing
+            String markSql = "UPDATE whitelist_changes SET action = ? WHERE version = ? AND action <> ?";
+            
+            try (Connection conn = getConnection()) {
+                long boundary;
+                try (PreparedStatement stmt = conn.prepareStatement(boundarySql)) {
+                    stmt.setLong(1, olderThanMillis);
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        boundary = rs.next() ? rs.getLong(1) : 0;
+                    }
+                }
+                if (boundary == 0) {
+                    return 0; // Nothing old enough
+                }
+                
+                conn.setAutoCommit(false);
+                try {
+                    int pruned;
+                    try (PreparedStatement stmt = conn.prepareStatement(deleteSql)) {
+                        stmt.setLong(1, boundary);
+                        pruned = stmt.executeUpdate();
+                    }
+                    try (PreparedStatement stmt = conn.prepareStatement(markSql)) {
+                        stmt.setString(1, String.valueOf(WhitelistChange.PRUNED));
+                        stmt.setLong(2, boundary);
+                        stmt.setString(3, String.valueOf(WhitelistChange.PRUNED));
+                        stmt.executeUpdate();
+                    }
+                    conn.commit();
+                    return pruned;
+                    
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw e;
+                } finally {
+                    conn.setAutoCommit(true);
+                }
+                
+            } catch (SQLException e) {
+                plugin.getLogger().log(Level.WARNING, "Failed to prune change log", e);
+                return 0;
+            }
+        });
+    }
+    
+    /**
+     * Receives both halves of each whitelisted UUID
+     */
+    @FunctionalInterface
+    public interface UUIDSink {
+        void accept(long msb, long lsb);
+    }
+    
+    /**
+     * Stream every whitelisted UUID into a structure built for it
+     * The row count is read first and handed to {@code target}, so the structure is sized once up front;
+     * rows are then decoded straight from their 16 bytes into the sink, without a String or UUID per row
+     * @param target Creates the sink for the expected number of rows (players invited meanwhile may add a few)
+     * @return future of the number of UUIDs streamed (fails on database errors, so a partial load is never published)
+     */
+    public CompletableFuture<Integer> streamWhitelisted(IntFunction<UUIDSink> target) {
+        return supplyAsync("streamWhitelisted", () -> {
+            try (Connection conn = getReadConnection()) {
+                int expected;
+                try (Statement stmt = conn.createStatement();
+                     ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM whitelist")) {
+                    expected = rs.next() ? rs.getInt(1) : 0;
+                }
+                
+                UUIDSink sink = target.apply(expected);
+                int count = 0;
+                try (Statement stmt = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                    stmt.setFetchSize(streamingFetchSize());
+                    try (ResultSet rs = stmt.executeQuery("SELECT uuid FROM whitelist")) {
+                        while (rs.next()) {
+                            byte[] uuid = rs.getBytes(1);
+                            if (uuid != null && uuid.length == 16) {
+                                sink.accept(UUIDCodec.msb(uuid), UUIDCodec.lsb(uuid));
+                                count++;
+                            }
+                        }
+                    }
+                }
+                return count;
+                
+            } catch (SQLException e) {
+                // Fail the future rather than let the cache publish a partial set
                 plugin.getLogger().log(Level.SEVERE, "Failed to load whitelist", e);
+                throw new CompletionException(e);
+            }
+        });
+    }
+    
+    /**
+     * Fetch size for full-table reads
+     * MySQL only streams a result set row by row with Integer.MIN_VALUE; any other value buffers the whole table in the driver
+     */
+    private int streamingFetchSize() {
+        return type == DatabaseType.MYSQL ? Integer.MIN_VALUE : STREAM_FETCH_SIZE;
+    }
+    
+    /**
+     * Fetch one page of the whitelist ordered by (name, uuid), using keyset pagination
+     * Inviter names come from the same query (inviter's whitelist row, else the invitation record)
+     * @param after Last entry of the previous page, or null to start from the beginning
+     * @param namePrefix Only include names starting with this (case-insensitive on MySQL), or null
+     * @param skip Rows to skip after the keyset position (for jumping ahead to an unvisited page)
+     * @param limit Max rows to return
+     */
+    public CompletableFuture<List<WhitelistEntry>> getWhitelistPage(WhitelistEntry after, String namePrefix, int skip, int limit) {
+        return supplyAsync("getWhitelistPage", () -> {
+            List<WhitelistEntry> page = new ArrayList<>(limit);
+            
+            StringBuilder sql = new StringBuilder(
+                "SELECT w.uuid, w.name, w.invited_by, COALESCE(i.name, " +
+                "(SELECT inv.inviter_name FROM invitations inv WHERE inv.invitee_uuid = w.uuid " +
+                "ORDER BY inv.invited_at DESC LIMIT 1)) AS inviter_name " +
+                "FROM whitelist w LEFT JOIN whitelist i ON i.uuid = w.invited_by WHERE 1=1");
+            if (after != null) {
+                // Row-value comparison so both SQLite and MySQL turn it into an index range seek
+                sql.append(" AND (w.name, w.uuid) > (?, ?)");
+            }
+            if (namePrefix != null) {
+                sql.append(" AND w.name LIKE ? ESCAPE '!'");
+            }
+            sql.append(" ORDER BY w.name ASC, w.uuid ASC LIMIT ? OFFSET ?");
+            
+            try (Connection conn = getReadConnection();
+                 PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+                
+                int index = 1;
+                if (after != null) {
+                    stmt.setString(index++, after.name());
+                    stmt.setBytes(index++, UUIDCodec.toBytes(after.uuid()));
+                }
+                if (namePrefix != null) {
+                    String escaped = namePrefix.replace("!", "!!").replace("%", "!%").replace("_", "!_");
+                    stmt.setString(index++, escaped + "%");
+                }
+                stmt.setInt(index++, limit);
+                stmt.setInt(index, Math.max(0, skip));
+                
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        UUID uuid = UUIDCodec.fromBytes(rs.getBytes("uuid"));
+                        if (uuid == null) {
+                            continue;
+                        }
+                        
+                        String inviterName = rs.getString("inviter_name");
+                        if (rs.getBytes("invited_by") == null) {
+                            inviterName = "Console";
+                        } else if (inviterName == null) {
+                            inviterName = "Unknown";
+                        }
+                        
+                        page.add(new WhitelistEntry(uuid, rs.getString("name"), inviterName));
+                    }
+                }
+                
+            } catch (SQLException e) {
+                plugin.getLogger().log(Level.SEVERE, "Failed to load whitelist page", e);
+                throw new CompletionException(e);
             }
             
-            return whitelisted;
+            return page;
         });
     }
     
-    public CompletableFuture<Map<String, String>> getAllWhitelistedWithInviters() {
-        return CompletableFuture.supplyAsync(() -> {
-            Map<String, String> whitelisted = new LinkedHashMap<>();
-            String sql = "SELECT name, invited_by FROM whitelist ORDER BY name ASC";
+    /**
+     * Stream every (uuid, name) pair in the whitelist table to the consumer
+     * Runs on the database executor; the consumer must be thread-safe
+     */
+    public CompletableFuture<Integer> forEachPlayerName(BiConsumer<UUID, String> consumer) {
+        return supplyAsync("forEachPlayerName", () -> {
+            int count = 0;
+            String sql = "SELECT uuid, name FROM whitelist";
             
-            try (Connection conn = getConnection();
-                 Statement stmt = conn.createStatement();
-                 ResultSet rs = stmt.executeQuery(sql)) {
+            try (Connection conn = getReadConnection();
+                 Statement stmt = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
                 
-                while (rs.next()) {
-                    String name = rs.getString("name");
-                    String invitedBy = rs.getString("invited_by");
-                    whitelisted.put(name, invitedBy != null ? invitedBy : "CONSOLE");
+                stmt.setFetchSize(streamingFetchSize());
+                try (ResultSet rs = stmt.executeQuery(sql)) {
+                    while (rs.next()) {
+                        UUID uuid = UUIDCodec.fromBytes(rs.getBytes("uuid"));
+                        if (uuid != null) {
+                            consumer.accept(uuid, rs.getString("name"));
+                            count++;
+                        }
+                    }
                 }
                 
             } catch (SQLException e) {
-                plugin.getLogger().log(Level.SEVERE, "Failed to load whitelist", e);
+                plugin.getLogger().log(Level.SEVERE, "Failed to load player names", e);
+                throw new CompletionException(e);
             }
             
-            return whitelisted;
+            return count;
+        });
+    }
+    
+    /**
+     * Look up the stored names of the given players in one query
+     * (completes exceptionally on database errors)
+     */
+    public CompletableFuture<Map<UUID, String>> getPlayerNames(Collection<UUID> uuids) {
+        return supplyAsync("getPlayerNames", () -> {
+            Map<UUID, String> names = new HashMap<>();
+            if (uuids.isEmpty()) {
+                return names;
+            }
+            
+            String placeholders = String.join(", ", Collections.nCopies(uuids.size(), "?"));
+            String sql = "SELECT uuid, name FROM whitelist WHERE uuid IN (" + placeholders + ")";
+            
+            try (Connection conn = getReadConnection();
+                 PreparedStatement stmt = conn.prepareStatement(sql)) {
+                
+                int index = 1;
+                for (UUID uuid : uuids) {
+                    stmt.setBytes(index++, UUIDCodec.toBytes(uuid));
+                }
+                
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        UUID uuid = UUIDCodec.fromBytes(rs.getBytes("uuid"));
+                        if (uuid != null) {
+                            names.put(uuid, rs.getString("name"));
+                        }
+                    }
+                }
+                
+                return names;
+                
+            } catch (SQLException e) {
+                throw new CompletionException(e);
+            }
+        });
+    }
+    
+    /**
+     * Store a player's current name (after a name change)
+     */
+    public CompletableFuture<Boolean> updatePlayerName(UUID uuid, String name) {
+        return supplyAsync("updatePlayerName", () -> {
+            String sql = "UPDATE whitelist SET name = ? WHERE uuid = ?";
+            
+            try (Connection conn = getConnection();
+                 PreparedStatement stmt = conn.prepareStatement(sql)) {
+                
+                stmt.setString(1, name);
+                stmt.setBytes(2, UUIDCodec.toBytes(uuid));
+                return stmt.executeUpdate() > 0;
+                
+            } catch (SQLException e) {
+                plugin.getLogger().log(Level.WARNING, "Failed to update player name", e);
+                return false;
+            }
         });
     }
     
     public CompletableFuture<List<String>> getPlayersInvitedBy(UUID inviterUuid) {
-        return CompletableFuture.supplyAsync(() -> {
+        return supplyAsync("getPlayersInvitedBy", () -> {
             List<String> invited = new ArrayList<>();
             String sql = "SELECT invitee_name FROM invitations WHERE inviter_uuid = ? ORDER BY invited_at DESC";
             
-            try (Connection conn = getConnection();
+            try (Connection conn = getReadConnection();
                  PreparedStatement stmt = conn.prepareStatement(sql)) {
                 
-                stmt.setString(1, inviterUuid.toString());
+                stmt.setBytes(1, UUIDCodec.toBytes(inviterUuid));
                 
                 try (ResultSet rs = stmt.executeQuery()) {
                     while (rs.next()) {
@@ -275,19 +809,56 @@ public class InviteDatabase {
         });
     }
     
+    /**
+     * Stream the invitations after the given id, oldest first, for the invite graph
+     * Ids only grow, so passing the last id seen picks up exactly the rows added since (0 = all)
+     * @return future of the highest id read, or afterId if there were no new rows
+     */
+    public CompletableFuture<Long> forEachInvitation(long afterId, Consumer<Invitation> consumer) {
+        return supplyAsync("forEachInvitation", () -> {
+            long lastId = afterId;
+            String sql = "SELECT id, inviter_uuid, inviter_name, invitee_uuid, invitee_name, invited_at FROM invitations " +
+                "WHERE id > ? ORDER BY id";
+            
+            try (Connection conn = getReadConnection();
+                 PreparedStatement stmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                
+                stmt.setLong(1, afterId);
+                stmt.setFetchSize(streamingFetchSize());
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        lastId = rs.getLong("id");
+                        UUID inviter = UUIDCodec.fromBytes(rs.getBytes("inviter_uuid"));
+                        UUID invitee = UUIDCodec.fromBytes(rs.getBytes("invitee_uuid"));
+                        if (inviter != null && invitee != null) {
+                            consumer.accept(new Invitation(inviter, rs.getString("inviter_name"), invitee,
+                                rs.getString("invitee_name"), rs.getLong("invited_at")));
+                        }
+                    }
+                }
+                
+            } catch (SQLException e) {
+                plugin.getLogger().log(Level.SEVERE, "Failed to load invitations", e);
+                throw new CompletionException(e);
+            }
+            
+            return lastId;
+        });
+    }
+    
     public CompletableFuture<String> getInvitedBy(UUID inviteeUuid) {
-        return CompletableFuture.supplyAsync(() -> {
+        return supplyAsync("getInvitedBy", () -> {
             String sql = "SELECT invited_by FROM whitelist WHERE uuid = ?";
             
-            try (Connection conn = getConnection();
+            try (Connection conn = getReadConnection();
                  PreparedStatement stmt = conn.prepareStatement(sql)) {
                 
-                stmt.setString(1, inviteeUuid.toString());
+                stmt.setBytes(1, UUIDCodec.toBytes(inviteeUuid));
                 
                 try (ResultSet rs = stmt.executeQuery()) {
                     if (rs.next()) {
-                        String inviterUuid = rs.getString("invited_by");
-                        return inviterUuid != null ? inviterUuid : "CONSOLE";
+                        UUID inviterUuid = UUIDCodec.fromBytes(rs.getBytes("invited_by"));
+                        return inviterUuid != null ? inviterUuid.toString() : "CONSOLE";
                     }
                 }
                 
@@ -299,32 +870,43 @@ public class InviteDatabase {
         });
     }
     
+    /**
+     * Remove a player in a single transaction: delete plus change log entry
+     * @return true if the player was whitelisted and has been removed
+     *         (completes exceptionally on database errors)
+     */
     public CompletableFuture<Boolean> removeFromWhitelist(UUID uuid) {
-        return CompletableFuture.supplyAsync(() -> {
+        return supplyAsync("removeFromWhitelist", () -> {
+            String deleteSql = "DELETE FROM whitelist WHERE uuid = ?";
+            
             try (Connection conn = getConnection()) {
-                
-                // Check if player is whitelisted
-                String checkSql = "SELECT uuid FROM whitelist WHERE uuid = ?";
-                try (PreparedStatement stmt = conn.prepareStatement(checkSql)) {
-                    stmt.setString(1, uuid.toString());
-                    try (ResultSet rs = stmt.executeQuery()) {
-                        if (!rs.next()) {
-                            return false; // Not whitelisted
-                        }
+                conn.setAutoCommit(false);
+                try {
+                    int affected;
+                    try (PreparedStatement stmt = conn.prepareStatement(deleteSql)) {
+                        stmt.setBytes(1, UUIDCodec.toBytes(uuid));
+                        affected = stmt.executeUpdate();
                     }
-                }
-                
-                // Remove from whitelist
-                String deleteSql = "DELETE FROM whitelist WHERE uuid = ?";
-                try (PreparedStatement stmt = conn.prepareStatement(deleteSql)) {
-                    stmt.setString(1, uuid.toString());
-                    int affected = stmt.executeUpdate();
-                    return affected > 0;
+                    
+                    if (affected == 0) {
+                        conn.rollback();
+                        return false; // Not whitelisted
+                    }
+                    
+                    recordChange(conn, uuid, WhitelistChange.REMOVED);
+                    conn.commit();
+                    return true;
+                    
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw e;
+                } finally {
+                    conn.setAutoCommit(true);
                 }
                 
             } catch (SQLException e) {
                 plugin.getLogger().log(Level.SEVERE, "Failed to remove from whitelist", e);
-                return false;
+                throw new CompletionException(e);
             }
         });
     }
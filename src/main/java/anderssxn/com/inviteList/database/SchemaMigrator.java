@@ -0,0 +1,625 @@
+package anderssxn.com.inviteList.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Versioned schema migrations, applied when a database is connected
+ *
+ * The applied version is kept in the schema_version table. A new database is created at the latest
+ * version right away; an existing one is upgraded one version at a time.
+ *
+ * Version 2 stores every UUID as 16 raw bytes instead of text, records console invites as a NULL
+ * inviter instead of "CONSOLE", and adds covering indexes for the list, invites and invitedby queries.
+ * The tables are rebuilt side by side in committed chunks, so other servers on a shared MySQL
+ * database keep running and an interrupted upgrade resumes where it stopped. Rows written meanwhile
+ * are caught up through the change log (whitelist) and ids (invitations, change log), both before
+ * and after the new tables are renamed into place.
+ *
+ * On MySQL the upgrade runs under a named lock (GET_LOCK), so only one server upgrades a shared database
+ * and the others wait and then find it current. MySQL commits DDL on its own, so a crash right after the
+ * rename leaves *_legacy tables behind at version 1; the next start detects that and finishes from there.
+ * Servers still running an older plugin version can't write the new tables: upgrade every server sharing
+ * the database before any of them starts on this version.
+ */
+final class SchemaMigrator {
+    
+    static final int LATEST_VERSION = 2;
+    
+    private static final String CHECKPOINT_SOURCE = "schema-v2";
+    private static final int CHUNK_SIZE = 5000;
+    private static final String[] TABLES = {"whitelist", "invitations", "whitelist_changes"};
+    private static final String LOCK_NAME = "invitelist_schema";
+    private static final int LOCK_TIMEOUT_SECONDS = 600;
+    
+    private final InviteDatabase database;
+    private final DatabaseType type;
+    private final Logger logger;
+    
+    SchemaMigrator(InviteDatabase database, Logger logger) {
+        this.database = database;
+        this.type = database.getType();
+        this.logger = logger;
+    }
+    
+    /**
+     * Bring the database to {@link #LATEST_VERSION}
+     */
+    void migrate() throws SQLException {
+        // One connection throughout: the SQLite pool only has one (and MySQL named locks belong to a connection)
+        try (Connection conn = database.getConnection()) {
+            if (type == DatabaseType.MYSQL) {
+                acquireLock(conn);
+            }
+            try {
+                migrateLocked(conn);
+            } finally {
+                if (type == DatabaseType.MYSQL) {
+                    releaseLock(conn);
+                }
+            }
+        }
+    }
+    
+    private void migrateLocked(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS schema_version (" +
+                "version INT PRIMARY KEY, " +
+                "description VARCHAR(255) NOT NULL, " +
+                "applied_at BIGINT NOT NULL" +
+                ")");
+        }
+        
+        int version = currentVersion(conn);
+        if (version == 0) {
+            if (!tableExists(conn, "whitelist")) {
+                createTables(conn, "");
+                createIndexes(conn, "");
+                recordVersion(conn, LATEST_VERSION, "initial schema");
+                logger.info("Created database tables (schema version " + LATEST_VERSION + ")");
+                return;
+            }
+            version = 1; // Tables from before schema versioning
+        }
+        
+        if (version < 2) {
+            migrateToBinaryUuids(conn);
+        }
+        
+        logger.info("Database schema is up to date (version " + LATEST_VERSION + ")");
+    }
+    
+    /**
+     * Schema version of the database as it is, without changing anything
+     * @return 0 for an empty database, 1 for tables from before schema versioning
+     */
+    int detectVersion() throws SQLException {
+        try (Connection conn = database.getConnection()) {
+            if (tableExists(conn, "schema_version")) {
+                int version = currentVersion(conn);
+                if (version > 0) {
+                    return version;
+                }
+            }
+            return tableExists(conn, "whitelist") ? 1 : 0;
+        }
+    }
+    
+    // ========== VERSION 2: BINARY UUIDS ==========
+    
+    private void migrateToBinaryUuids(Connection conn) throws SQLException {
+        logger.info("Upgrading database schema to version 2 (binary UUIDs, covering indexes)...");
+        long start = System.currentTimeMillis();
+        createCheckpointTable(conn);
+        
+        // Interrupted after the rename (MySQL DDL isn't transactional): the new tables are live, finish the job
+        if (legacyTablesExist(conn)) {
+            logger.info("[Schema] Tables were already swapped by an interrupted upgrade, finishing it");
+            String startVersion = loadCheckpoint(conn, "changes_start");
+            finishSwap(conn, startVersion != null ? Long.parseLong(startVersion) : 0);
+            logger.info("Schema upgrade finished in " + (System.currentTimeMillis() - start) / 1000 + "s");
+            return;
+        }
+        
+        createTables(conn, "_v2");
+        
+        // Whitelist rows changed after this version are caught up from the change log
+        String startVersion = loadCheckpoint(conn, "changes_start");
+        if (startVersion == null) {
+            startVersion = String.valueOf(maxKey(conn, "SELECT MAX(version) FROM whitelist_changes"));
+            saveCheckpoint(conn, "changes_start", startVersion, 0);
+        }
+        
+        copyAll(conn, "", "_v2");
+        catchUpWhitelist(conn, "whitelist", "whitelist_v2", "whitelist_changes", Long.parseLong(startVersion));
+        
+        // Indexes go on before the swap on MySQL (names are per table); SQLite names clash with the old ones until they are dropped
+        if (type == DatabaseType.MYSQL) {
+            createIndexes(conn, "_v2");
+        }
+        
+        conn.setAutoCommit(false);
+        try {
+            try (Statement stmt = conn.createStatement()) {
+                if (type == DatabaseType.MYSQL) {
+                    // Atomic: other servers see either the old or the new tables
+                    stmt.execute("RENAME TABLE " +
+                        "whitelist TO whitelist_legacy, whitelist_v2 TO whitelist, " +
+                        "invitations TO invitations_legacy, invitations_v2 TO invitations, " +
+                        "whitelist_changes TO whitelist_changes_legacy, whitelist_changes_v2 TO whitelist_changes");
+                } else {
+                    for (String table : TABLES) {
+                        stmt.execute("ALTER TABLE " + table + " RENAME TO " + table + "_legacy");
+                        stmt.execute("ALTER TABLE " + table + "_v2 RENAME TO " + table);
+                    }
+                }
+            }
+            
+            finishSwap(conn, Long.parseLong(startVersion));
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+        
+        logger.info("Schema upgrade finished in " + (System.currentTimeMillis() - start) / 1000 + "s");
+    }
+    
+    /**
+     * Everything after the rename: copy what reached the old tables meanwhile, drop them, record version 2
+     * Safe to run again after a crash at any point (the legacy copy resumes from its checkpoints)
+     */
+    private void finishSwap(Connection conn, long startVersion) throws SQLException {
+        // Anything written to the old tables between the last catch-up and the rename
+        // (whitelist_legacy is dropped first, so while it exists none of the copies has been skipped)
+        if (tableExists(conn, "whitelist_legacy")) {
+            copyAll(conn, "_legacy", "");
+            catchUpWhitelist(conn, "whitelist_legacy", "whitelist", "whitelist_changes_legacy", startVersion);
+        }
+        
+        try (Statement stmt = conn.createStatement()) {
+            for (String table : TABLES) {
+                stmt.execute("DROP TABLE IF EXISTS " + table + "_legacy");
+            }
+        }
+        // MySQL: already created on the _v2 tables before the rename, this only fills in after a crash
+        createIndexes(conn, "");
+        
+        try (PreparedStatement stmt = conn.prepareStatement("DELETE FROM migration_checkpoint WHERE source = ?")) {
+            stmt.setString(1, CHECKPOINT_SOURCE);
+            stmt.executeUpdate();
+        }
+        recordVersion(conn, 2, "binary UUID keys, covering indexes");
+    }
+    
+    /**
+     * Copy every table from {@code fromSuffix} to {@code toSuffix}, resuming from the checkpoints
+     */
+    private void copyAll(Connection conn, String fromSuffix, String toSuffix) throws SQLException {
+        copyTable(conn, "whitelist", false,
+            "SELECT uuid, name, invited_by, invited_at FROM whitelist" + fromSuffix + " WHERE uuid > ? ORDER BY uuid LIMIT ?",
+            "REPLACE INTO whitelist" + toSuffix + " (uuid, name, invited_by, invited_at) VALUES (?, ?, ?, ?)",
+            (rs, insert) -> {
+                byte[] uuid = UUIDCodec.parse(rs.getString("uuid"));
+                if (uuid == null) {
+                    return false;
+                }
+                insert.setBytes(1, uuid);
+                insert.setString(2, rs.getString("name"));
+                insert.setBytes(3, UUIDCodec.parse(rs.getString("invited_by"))); // "CONSOLE" becomes NULL
+                insert.setLong(4, rs.getLong("invited_at"));
+                return true;
+            });
+        
+        // Ids are kept: the invite graph reads history in id order
+        copyTable(conn, "invitations", true,
+            "SELECT id, inviter_uuid, inviter_name, invitee_uuid, invitee_name, invited_at FROM invitations" + fromSuffix +
+                " WHERE id > ? ORDER BY id LIMIT ?",
+            "REPLACE INTO invitations" + toSuffix + " (id, inviter_uuid, inviter_name, invitee_uuid, invitee_name, invited_at) " +
+                "VALUES (?, ?, ?, ?, ?, ?)",
+            (rs, insert) -> {
+                byte[] inviter = UUIDCodec.parse(rs.getString("inviter_uuid"));
+                byte[] invitee = UUIDCodec.parse(rs.getString("invitee_uuid"));
+                if (inviter == null || invitee == null) {
+                    return false;
+                }
+                insert.setLong(1, rs.getLong("id"));
+                insert.setBytes(2, inviter);
+                insert.setString(3, rs.getString("inviter_name"));
+                insert.setBytes(4, invitee);
+                insert.setString(5, rs.getString("invitee_name"));
+                insert.setLong(6, rs.getLong("invited_at"));
+                return true;
+            });
+        
+        // Versions are kept: other servers' delta sync cursors point into them
+        copyTable(conn, "whitelist_changes", true,
+            "SELECT version, uuid, action, changed_at FROM whitelist_changes" + fromSuffix + " WHERE version > ? ORDER BY version LIMIT ?",
+            "REPLACE INTO whitelist_changes" + toSuffix + " (version, uuid, action, changed_at) VALUES (?, ?, ?, ?)",
+            (rs, insert) -> {
+                byte[] uuid = UUIDCodec.parse(rs.getString("uuid"));
+                if (uuid == null) {
+                    return false;
+                }
+                insert.setLong(1, rs.getLong("version"));
+                insert.setBytes(2, uuid);
+                insert.setString(3, rs.getString("action"));
+                insert.setLong(4, rs.getLong("changed_at"));
+                return true;
+            });
+    }
+    
+    /**
+     * Copy one table chunk by chunk in key order; each chunk commits together with its checkpoint
+     */
+    private void copyTable(Connection conn, String table, boolean numericKey, String selectSql, String insertSql,
+                           RowCopier copier) throws SQLException {
+        String lastKey = loadCheckpoint(conn, table);
+        if (lastKey == null) {
+            lastKey = numericKey ? "0" : "";
+        }
+        long copied = loadCopied(conn, table);
+        long skipped = 0;
+        
+        // Inside the swap transaction the chunks just join it
+        boolean ownTransaction = conn.getAutoCommit();
+        if (ownTransaction) {
+            conn.setAutoCommit(false);
+        }
+        try {
+            while (true) {
+                int rows = 0;
+                try (PreparedStatement select = conn.prepareStatement(selectSql);
+                     PreparedStatement insert = conn.prepareStatement(insertSql)) {
+                    
+                    if (numericKey) {
+                        select.setLong(1, Long.parseLong(lastKey));
+                    } else {
+                        select.setString(1, lastKey);
+                    }
+                    select.setInt(2, CHUNK_SIZE);
+                    
+                    try (ResultSet rs = select.executeQuery()) {
+                        while (rs.next()) {
+                            rows++;
+                            lastKey = rs.getString(1);
+                            if (copier.copy(rs, insert)) {
+                                insert.addBatch();
+                            } else {
+                                skipped++;
+                            }
+                        }
+                    }
+                    insert.executeBatch();
+                }
+                
+                if (rows == 0) {
+                    break;
+                }
+                copied += rows;
+                saveCheckpoint(conn, table, lastKey, copied);
+                if (ownTransaction) {
+                    conn.commit();
+                }
+                
+                if (copied % (CHUNK_SIZE * 20L) < rows) {
+                    logger.info("[Schema] " + table + ": " + copied + " rows copied");
+                }
+                if (rows < CHUNK_SIZE) {
+                    break;
+                }
+            }
+        } catch (SQLException e) {
+            if (ownTransaction) {
+                conn.rollback();
+            }
+            throw e;
+        } finally {
+            if (ownTransaction) {
+                conn.setAutoCommit(true);
+            }
+        }
+        
+        if (skipped > 0) {
+            logger.warning("[Schema] Skipped " + skipped + " " + table + " rows with an invalid UUID");
+        }
+    }
+    
+    /**
+     * Re-copy (or delete) whitelist rows touched since the copy started, as recorded in the change log
+     */
+    private void catchUpWhitelist(Connection conn, String from, String to, String changes, long sinceVersion) throws SQLException {
+        List<String> touched = new ArrayList<>();
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT DISTINCT uuid FROM " + changes + " WHERE version > ?")) {
+            stmt.setLong(1, sinceVersion);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    touched.add(rs.getString(1));
+                }
+            }
+        }
+        if (touched.isEmpty()) {
+            return;
+        }
+        
+        String selectSql = "SELECT name, invited_by, invited_at FROM " + from + " WHERE uuid = ?";
+        String upsertSql = "REPLACE INTO " + to + " (uuid, name, invited_by, invited_at) VALUES (?, ?, ?, ?)";
+        String deleteSql = "DELETE FROM " + to + " WHERE uuid = ?";
+        
+        try (PreparedStatement select = conn.prepareStatement(selectSql);
+             PreparedStatement upsert = conn.prepareStatement(upsertSql);
+             PreparedStatement delete = conn.prepareStatement(deleteSql)) {
+            for (String uuid : touched) {
+                byte[] bytes = UUIDCodec.parse(uuid);
+                if (bytes == null) {
+                    continue;
+                }
+                
+                select.setString(1, uuid);
+                try (ResultSet rs = select.executeQuery()) {
+                    if (rs.next()) {
+                        upsert.setBytes(1, bytes);
+                        upsert.setString(2, rs.getString("name"));
+                        upsert.setBytes(3, UUIDCodec.parse(rs.getString("invited_by")));
+                        upsert.setLong(4, rs.getLong("invited_at"));
+                        upsert.executeUpdate();
+                    } else {
+                        delete.setBytes(1, bytes);
+                        delete.executeUpdate();
+                    }
+                }
+            }
+        }
+        logger.info("[Schema] Caught up " + touched.size() + " whitelist entries changed during the upgrade");
+    }
+    
+    // ========== DDL ==========
+    
+    /**
+     * Create the latest tables (primary keys only, see {@link #createIndexes})
+     * @param suffix Appended to every table name, e.g. "_v2" while rebuilding
+     */
+    private void createTables(Connection conn, String suffix) throws SQLException {
+        String whitelist = type == DatabaseType.SQLITE ?
+            // Clustered on the UUID: no separate primary key index next to the rows
+            "CREATE TABLE IF NOT EXISTS whitelist" + suffix + " (" +
+            "uuid BLOB PRIMARY KEY, " +
+            "name TEXT NOT NULL, " +
+            "invited_by BLOB, " +
+            "invited_at INTEGER NOT NULL" +
+            ") WITHOUT ROWID" :
+            "CREATE TABLE IF NOT EXISTS whitelist" + suffix + " (" +
+            "uuid BINARY(16) PRIMARY KEY, " +
+            "name VARCHAR(16) NOT NULL, " +
+            "invited_by BINARY(16) NULL, " +
+            "invited_at BIGINT NOT NULL" +
+            ")";
+        
+        // Invitations table (tracks who invited whom)
+        String invitations = type == DatabaseType.SQLITE ?
+            "CREATE TABLE IF NOT EXISTS invitations" + suffix + " (" +
+            "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+            "inviter_uuid BLOB NOT NULL, " +
+            "inviter_name TEXT NOT NULL, " +
+            "invitee_uuid BLOB NOT NULL, " +
+            "invitee_name TEXT NOT NULL, " +
+            "invited_at INTEGER NOT NULL" +
+            ")" :
+            "CREATE TABLE IF NOT EXISTS invitations" + suffix + " (" +
+            "id INT PRIMARY KEY AUTO_INCREMENT, " +
+            "inviter_uuid BINARY(16) NOT NULL, " +
+            "inviter_name VARCHAR(16) NOT NULL, " +
+            "invitee_uuid BINARY(16) NOT NULL, " +
+            "invitee_name VARCHAR(16) NOT NULL, " +
+            "invited_at BIGINT NOT NULL" +
+            ")";
+        
+        // Change log (monotonic version per insert/delete, used for delta cache sync)
+        String changes = type == DatabaseType.SQLITE ?
+            "CREATE TABLE IF NOT EXISTS whitelist_changes" + suffix + " (" +
+            "version INTEGER PRIMARY KEY AUTOINCREMENT, " +
+            "uuid BLOB NOT NULL, " +
+            "action TEXT NOT NULL, " +
+            "changed_at INTEGER NOT NULL" +
+            ")" :
+            "CREATE TABLE IF NOT EXISTS whitelist_changes" + suffix + " (" +
+            "version BIGINT PRIMARY KEY AUTO_INCREMENT, " +
+            "uuid BINARY(16) NOT NULL, " +
+            "action CHAR(1) NOT NULL, " +
+            "changed_at BIGINT NOT NULL" +
+            ")";
+        
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute(whitelist);
+            stmt.execute(invitations);
+            stmt.execute(changes);
+        }
+    }
+    
+    /**
+     * Secondary indexes; each one covers the query it serves, so those never touch the table rows
+     */
+    private void createIndexes(Connection conn, String suffix) throws SQLException {
+        // /invitelist list: keyset pages on (name, uuid)
+        ensureIndex(conn, "whitelist" + suffix, "idx_name", "name, uuid");
+        ensureIndex(conn, "whitelist" + suffix, "idx_inviter", "invited_by");
+        // /invitelist invites: WHERE inviter_uuid = ? ORDER BY invited_at DESC, returning invitee_name
+        ensureIndex(conn, "invitations" + suffix, "idx_inviter", "inviter_uuid, invited_at, invitee_name");
+        // /invitelist list and invitedby: latest inviter name of an invitee
+        ensureIndex(conn, "invitations" + suffix, "idx_invitee", "invitee_uuid, invited_at, inviter_name");
+        // Change log pruning
+        ensureIndex(conn, "whitelist_changes" + suffix, "idx_changed_at", "changed_at");
+    }
+    
+    /**
+     * Create an index if it doesn't exist yet (MySQL has no CREATE INDEX IF NOT EXISTS)
+     */
+    private void ensureIndex(Connection conn, String table, String index, String columns) throws SQLException {
+        if (type == DatabaseType.SQLITE) {
+            try (Statement stmt = conn.createStatement()) {
+                // SQLite index names are database-wide, so prefix them with the table
+                stmt.execute("CREATE INDEX IF NOT EXISTS " + table + "_" + index + " ON " + table + " (" + columns + ")");
+            }
+            return;
+        }
+        
+        String checkSql = "SELECT 1 FROM information_schema.statistics " +
+            "WHERE table_schema = DATABASE() AND table_name = ? AND index_name = ? LIMIT 1";
+        try (PreparedStatement stmt = conn.prepareStatement(checkSql)) {
+            stmt.setString(1, table);
+            stmt.setString(2, index);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    return;
+                }
+            }
+        }
+        
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE INDEX " + index + " ON " + table + " (" + columns + ")");
+            logger.info("Created index " + index + " on " + table);
+        }
+    }
+    
+    // ========== BOOKKEEPING ==========
+    
+    private int currentVersion(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT MAX(version) FROM schema_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+    
+    private void recordVersion(Connection conn, int version, String description) throws SQLException {
+        // REPLACE: two servers creating a shared MySQL database at the same time both record it
+        String sql = "REPLACE INTO schema_version (version, description, applied_at) VALUES (?, ?, ?)";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, version);
+            stmt.setString(2, description);
+            stmt.setLong(3, System.currentTimeMillis());
+            stmt.executeUpdate();
+        }
+    }
+    
+    private boolean legacyTablesExist(Connection conn) throws SQLException {
+        for (String table : TABLES) {
+            if (tableExists(conn, table + "_legacy")) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Take the MySQL named lock that serializes schema upgrades across servers
+     */
+    private void acquireLock(Connection conn) throws SQLException {
+        if (tryLock(conn, 0)) {
+            return;
+        }
+        logger.info("Waiting for another server to finish upgrading the database schema...");
+        if (!tryLock(conn, LOCK_TIMEOUT_SECONDS)) {
+            throw new SQLException("Timed out after " + LOCK_TIMEOUT_SECONDS + "s waiting for the schema lock '" + LOCK_NAME + "'");
+        }
+    }
+    
+    private boolean tryLock(Connection conn, int timeoutSeconds) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT GET_LOCK(?, ?)")) {
+            stmt.setString(1, LOCK_NAME);
+            stmt.setInt(2, timeoutSeconds);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() && rs.getInt(1) == 1;
+            }
+        }
+    }
+    
+    private void releaseLock(Connection conn) {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+            stmt.setString(1, LOCK_NAME);
+            stmt.executeQuery().close();
+        } catch (SQLException e) {
+            // Released anyway when the connection closes
+            logger.warning("Failed to release the schema lock: " + e.getMessage());
+        }
+    }
+    
+    private boolean tableExists(Connection conn, String table) throws SQLException {
+        try (ResultSet rs = conn.getMetaData().getTables(conn.getCatalog(), null, table, new String[]{"TABLE"})) {
+            return rs.next();
+        }
+    }
+    
+    private long maxKey(Connection conn, String sql) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+    
+    // Same table /invitelist migrate uses, under a source name of its own
+    private void createCheckpointTable(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS migration_checkpoint (" +
+                "source VARCHAR(255) NOT NULL, " +
+                "table_name VARCHAR(32) NOT NULL, " +
+                "last_key VARCHAR(36) NOT NULL, " +
+                "copied BIGINT NOT NULL, " +
+                "updated_at BIGINT NOT NULL, " +
+                "PRIMARY KEY (source, table_name)" +
+                ")");
+        }
+    }
+    
+    private String loadCheckpoint(Connection conn, String table) throws SQLException {
+        String sql = "SELECT last_key FROM migration_checkpoint WHERE source = ? AND table_name = ?";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, CHECKPOINT_SOURCE);
+            stmt.setString(2, table);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getString(1) : null;
+            }
+        }
+    }
+    
+    private long loadCopied(Connection conn, String table) throws SQLException {
+        String sql = "SELECT copied FROM migration_checkpoint WHERE source = ? AND table_name = ?";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, CHECKPOINT_SOURCE);
+            stmt.setString(2, table);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0;
+            }
+        }
+    }
+    
+    private void saveCheckpoint(Connection conn, String table, String lastKey, long copied) throws SQLException {
+        // REPLACE works on both SQLite and MySQL
+        String sql = "REPLACE INTO migration_checkpoint (source, table_name, last_key, copied, updated_at) VALUES (?, ?, ?, ?, ?)";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, CHECKPOINT_SOURCE);
+            stmt.setString(2, table);
+            stmt.setString(3, lastKey);
+            stmt.setLong(4, copied);
+            stmt.setLong(5, System.currentTimeMillis());
+            stmt.executeUpdate();
+        }
+    }
+    
+    /**
+     * Converts one old row into the bound parameters of the insert
+     */
+    private interface RowCopier {
+        /**
+         * @return false to skip the row (invalid UUID)
+         */
+        boolean copy(ResultSet rs, PreparedStatement insert) throws SQLException;
+    }
+}
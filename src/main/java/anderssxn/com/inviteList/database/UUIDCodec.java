@@ -0,0 +1,74 @@
+package anderssxn.com.inviteList.database;
+
+import java.util.UUID;
+
+/**
+ * UUIDs as stored in the database: 16 raw bytes, most significant first (BLOB on SQLite, BINARY(16) on MySQL)
+ * Byte order matches the order of {@link UUID#toString()}, so keyset scans see the same ordering as the old text keys
+ */
+public final class UUIDCodec {
+    
+    private UUIDCodec() {
+    }
+    
+    public static byte[] toBytes(UUID uuid) {
+        byte[] bytes = new byte[16];
+        putLong(bytes, 0, uuid.getMostSignificantBits());
+        putLong(bytes, 8, uuid.getLeastSignificantBits());
+        return bytes;
+    }
+    
+    /**
+     * @return the UUID, or null if the value is null or not 16 bytes long
+     */
+    public static UUID fromBytes(byte[] bytes) {
+        if (bytes == null || bytes.length != 16) {
+            return null;
+        }
+        return new UUID(getLong(bytes, 0), getLong(bytes, 8));
+    }
+    
+    /**
+     * Most significant half of a stored UUID (16 bytes), without creating a UUID
+     */
+    public static long msb(byte[] bytes) {
+        return getLong(bytes, 0);
+    }
+    
+    /**
+     * Least significant half of a stored UUID (16 bytes), without creating a UUID
+     */
+    public static long lsb(byte[] bytes) {
+        return getLong(bytes, 8);
+    }
+    
+    /**
+     * Parse a UUID in text form into its stored form
+     * @return the bytes, or null if the text isn't a UUID (e.g. "CONSOLE")
+     */
+    public static byte[] parse(String text) {
+        if (text == null) {
+            return null;
+        }
+        try {
+            return toBytes(UUID.fromString(text));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+    
+    private static void putLong(byte[] bytes, int offset, long value) {
+        for (int i = 7; i >= 0; i--) {
+            bytes[offset + i] = (byte) value;
+            value >>>= 8;
+        }
+    }
+    
+    private static long getLong(byte[] bytes, int offset) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (bytes[offset + i] & 0xFF);
+        }
+        return value;
+    }
+}
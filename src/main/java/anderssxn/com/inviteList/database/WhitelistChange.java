@@ -0,0 +1,26 @@
+package anderssxn.com.inviteList.database;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * A single entry of the whitelist change log
+ * @param version Monotonic change log version
+ * @param uuid Player UUID
+ * @param added true for an insert, false for a delete
+ */
+public record WhitelistChange(long version, UUID uuid, boolean added) {
+    
+    public static final char ADDED = 'A';
+    public static final char REMOVED = 'R';
+    // Left by pruning on the newest pruned entry: everything up to its version is gone from the log
+    public static final char PRUNED = 'P';
+    
+    /**
+     * A page of changes plus the version range still retained in the log
+     * @param maxVersion Newest version in the log (0 if the log is empty)
+     * @param prunedThrough Highest version pruning has removed (0 if the log was never pruned)
+     */
+    public record Batch(long minVersion, long maxVersion, long prunedThrough, List<WhitelistChange> changes) {
+    }
+}
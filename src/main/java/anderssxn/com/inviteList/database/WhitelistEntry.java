@@ -0,0 +1,12 @@
+package anderssxn.com.inviteList.database;
+
+import java.util.UUID;
+
+/**
+ * A whitelisted player as shown by /invitelist list
+ * @param uuid Player UUID
+ * @param name Player name
+ * @param inviterName Name of whoever invited them ("Console" or "Unknown" if not a player)
+ */
+public record WhitelistEntry(UUID uuid, String name, String inviterName) {
+}
@@ -0,0 +1,153 @@
+package anderssxn.com.inviteList.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histograms for the login gate, database operations and cache refreshes
+ * Shown by /invitelist stats and exported by {@link PrometheusEndpoint}
+ *
+ * Everything here is lock-free so it can be recorded from the login threads during join waves.
+ */
+public class Metrics {
+    
+    /**
+     * How a login check ended
+     */
+    public enum Decision {
+        ALLOW,
+        DENY,
+        THROTTLED, // Turned away by the per-IP login throttle before any lookup
+        ERROR      // No answer (cache unavailable / still starting up)
+    }
+    
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder databaseFallbacks = new LongAdder();
+    private final LongAdder allowed = new LongAdder();
+    private final LongAdder denied = new LongAdder();
+    private final LongAdder throttled = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LatencyHistogram loginLatency = new LatencyHistogram();
+    
+    private final Map<String, Operation> databaseOperations = new ConcurrentHashMap<>();
+    private final Map<String, LatencyHistogram> refreshLatency = new ConcurrentHashMap<>();
+    
+    // ========== LOGIN GATE ==========
+    
+    /**
+     * A login lookup answered from memory
+     */
+    public void cacheHit() {
+        cacheHits.increment();
+    }
+    
+    /**
+     * A login lookup that had to be answered by the database
+     */
+    public void databaseFallback() {
+        databaseFallbacks.increment();
+    }
+    
+    public void recordLogin(Decision decision, long startNanos) {
+        loginLatency.recordSince(startNanos);
+        switch (decision) {
+            case ALLOW:
+                allowed.increment();
+                break;
+            case DENY:
+                denied.increment();
+                break;
+            case THROTTLED:
+                throttled.increment();
+                break;
+            default:
+                errors.increment();
+                break;
+        }
+    }
+    
+    public long getCacheHits() {
+        return cacheHits.sum();
+    }
+    
+    public long getDatabaseFallbacks() {
+        return databaseFallbacks.sum();
+    }
+    
+    public long getAllowed() {
+        return allowed.sum();
+    }
+    
+    public long getDenied() {
+        return denied.sum();
+    }
+    
+    public long getThrottled() {
+        return throttled.sum();
+    }
+    
+    public long getErrors() {
+        return errors.sum();
+    }
+    
+    public LatencyHistogram getLoginLatency() {
+        return loginLatency;
+    }
+    
+    // ========== DATABASE ==========
+    
+    /**
+     * Record one database operation
+     * @param name Operation name, e.g. "isWhitelisted"
+     * @param failed Whether it threw
+     */
+    public void recordDatabase(String name, long startNanos, boolean failed) {
+        Operation operation = databaseOperations.computeIfAbsent(name, key -> new Operation());
+        operation.latency.recordSince(startNanos);
+        if (failed) {
+            operation.errors.increment();
+        }
+    }
+    
+    /**
+     * Database operations by name, sorted
+     */
+    public Map<String, Operation> getDatabaseOperations() {
+        return new TreeMap<>(databaseOperations);
+    }
+    
+    // ========== CACHE ==========
+    
+    /**
+     * Record one cache refresh
+     * @param type "full" or "delta"
+     */
+    public void recordRefresh(String type, long startNanos) {
+        refreshLatency.computeIfAbsent(type, key -> new LatencyHistogram()).recordSince(startNanos);
+    }
+    
+    /**
+     * Refresh histograms by type, sorted
+     */
+    public Map<String, LatencyHistogram> getRefreshLatency() {
+        return new TreeMap<>(refreshLatency);
+    }
+    
+    /**
+     * Latency and error count of one kind of database operation
+     */
+    public static final class Operation {
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder errors = new LongAdder();
+        
+        public LatencyHistogram getLatency() {
+            return latency;
+        }
+        
+        public long getErrors() {
+            return errors.sum();
+        }
+    }
+}
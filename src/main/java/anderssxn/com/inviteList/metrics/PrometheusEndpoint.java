@@ -0,0 +1,159 @@
+package anderssxn.com.inviteList.metrics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * Serves {@link Metrics} in the Prometheus text format on GET /metrics
+ *
+ * Meant to be bound to localhost (or a private interface) and scraped by a local agent;
+ * there is no authentication. Latencies are exported as summaries in seconds.
+ */
+public class PrometheusEndpoint {
+    
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    
+    private final Metrics metrics;
+    private final Supplier<Map<String, Number>> gauges;
+    private HttpServer server;
+    private ExecutorService executor;
+    
+    /**
+     * @param gauges Extra point-in-time values (name without prefix -> value), read on every scrape
+     */
+    public PrometheusEndpoint(Metrics metrics, Supplier<Map<String, Number>> gauges) {
+        this.metrics = metrics;
+        this.gauges = gauges;
+    }
+    
+    public void start(InetSocketAddress address) throws IOException {
+        server = HttpServer.create(address, 0);
+        server.createContext("/metrics", this::handle);
+        
+        // One thread is plenty for a scraper every few seconds
+        executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "InviteList-Metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.start();
+    }
+    
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+            server = null;
+        }
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+    
+    public InetSocketAddress getAddress() {
+        return server != null ? server.getAddress() : null;
+    }
+    
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            
+            byte[] body = render().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+    
+    String render() {
+        StringBuilder out = new StringBuilder(4096);
+        
+        header(out, "invitelist_login_lookups_total", "counter", "Login whitelist lookups by where the answer came from");
+        sample(out, "invitelist_login_lookups_total", "source=\"cache\"", metrics.getCacheHits());
+        sample(out, "invitelist_login_lookups_total", "source=\"database\"", metrics.getDatabaseFallbacks());
+        
+        header(out, "invitelist_login_decisions_total", "counter", "Login checks by outcome");
+        sample(out, "invitelist_login_decisions_total", "decision=\"allow\"", metrics.getAllowed());
+        sample(out, "invitelist_login_decisions_total", "decision=\"deny\"", metrics.getDenied());
+        sample(out, "invitelist_login_decisions_total", "decision=\"throttled\"", metrics.getThrottled());
+        sample(out, "invitelist_login_decisions_total", "decision=\"error\"", metrics.getErrors());
+        
+        header(out, "invitelist_login_seconds", "summary", "Time to decide a login");
+        summary(out, "invitelist_login_seconds", "", metrics.getLoginLatency().snapshot());
+        
+        Map<String, Metrics.Operation> operations = metrics.getDatabaseOperations();
+        header(out, "invitelist_database_seconds", "summary", "Database operation latency");
+        for (Map.Entry<String, Metrics.Operation> entry : operations.entrySet()) {
+            summary(out, "invitelist_database_seconds", "operation=\"" + entry.getKey() + "\"",
+                entry.getValue().getLatency().snapshot());
+        }
+        header(out, "invitelist_database_errors_total", "counter", "Database operations that failed");
+        for (Map.Entry<String, Metrics.Operation> entry : operations.entrySet()) {
+            sample(out, "invitelist_database_errors_total", "operation=\"" + entry.getKey() + "\"", entry.getValue().getErrors());
+        }
+        
+        header(out, "invitelist_cache_refresh_seconds", "summary", "Cache refresh duration");
+        for (Map.Entry<String, LatencyHistogram> entry : metrics.getRefreshLatency().entrySet()) {
+            summary(out, "invitelist_cache_refresh_seconds", "type=\"" + entry.getKey() + "\"", entry.getValue().snapshot());
+        }
+        
+        for (Map.Entry<String, Number> gauge : gauges.get().entrySet()) {
+            String name = "invitelist_" + gauge.getKey();
+            header(out, name, "gauge", null);
+            sample(out, name, "", gauge.getValue().doubleValue());
+        }
+        return out.toString();
+    }
+    
+    private static void header(StringBuilder out, String name, String type, String help) {
+        if (help != null) {
+            out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        }
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+    
+    private static void summary(StringBuilder out, String name, String labels, LatencyHistogram.Snapshot snapshot) {
+        String separator = labels.isEmpty() ? "" : ",";
+        for (double quantile : QUANTILES) {
+            sample(out, name, labels + separator + "quantile=\"" + quantile + "\"", seconds(snapshot.valueAt(quantile)));
+        }
+        sample(out, name + "_sum", labels, seconds(snapshot.getSumNanos()));
+        sample(out, name + "_count", labels, snapshot.getCount());
+    }
+    
+    private static void sample(StringBuilder out, String name, String labels, double value) {
+        out.append(name);
+        if (!labels.isEmpty()) {
+            out.append('{').append(labels).append('}');
+        }
+        out.append(' ');
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            out.append((long) value);
+        } else {
+            out.append(String.format(Locale.ROOT, "%.9g", value));
+        }
+        out.append('\n');
+    }
+    
+    private static double seconds(long nanos) {
+        return nanos / 1_000_000_000.0;
+    }
+}
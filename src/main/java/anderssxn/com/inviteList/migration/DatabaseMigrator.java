@@ -3,156 +3,539 @@ package anderssxn.com.inviteList.migration;
 import anderssxn.com.inviteList.InviteList;
 import anderssxn.com.inviteList.database.DatabaseType;
 import anderssxn.com.inviteList.database.InviteDatabase;
+import anderssxn.com.inviteList.database.WhitelistChange;
 import org.bukkit.command.CommandSender;
 
 import java.sql.*;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HexFormat;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.logging.Level;
 
 /**
- * Handles database migration from SQLite to MySQL
+ * Copies the whitelist and invitation history between databases
+ * SQLite -> MySQL, MySQL -> SQLite, and a SQLite backup of whichever database is in use
+ *
+ * Rows are read in primary-key order one chunk at a time and written with JDBC batches,
+ * one transaction per chunk. Each transaction also stores the chunk's last key in a
+ * migration_checkpoint table on the target, so an interrupted migration resumes exactly
+ * where it stopped. Invitation ids only grow, so re-running a finished migration only copies
+ * records added since; whitelist UUIDs are random, so its checkpoint is dropped once the table
+ * is done and a re-run upserts the whole whitelist again.
+ * Both tables are copied concurrently, each on its own connections.
+ * The source is opened as it is (no schema upgrade) and must already be at the current schema version.
+ * Every copied player also gets an 'A' change log row on the target, so servers syncing from it pick them up.
  */
 public class DatabaseMigrator {
     
+    private static final AtomicBoolean running = new AtomicBoolean(false);
+    
     private final InviteList plugin;
+    private final int batchSize;
+    private final int chunkSize;
+    private final long progressIntervalMillis;
     
     public DatabaseMigrator(InviteList plugin) {
         this.plugin = plugin;
+        this.batchSize = Math.max(1, plugin.getConfig().getInt("migration.batch-size", 1000));
+        this.chunkSize = Math.max(batchSize, plugin.getConfig().getInt("migration.chunk-size", 10000));
+        this.progressIntervalMillis = Math.max(1, plugin.getConfig().getInt("migration.progress-interval-seconds", 5)) * 1000L;
+    }
+    
+    public static boolean isRunning() {
+        return running.get();
     }
     
     /**
      * Migrate data from SQLite to MySQL
+     * @param fresh Ignore the checkpoint and copy everything again
      */
-    public CompletableFuture<MigrationResult> migrateToMySQL(CommandSender sender) {
-        return CompletableFuture.supplyAsync(() -> {
+    public CompletableFuture<MigrationResult> migrateToMySQL(CommandSender sender, boolean fresh) {
+        return migrate(sender,
+            () -> new InviteDatabase(plugin, DatabaseType.SQLITE),
+            () -> new InviteDatabase(plugin, DatabaseType.MYSQL),
+            "invitelist.db", fresh);
+    }
+    
+    /**
+     * Migrate data from MySQL to SQLite (invitelist.db)
+     * @param fresh Ignore the checkpoint and copy everything again
+     */
+    public CompletableFuture<MigrationResult> migrateToSQLite(CommandSender sender, boolean fresh) {
+        return migrate(sender,
+            () -> new InviteDatabase(plugin, DatabaseType.MYSQL),
+            () -> new InviteDatabase(plugin, DatabaseType.SQLITE),
+            "invitelist.db", fresh);
+    }
+    
+    /**
+     * Copy the database currently in use into a new SQLite file under backups/
+     */
+    public CompletableFuture<MigrationResult> backup(CommandSender sender) {
+        DatabaseType current = plugin.getDatabase().getType();
+        String file = "backups/invitelist-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()) + ".db";
+        return migrate(sender,
+            () -> new InviteDatabase(plugin, current),
+            () -> new InviteDatabase(plugin, DatabaseType.SQLITE, file),
+            file, true);
+    }
+    
+    private CompletableFuture<MigrationResult> migrate(CommandSender sender, Supplier<InviteDatabase> source,
+                                                       Supplier<InviteDatabase> target, String targetFile, boolean fresh) {
+        if (!running.compareAndSet(false, true)) {
             MigrationResult result = new MigrationResult();
+            result.message = "Another migration is already running";
+            return CompletableFuture.completedFuture(result);
+        }
+        
+        // Own thread: a migration can run for a long time and must not tie up shared pools
+        CompletableFuture<MigrationResult> future = CompletableFuture.supplyAsync(
+            () -> run(sender, source, target, fresh),
+            runnable -> {
+                Thread thread = new Thread(runnable, "InviteList-Migration");
+                thread.setDaemon(true);
+                thread.start();
+            });
+        
+        return future.whenComplete((result, error) -> {
+            running.set(false);
+            if (result != null) {
+                result.targetFile = targetFile;
+            }
+        });
+    }
+    
+    private MigrationResult run(CommandSender sender, Supplier<InviteDatabase> source, Supplier<InviteDatabase> target, boolean fresh) {
+        MigrationResult result = new MigrationResult();
+        InviteDatabase sourceDb = null;
+        InviteDatabase targetDb = null;
+        ExecutorService workers = null;
+        long start = System.currentTimeMillis();
+        
+        try {
+            // Create source and target database connections
+            sourceDb = source.get();
+            targetDb = target.get();
+            sender.sendMessage("§7[Migration] Starting migration from " + sourceDb.getType() + " to " + targetDb.getType() + "...");
             
-            try {
-                sender.sendMessage("§7[Migration] Starting migration from SQLite to MySQL...");
-                
-                // Create source (SQLite) database connection
-                InviteDatabase sourceDb = new InviteDatabase(plugin, DatabaseType.SQLITE);
-                sourceDb.connect();
-                sender.sendMessage("§7[Migration] Connected to source database (SQLite)");
-                
-                // Create target (MySQL) database connection
-                InviteDatabase targetDb = new InviteDatabase(plugin, DatabaseType.MYSQL);
-                targetDb.connect();
-                sender.sendMessage("§7[Migration] Connected to target database (MySQL)");
-                
-                // Migrate whitelist table
-                sender.sendMessage("§7[Migration] Migrating whitelist table...");
-                result.whitelistCount = migrateWhitelist(sourceDb, targetDb);
-                sender.sendMessage("§a[Migration] Migrated " + result.whitelistCount + " whitelist entries");
-                
-                // Migrate invitations table
-                sender.sendMessage("§7[Migration] Migrating invitations history...");
-                result.invitationsCount = migrateInvitations(sourceDb, targetDb);
-                sender.sendMessage("§a[Migration] Migrated " + result.invitationsCount + " invitation records");
-                
-                // Cleanup
+            // Read as it is: a migration must never rewrite the database it copies from
+            sourceDb.connect(false);
+            if (!sourceDb.isConnected()) {
+                throw new SQLException("Could not connect to source database (" + sourceDb.getType() + ")");
+            }
+            int sourceVersion = sourceDb.getSchemaVersion();
+            if (sourceVersion == 0) {
+                throw new IllegalStateException("Source database (" + sourceDb.getType() + ") has no InviteList tables");
+            }
+            if (sourceVersion != InviteDatabase.SCHEMA_VERSION) {
+                throw new IllegalStateException("Source database is at schema version " + sourceVersion + ", expected " +
+                    InviteDatabase.SCHEMA_VERSION + " (start the plugin on it once to upgrade it first)");
+            }
+            sender.sendMessage("§7[Migration] Connected to source database (" + sourceDb.getType() + ")");
+            
+            targetDb.connect();
+            if (!targetDb.isConnected()) {
+                throw new SQLException("Could not connect to target database (" + targetDb.getType() + ")");
+            }
+            sender.sendMessage("§7[Migration] Connected to target database (" + targetDb.getType() + ")");
+            
+            String sourceId = sourceDb.getLocation();
+            if (sourceId.equals(targetDb.getLocation())) {
+                throw new IllegalStateException("Source and target are the same database");
+            }
+            
+            createCheckpointTable(targetDb);
+            if (fresh) {
+                clearCheckpoint(targetDb, sourceId);
+            }
+            
+            TableCopy whitelist = new TableCopy("whitelist", false, countRows(sourceDb, "whitelist"), loadCheckpoint(targetDb, sourceId, "whitelist"));
+            TableCopy invitations = new TableCopy("invitations", true, countRows(sourceDb, "invitations"), loadCheckpoint(targetDb, sourceId, "invitations"));
+            
+            if (whitelist.startCopied > 0 || invitations.startCopied > 0) {
+                result.resumed = true;
+                sender.sendMessage("§7[Migration] Resuming from checkpoint (" + whitelist.startCopied + " whitelist entries, " +
+                    invitations.startCopied + " invitation records already copied)");
+            }
+            
+            // Both tables at once, each on its own connections
+            AtomicInteger threadId = new AtomicInteger();
+            workers = Executors.newFixedThreadPool(2, runnable -> {
+                Thread thread = new Thread(runnable, "InviteList-Migration-" + threadId.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            });
+            
+            InviteDatabase from = sourceDb;
+            InviteDatabase to = targetDb;
+            AtomicBoolean failed = new AtomicBoolean(false);
+            sender.sendMessage("§7[Migration] Copying whitelist and invitation history...");
+            
+            CompletableFuture<Void> copyWhitelist = CompletableFuture.runAsync(() -> copyTable(from, to, sourceId, whitelist,
+                "SELECT uuid, name, invited_by, invited_at FROM whitelist WHERE uuid > ? ORDER BY uuid LIMIT ?",
+                whitelistInsertSql(to.getType()), failed), workers);
+            CompletableFuture<Void> copyInvitations = CompletableFuture.runAsync(() -> copyTable(from, to, sourceId, invitations,
+                "SELECT id, inviter_uuid, inviter_name, invitee_uuid, invitee_name, invited_at FROM invitations WHERE id > ? ORDER BY id LIMIT ?",
+                invitationInsertSql(to.getType()), failed), workers);
+            
+            CompletableFuture<Void> all = CompletableFuture.allOf(copyWhitelist, copyInvitations);
+            while (true) {
+                try {
+                    all.get(progressIntervalMillis, TimeUnit.MILLISECONDS);
+                    break;
+                } catch (TimeoutException e) {
+                    logProgress(start, whitelist, invitations);
+                } catch (ExecutionException e) {
+                    throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                }
+            }
+            
+            result.whitelistCount = whitelist.copied.get() - whitelist.startCopied;
+            result.invitationsCount = invitations.copied.get() - invitations.startCopied;
+            result.elapsedMillis = System.currentTimeMillis() - start;
+            sender.sendMessage("§a[Migration] Migrated " + result.whitelistCount + " whitelist entries");
+            sender.sendMessage("§a[Migration] Migrated " + result.invitationsCount + " invitation records");
+            plugin.getLogger().info("[Migration] Finished in " + formatDuration(result.elapsedMillis / 1000) +
+                " (" + result.rowsPerSecond() + " rows/s)");
+            
+            result.success = true;
+            result.message = "Migration completed successfully!";
+            
+        } catch (Exception e) {
+            Throwable cause = e instanceof RuntimeException && e.getCause() != null ? e.getCause() : e;
+            result.success = false;
+            result.message = "Migration failed: " + cause.getMessage();
+            plugin.getLogger().log(Level.SEVERE, "Migration error (run the command again to resume from the last checkpoint)", cause);
+            
+        } finally {
+            // Cleanup
+            if (workers != null) {
+                workers.shutdownNow();
+            }
+            if (sourceDb != null) {
                 sourceDb.disconnect();
+            }
+            if (targetDb != null) {
                 targetDb.disconnect();
+            }
+        }
+        
+        return result;
+    }
+    
+    // ========== COPY ==========
+    
+    private static String whitelistInsertSql(DatabaseType target) {
+        // Upserts, so re-copying a row after a crash or with "fresh" is harmless
+        return target == DatabaseType.SQLITE ?
+            "INSERT OR REPLACE INTO whitelist (uuid, name, invited_by, invited_at) VALUES (?, ?, ?, ?)" :
+            "INSERT INTO whitelist (uuid, name, invited_by, invited_at) VALUES (?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE name = VALUES(name), invited_by = VALUES(invited_by), invited_at = VALUES(invited_at)";
+    }
+    
+    private static String invitationInsertSql(DatabaseType target) {
+        // Ids aren't copied (the target may already hold other servers' history), so skip records that are already there
+        return "INSERT INTO invitations (inviter_uuid, inviter_name, invitee_uuid, invitee_name, invited_at) " +
+            "SELECT ?, ?, ?, ?, ?" + (target == DatabaseType.MYSQL ? " FROM DUAL" : "") +
+            " WHERE NOT EXISTS (SELECT 1 FROM invitations WHERE invitee_uuid = ? AND inviter_uuid = ? AND invited_at = ?)";
+    }
+    
+    /**
+     * Copy one table chunk by chunk until the source is exhausted
+     * A chunk is read with the source connection, which is released before the target transaction starts,
+     * so the two tables never hold more than one connection each (SQLite pools have just one)
+     */
+    private void copyTable(InviteDatabase source, InviteDatabase target, String sourceId, TableCopy table,
+                           String selectSql, String insertSql, AtomicBoolean failed) {
+        try {
+            String lastKey = table.startKey;
+            List<Object[]> rows = new ArrayList<>(chunkSize);
+            
+            while (!failed.get()) {
+                rows.clear();
+                try (Connection conn = source.getReadConnection();
+                     PreparedStatement stmt = conn.prepareStatement(selectSql)) {
+                    
+                    if (table.numericKey) {
+                        stmt.setLong(1, lastKey.isEmpty() ? 0 : Long.parseLong(lastKey));
+                    } else {
+                        stmt.setBytes(1, fromHex(lastKey));
+                    }
+                    stmt.setInt(2, chunkSize);
+                    stmt.setFetchSize(chunkSize);
+                    
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        int columns = rs.getMetaData().getColumnCount();
+                        while (rs.next()) {
+                            Object[] row = new Object[columns];
+                            for (int i = 0; i < columns; i++) {
+                                row[i] = rs.getObject(i + 1);
+                            }
+                            rows.add(row);
+                        }
+                    }
+                }
+                
+                if (rows.isEmpty()) {
+                    break;
+                }
                 
-                result.success = true;
-                result.message = "Migration completed successfully!";
+                Object key = rows.get(rows.size() - 1)[0];
+                lastKey = key instanceof byte[] bytes ? toHex(bytes) : String.valueOf(key);
+                writeChunk(target, sourceId, table, insertSql, rows, lastKey);
                 
-            } catch (Exception e) {
-                result.success = false;
-                result.message = "Migration failed: " + e.getMessage();
-                plugin.getLogger().severe("Migration error: " + e.getMessage());
-                e.printStackTrace();
+                if (rows.size() < chunkSize) {
+                    break;
+                }
             }
             
-            return result;
-        });
+            // New players get random UUIDs, below the last key as often as above it: start over next time
+            if (!table.numericKey && !failed.get()) {
+                clearCheckpoint(target, sourceId, table.name);
+            }
+        } catch (SQLException e) {
+            failed.set(true);
+            throw new RuntimeException(e);
+        } catch (RuntimeException e) {
+            failed.set(true);
+            throw e;
+        }
     }
     
-    private int migrateWhitelist(InviteDatabase source, InviteDatabase target) throws SQLException {
-        int count = 0;
-        
-        String selectSql = "SELECT uuid, name, invited_by, invited_at FROM whitelist";
-        String insertSql = "INSERT INTO whitelist (uuid, name, invited_by, invited_at) VALUES (?, ?, ?, ?) " +
-                          "ON DUPLICATE KEY UPDATE name=?, invited_by=?, invited_at=?";
-        
-        try (Connection sourceConn = source.getConnection();
-             Connection targetConn = target.getConnection();
-             Statement selectStmt = sourceConn.createStatement();
-             PreparedStatement insertStmt = targetConn.prepareStatement(insertSql);
-             ResultSet rs = selectStmt.executeQuery(selectSql)) {
-            
-            while (rs.next()) {
-                String uuid = rs.getString("uuid");
-                String name = rs.getString("name");
-                String invitedBy = rs.getString("invited_by");
-                long invitedAt = rs.getLong("invited_at");
-                
-                // Insert into MySQL
-                insertStmt.setString(1, uuid);
-                insertStmt.setString(2, name);
-                insertStmt.setString(3, invitedBy);
-                insertStmt.setLong(4, invitedAt);
-                insertStmt.setString(5, name);
-                insertStmt.setString(6, invitedBy);
-                insertStmt.setLong(7, invitedAt);
+    /**
+     * Write one chunk and its checkpoint in a single transaction
+     * Whitelist chunks also log an 'A' change per player, so delta sync on the target's servers sees them
+     */
+    private void writeChunk(InviteDatabase target, String sourceId, TableCopy table, String insertSql,
+                            List<Object[]> rows, String lastKey) throws SQLException {
+        try (Connection conn = target.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                try (PreparedStatement stmt = conn.prepareStatement(insertSql);
+                     PreparedStatement change = conn.prepareStatement(
+                         "INSERT INTO whitelist_changes (uuid, action, changed_at) VALUES (?, ?, ?)")) {
+                    long now = System.currentTimeMillis();
+                    int pending = 0;
+                    for (Object[] row : rows) {
+                        if (table.numericKey) {
+                            // id, inviter_uuid, inviter_name, invitee_uuid, invitee_name, invited_at
+                            for (int i = 1; i < row.length; i++) {
+                                stmt.setObject(i, row[i]);
+                            }
+                            stmt.setObject(6, row[3]);
+                            stmt.setObject(7, row[1]);
+                            stmt.setObject(8, row[5]);
+                        } else {
+                            // uuid, name, invited_by, invited_at
+                            for (int i = 0; i < row.length; i++) {
+                                stmt.setObject(i + 1, row[i]);
+                            }
+                            change.setObject(1, row[0]);
+                            change.setString(2, String.valueOf(WhitelistChange.ADDED));
+                            change.setLong(3, now);
+                            change.addBatch();
+                        }
+                        stmt.addBatch();
+                        
+                        if (++pending == batchSize) {
+                            stmt.executeBatch();
+                            if (!table.numericKey) {
+                                change.executeBatch();
+                            }
+                            pending = 0;
+                        }
+                    }
+                    if (pending > 0) {
+                        stmt.executeBatch();
+                        if (!table.numericKey) {
+                            change.executeBatch();
+                        }
+                    }
+                }
                 
-                insertStmt.executeUpdate();
-                count++;
+                long copied = table.copied.get() + rows.size();
+                saveCheckpoint(conn, sourceId, table.name, lastKey, copied);
+                conn.commit();
+                table.copied.set(copied);
                 
-                // Log progress every 1000 entries
-                if (count % 1000 == 0) {
-                    plugin.getLogger().info("Migrated " + count + " whitelist entries...");
-                }
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
             }
         }
-        
-        return count;
     }
     
-    private int migrateInvitations(InviteDatabase source, InviteDatabase target) throws SQLException {
-        int count = 0;
+    private long countRows(InviteDatabase database, String table) throws SQLException {
+        try (Connection conn = database.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM " + table)) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+    
+    // ========== CHECKPOINT ==========
+    
+    private void createCheckpointTable(InviteDatabase target) throws SQLException {
+        String sql = "CREATE TABLE IF NOT EXISTS migration_checkpoint (" +
+            "source VARCHAR(255) NOT NULL, " +
+            "table_name VARCHAR(32) NOT NULL, " +
+            "last_key VARCHAR(36) NOT NULL, " +
+            "copied BIGINT NOT NULL, " +
+            "updated_at BIGINT NOT NULL, " +
+            "PRIMARY KEY (source, table_name)" +
+            ")";
         
-        String selectSql = "SELECT inviter_uuid, inviter_name, invitee_uuid, invitee_name, invited_at FROM invitations";
-        String insertSql = "INSERT INTO invitations (inviter_uuid, inviter_name, invitee_uuid, invitee_name, invited_at) " +
-                          "VALUES (?, ?, ?, ?, ?)";
+        try (Connection conn = target.getConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.execute(sql);
+        }
+    }
+    
+    private void clearCheckpoint(InviteDatabase target, String sourceId, String table) throws SQLException {
+        try (Connection conn = target.getConnection();
+             PreparedStatement stmt = conn.prepareStatement("DELETE FROM migration_checkpoint WHERE source = ? AND table_name = ?")) {
+            stmt.setString(1, sourceId);
+            stmt.setString(2, table);
+            stmt.executeUpdate();
+        }
+    }
+    
+    private void clearCheckpoint(InviteDatabase target, String sourceId) throws SQLException {
+        try (Connection conn = target.getConnection();
+             PreparedStatement stmt = conn.prepareStatement("DELETE FROM migration_checkpoint WHERE source = ?")) {
+            stmt.setString(1, sourceId);
+            stmt.executeUpdate();
+        }
+    }
+    
+    /**
+     * @return the last committed position or null if this table hasn't been started
+     */
+    private Checkpoint loadCheckpoint(InviteDatabase target, String sourceId, String table) throws SQLException {
+        String sql = "SELECT last_key, copied FROM migration_checkpoint WHERE source = ? AND table_name = ?";
         
-        try (Connection sourceConn = source.getConnection();
-             Connection targetConn = target.getConnection();
-             Statement selectStmt = sourceConn.createStatement();
-             PreparedStatement insertStmt = targetConn.prepareStatement(insertSql);
-             ResultSet rs = selectStmt.executeQuery(selectSql)) {
-            
-            while (rs.next()) {
-                String inviterUuid = rs.getString("inviter_uuid");
-                String inviterName = rs.getString("inviter_name");
-                String inviteeUuid = rs.getString("invitee_uuid");
-                String inviteeName = rs.getString("invitee_name");
-                long invitedAt = rs.getLong("invited_at");
-                
-                // Insert into MySQL
-                insertStmt.setString(1, inviterUuid);
-                insertStmt.setString(2, inviterName);
-                insertStmt.setString(3, inviteeUuid);
-                insertStmt.setString(4, inviteeName);
-                insertStmt.setLong(5, invitedAt);
-                
-                insertStmt.executeUpdate();
-                count++;
-                
-                // Log progress every 5000 entries
-                if (count % 5000 == 0) {
-                    plugin.getLogger().info("Migrated " + count + " invitation records...");
-                }
+        try (Connection conn = target.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, sourceId);
+            stmt.setString(2, table);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? new Checkpoint(rs.getString("last_key"), rs.getLong("copied")) : null;
             }
         }
+    }
+    
+    private void saveCheckpoint(Connection conn, String sourceId, String table, String lastKey, long copied) throws SQLException {
+        // REPLACE works on both SQLite and MySQL
+        String sql = "REPLACE INTO migration_checkpoint (source, table_name, last_key, copied, updated_at) VALUES (?, ?, ?, ?, ?)";
         
-        return count;
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, sourceId);
+            stmt.setString(2, table);
+            stmt.setString(3, lastKey);
+            stmt.setLong(4, copied);
+            stmt.setLong(5, System.currentTimeMillis());
+            stmt.executeUpdate();
+        }
+    }
+    
+    // ========== PROGRESS ==========
+    
+    private void logProgress(long start, TableCopy whitelist, TableCopy invitations) {
+        long elapsed = Math.max(1, System.currentTimeMillis() - start);
+        long copiedThisRun = (whitelist.copied.get() - whitelist.startCopied) + (invitations.copied.get() - invitations.startCopied);
+        long rate = copiedThisRun * 1000L / elapsed;
+        long remaining = whitelist.remaining() + invitations.remaining();
+        String eta = rate > 0 ? formatDuration(remaining / rate) : "unknown";
+        
+        plugin.getLogger().info("[Migration] " + whitelist.progress() + " | " + invitations.progress() +
+            " | " + rate + " rows/s | ETA " + eta);
+    }
+    
+    private static String formatDuration(long seconds) {
+        if (seconds >= 3600) {
+            return String.format("%dh%02dm", seconds / 3600, (seconds % 3600) / 60);
+        }
+        if (seconds >= 60) {
+            return String.format("%dm%02ds", seconds / 60, seconds % 60);
+        }
+        return seconds + "s";
+    }
+    
+    // Binary keys are checkpointed as hex (32 characters, fits last_key)
+    private static String toHex(byte[] bytes) {
+        return HexFormat.of().formatHex(bytes);
+    }
+    
+    /**
+     * @return the key bytes, or an empty key (start of the table) for a blank or pre-binary checkpoint
+     */
+    private static byte[] fromHex(String key) {
+        try {
+            return HexFormat.of().parseHex(key);
+        } catch (IllegalArgumentException e) {
+            return new byte[0];
+        }
+    }
+    
+    private record Checkpoint(String lastKey, long copied) {
+    }
+    
+    /**
+     * Progress of one table; copied is only advanced after a chunk commits
+     */
+    private static final class TableCopy {
+        final String name;
+        final boolean numericKey;
+        final long total;
+        final String startKey;
+        final long startCopied;
+        final AtomicLong copied;
+        
+        TableCopy(String name, boolean numericKey, long total, Checkpoint checkpoint) {
+            this.name = name;
+            this.numericKey = numericKey;
+            this.startKey = checkpoint != null ? checkpoint.lastKey() : "";
+            this.startCopied = checkpoint != null ? checkpoint.copied() : 0;
+            this.copied = new AtomicLong(startCopied);
+            this.total = Math.max(total, startCopied);
+        }
+        
+        long remaining() {
+            return Math.max(0, total - copied.get());
+        }
+        
+        String progress() {
+            long done = copied.get();
+            return name + " " + done + "/" + total + " (" + (total > 0 ? done * 100 / total : 100) + "%)";
+        }
     }
     
     public static class MigrationResult {
         public boolean success;
         public String message;
-        public int whitelistCount;
-        public int invitationsCount;
+        public long whitelistCount;
+        public long invitationsCount;
+        public boolean resumed;
+        public long elapsedMillis;
+        public String targetFile;
+        
+        public long rowsPerSecond() {
+            long rows = whitelistCount + invitationsCount;
+            return elapsedMillis > 0 ? rows * 1000L / elapsedMillis : rows;
+        }
     }
 }
-
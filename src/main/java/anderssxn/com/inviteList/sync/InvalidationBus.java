@@ -0,0 +1,152 @@
+package anderssxn.com.inviteList.sync;
+
+import anderssxn.com.inviteList.InviteList;
+import anderssxn.com.inviteList.cache.WhitelistCache;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+
+/**
+ * Publishes local whitelist changes to other servers and applies theirs to the local cache
+ * The channel is picked by sync.channel: none, outbox (database change log) or tcp
+ */
+public class InvalidationBus {
+    
+    private final InviteList plugin;
+    private final WhitelistCache cache;
+    private InvalidationChannel channel;
+    
+    private final LongAdder published = new LongAdder();
+    private final LongAdder received = new LongAdder();
+    
+    public InvalidationBus(InviteList plugin, WhitelistCache cache) {
+        this.plugin = plugin;
+        this.cache = cache;
+    }
+    
+    /**
+     * Create and start the configured channel (blocking; failures leave the bus inactive)
+     */
+    public void start() {
+        String type = plugin.getConfig().getString("sync.channel", "none").toLowerCase();
+        
+        try {
+            switch (type) {
+                case "none":
+                    return;
+                case "outbox":
+                    channel = new OutboxChannel(plugin,
+                        plugin.getConfig().getLong("sync.outbox.poll-interval-ms", 500),
+                        plugin.getConfig().getInt("sync.outbox.batch-size", 1000));
+                    break;
+                case "tcp":
+                    channel = createTcpChannel();
+                    break;
+                default:
+                    plugin.getLogger().warning("Invalid sync channel '" + type + "', cross-server sync disabled");
+                    return;
+            }
+            
+            channel.start(this::apply);
+            plugin.getLogger().info("Cross-server sync enabled (" + channel.getName() + ")");
+            
+        } catch (Exception e) {
+            plugin.getLogger().log(Level.SEVERE, "Failed to start sync channel '" + type + "', relying on cache refresh", e);
+            if (channel != null) {
+                channel.close();
+                channel = null;
+            }
+        }
+    }
+    
+    private TcpChannel createTcpChannel() {
+        String bindHost = plugin.getConfig().getString("sync.tcp.bind-host", "127.0.0.1");
+        int port = plugin.getConfig().getInt("sync.tcp.port", 25580);
+        
+        List<InetSocketAddress> peers = new ArrayList<>();
+        for (String peer : plugin.getConfig().getStringList("sync.tcp.peers")) {
+            int colon = peer.lastIndexOf(':');
+            if (colon <= 0) {
+                plugin.getLogger().warning("Ignoring sync peer '" + peer + "' (expected host:port)");
+                continue;
+            }
+            peers.add(InetSocketAddress.createUnresolved(peer.substring(0, colon), Integer.parseInt(peer.substring(colon + 1))));
+        }
+        
+        String nodeId = plugin.getConfig().getString("sync.node-id", "");
+        if (nodeId.isEmpty()) {
+            nodeId = UUID.randomUUID().toString();
+        }
+        
+        return new TcpChannel(plugin.getLogger(), nodeId, new InetSocketAddress(bindHost, port), peers,
+            plugin.getConfig().getString("sync.tcp.secret", ""),
+            plugin.getConfig().getInt("sync.tcp.queue-capacity", 10000));
+    }
+    
+    /**
+     * Announce a local change
+     */
+    public void publish(UUID uuid, boolean added, String name) {
+        InvalidationChannel current = channel;
+        if (current == null) {
+            return;
+        }
+        current.publish(new InvalidationMessage(uuid, added, name));
+        published.increment();
+    }
+    
+    /**
+     * Apply a change made on another server
+     */
+    private void apply(InvalidationMessage message) {
+        received.increment();
+        
+        if (!message.added()) {
+            cache.removeFromCache(message.uuid());
+            return;
+        }
+        
+        cache.addToCache(message.uuid());
+        if (!cache.isNameIndexEnabled()) {
+            return;
+        }
+        if (message.name() != null) {
+            cache.getNameIndex().update(message.uuid(), message.name());
+        } else if (cache.getNameIndex().getName(message.uuid()) == null) {
+            // Outbox rows carry no name, look it up so tab-completion knows the player
+            plugin.getDatabase().getPlayerNames(List.of(message.uuid()))
+                .thenAccept(names -> names.forEach(cache.getNameIndex()::update))
+                .exceptionally(ex -> {
+                    plugin.getLogger().fine("Failed to look up name of " + message.uuid() + ": " + ex.getMessage());
+                    return null;
+                });
+        }
+    }
+    
+    public void close() {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+    
+    public boolean isActive() {
+        return channel != null;
+    }
+    
+    public String getChannelName() {
+        return channel != null ? channel.getName() : "none";
+    }
+    
+    public long getPublishedCount() {
+        return published.sum();
+    }
+    
+    public long getReceivedCount() {
+        return received.sum();
+    }
+}
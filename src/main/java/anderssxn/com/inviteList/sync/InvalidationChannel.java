@@ -0,0 +1,28 @@
+package anderssxn.com.inviteList.sync;
+
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/**
+ * Transport that carries whitelist changes between servers sharing a database
+ * Delivery is best-effort; the periodic cache refresh remains the consistency check
+ */
+public interface InvalidationChannel {
+    
+    /**
+     * Start receiving; the listener may be called from any thread
+     */
+    void start(Consumer<InvalidationMessage> listener) throws IOException;
+    
+    /**
+     * Announce a local change to the other servers (must not block)
+     */
+    void publish(InvalidationMessage message);
+    
+    void close();
+    
+    /**
+     * Short name shown in /invitelist cache
+     */
+    String getName();
+}
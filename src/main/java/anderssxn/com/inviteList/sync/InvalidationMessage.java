@@ -0,0 +1,12 @@
+package anderssxn.com.inviteList.sync;
+
+import java.util.UUID;
+
+/**
+ * A whitelist change announced to other servers
+ * @param uuid Player UUID
+ * @param added true if the player was whitelisted, false if removed
+ * @param name Player name if known (null otherwise)
+ */
+public record InvalidationMessage(UUID uuid, boolean added, String name) {
+}
@@ -0,0 +1,120 @@
+package anderssxn.com.inviteList.sync;
+
+import anderssxn.com.inviteList.InviteList;
+import anderssxn.com.inviteList.database.InviteDatabase;
+import anderssxn.com.inviteList.database.WhitelistChange;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+
+/**
+ * Invalidation channel backed by the whitelist_changes table
+ *
+ * Every add/remove already writes its change log row in the same transaction (a transactional outbox),
+ * so publishing is a no-op and no extra infrastructure is needed. Each server polls the log for rows
+ * newer than the last one it has seen: a primary-key range scan that is empty almost every time.
+ */
+public class OutboxChannel implements InvalidationChannel {
+    
+    private final InviteList plugin;
+    private final long pollIntervalMillis;
+    private final int batchSize;
+    
+    private ScheduledExecutorService scheduler;
+    private Consumer<InvalidationMessage> listener;
+    private long lastVersion;
+    private boolean seeded;
+    private boolean failing;
+    
+    public OutboxChannel(InviteList plugin, long pollIntervalMillis, int batchSize) {
+        this.plugin = plugin;
+        this.pollIntervalMillis = Math.max(50, pollIntervalMillis);
+        this.batchSize = Math.max(1, batchSize);
+    }
+    
+    @Override
+    public void start(Consumer<InvalidationMessage> listener) {
+        this.listener = listener;
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "InviteList-Outbox");
+            thread.setDaemon(true);
+            return thread;
+        });
+        
+        // Only changes from now on; the cache load covers everything before
+        // Seeded off the main thread; polling starts once the position is known (or seeds itself if this failed)
+        ScheduledExecutorService polling = scheduler;
+        plugin.getDatabase().getLatestChangeVersion().whenComplete((version, error) -> {
+            if (polling.isShutdown()) {
+                return;
+            }
+            polling.execute(() -> {
+                if (error == null) {
+                    lastVersion = version;
+                    seeded = true;
+                }
+            });
+            polling.scheduleWithFixedDelay(this::poll, pollIntervalMillis, pollIntervalMillis, TimeUnit.MILLISECONDS);
+        });
+    }
+    
+    private void poll() {
+        InviteDatabase database = plugin.getDatabase();
+        if (database == null) {
+            return;
+        }
+        
+        try {
+            if (!seeded) {
+                lastVersion = database.getLatestChangeVersion().join();
+                seeded = true;
+            }
+            
+            WhitelistChange.Batch batch;
+            do {
+                batch = database.getChangesSince(lastVersion, batchSize).join();
+                for (WhitelistChange change : batch.changes()) {
+                    listener.accept(new InvalidationMessage(change.uuid(), change.added(), null));
+                    lastVersion = change.version();
+                }
+                
+                // Log was pruned or the database was swapped: skip ahead, the refresh task reconciles
+                if (batch.maxVersion() < lastVersion) {
+                    lastVersion = batch.maxVersion();
+                }
+            } while (batch.changes().size() == batchSize);
+            
+            if (failing) {
+                failing = false;
+                plugin.getLogger().info("Outbox polling recovered");
+            }
+            
+        } catch (Exception e) {
+            // Log once per outage rather than every poll
+            if (!failing) {
+                failing = true;
+                plugin.getLogger().log(Level.WARNING, "Outbox polling failed: " + e.getMessage());
+            }
+        }
+    }
+    
+    @Override
+    public void publish(InvalidationMessage message) {
+        // Nothing to do, the change log row was written with the change itself
+    }
+    
+    @Override
+    public void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+    
+    @Override
+    public String getName() {
+        return "outbox";
+    }
+}
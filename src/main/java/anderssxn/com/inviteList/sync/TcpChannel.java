@@ -0,0 +1,424 @@
+package anderssxn.com.inviteList.sync;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+/**
+ * Invalidation channel that pushes changes straight to the other servers over TCP
+ *
+ * Every server listens on a port and keeps one outgoing connection per peer. A message is one line:
+ * {@code IL2 <node> <sequence> <A|R> <uuid> <name|-> <timestamp> <hmac>}, signed with HMAC-SHA256 over a shared secret.
+ * Lines with a bad signature, from this node, or older than a minute are ignored, and so is any line whose
+ * sequence isn't above the last one accepted from that node (replays). Sequences start at the startup time
+ * in microseconds, so they keep increasing across restarts.
+ * Peers that are down just miss messages; the periodic refresh catches them up.
+ *
+ * Inbound connections are capped, a line longer than 256 bytes or a connection silent for longer than
+ * the read timeout is dropped. Idle outgoing connections send an empty keep-alive line to stay under it.
+ */
+public class TcpChannel implements InvalidationChannel {
+
+    private static final String VERSION = "IL2";
+    private static final int MAX_LINE_LENGTH = 256;
+    private static final long MAX_AGE_MILLIS = 60_000L;
+    private static final int CONNECT_TIMEOUT_MILLIS = 2000;
+    private static final long MAX_BACKOFF_MILLIS = 10_000L;
+    private static final int READ_TIMEOUT_MILLIS = 45_000;
+    private static final long KEEP_ALIVE_MILLIS = 15_000L;
+    private static final long WARNING_INTERVAL_MILLIS = 60_000L;
+    private static final Pattern NAME = Pattern.compile("[A-Za-z0-9_]{1,16}");
+
+    private final Logger logger;
+    private final String nodeId;
+    private final InetSocketAddress bindAddress;
+    private final List<InetSocketAddress> peerAddresses;
+    private final byte[] secret;
+    private final int queueCapacity;
+    private final int maxInbound;
+
+    private final List<Peer> peers = new ArrayList<>();
+    private final List<Socket> inbound = new ArrayList<>();
+    private final AtomicLong nextSequence = new AtomicLong(System.currentTimeMillis() * 1000);
+    private final Map<String, Long> lastSequence = new ConcurrentHashMap<>();
+    private volatile boolean running;
+    private ServerSocket serverSocket;
+    private Consumer<InvalidationMessage> listener;
+    private long lastBadSignatureWarning;
+    private int suppressedBadSignatures;
+
+    public TcpChannel(Logger logger, String nodeId, InetSocketAddress bindAddress, List<InetSocketAddress> peerAddresses,
+                      String secret, int queueCapacity) {
+        if (secret == null || secret.isEmpty()) {
+            throw new IllegalArgumentException("sync.tcp.secret must be set");
+        }
+        if (nodeId.contains(" ")) {
+            throw new IllegalArgumentException("sync.node-id must not contain spaces");
+        }
+        this.logger = logger;
+        this.nodeId = nodeId;
+        this.bindAddress = bindAddress;
+        this.peerAddresses = List.copyOf(peerAddresses);
+        this.secret = secret.getBytes(StandardCharsets.UTF_8);
+        this.queueCapacity = Math.max(1, queueCapacity);
+        // Each peer needs one connection; the slack covers a peer reconnecting before its old socket times out
+        this.maxInbound = this.peerAddresses.size() * 2 + 2;
+    }
+
+    @Override
+    public void start(Consumer<InvalidationMessage> listener) throws IOException {
+        this.listener = listener;
+        this.running = true;
+
+        serverSocket = new ServerSocket();
+        serverSocket.setReuseAddress(true);
+        serverSocket.bind(bindAddress);
+        startThread("InviteList-Sync-Accept", this::acceptLoop);
+
+        for (InetSocketAddress address : peerAddresses) {
+            Peer peer = new Peer(address);
+            peers.add(peer);
+            startThread("InviteList-Sync-" + address.getHostString() + ":" + address.getPort(), peer::sendLoop);
+        }
+
+        logger.info("Sync channel listening on " + bindAddress + " with " + peers.size() + " peer(s)");
+    }
+
+    @Override
+    public void publish(InvalidationMessage message) {
+        if (!running || peers.isEmpty()) {
+            return;
+        }
+
+        String line = encode(message, nextSequence.incrementAndGet(), System.currentTimeMillis());
+        for (Peer peer : peers) {
+            // Never block the caller; a peer that is down long enough to fill its queue loses messages
+            peer.queue.offer(line);
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        try {
+            if (serverSocket != null) {
+                serverSocket.close();
+            }
+        } catch (IOException ignored) {
+        }
+
+        for (Peer peer : peers) {
+            peer.close();
+        }
+        synchronized (inbound) {
+            for (Socket socket : inbound) {
+                closeQuietly(socket);
+            }
+            inbound.clear();
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "tcp";
+    }
+
+    // ========== RECEIVING ==========
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                synchronized (inbound) {
+                    if (inbound.size() >= maxInbound) {
+                        closeQuietly(socket);
+                        continue;
+                    }
+                    inbound.add(socket);
+                }
+                socket.setSoTimeout(READ_TIMEOUT_MILLIS);
+                startThread("InviteList-Sync-In-" + socket.getRemoteSocketAddress(), () -> readLoop(socket));
+            } catch (IOException e) {
+                if (running) {
+                    logger.warning("Sync channel accept failed: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void readLoop(Socket socket) {
+        try (InputStream in = new BufferedInputStream(socket.getInputStream())) {
+            byte[] buffer = new byte[MAX_LINE_LENGTH];
+            String line;
+            while (running && (line = readLine(in, buffer)) != null) {
+                if (line.isEmpty()) {
+                    continue; // Keep-alive
+                }
+                InvalidationMessage message = decode(line);
+                if (message != null) {
+                    listener.accept(message);
+                }
+            }
+        } catch (SocketTimeoutException ignored) {
+            // Silent for too long (keep-alives stopped); the peer reconnects when it has something to send
+        } catch (IOException ignored) {
+            // Peer went away or sent garbage; it reconnects on its own
+        } finally {
+            synchronized (inbound) {
+                inbound.remove(socket);
+            }
+            closeQuietly(socket);
+        }
+    }
+
+    /**
+     * Read one line into the buffer, never more than its length
+     * @return the line without its terminator, or null at the end of the stream
+     * @throws IOException if the line doesn't fit (the connection is dropped)
+     */
+    private static String readLine(InputStream in, byte[] buffer) throws IOException {
+        int length = 0;
+        while (true) {
+            int b = in.read();
+            if (b < 0) {
+                return null;
+            }
+            if (b == '\n') {
+                if (length > 0 && buffer[length - 1] == '\r') {
+                    length--;
+                }
+                return new String(buffer, 0, length, StandardCharsets.US_ASCII);
+            }
+            if (length == buffer.length) {
+                throw new IOException("line too long");
+            }
+            buffer[length++] = (byte) b;
+        }
+    }
+
+    /**
+     * @return the message, or null if the line is malformed, unsigned, stale, replayed or our own
+     */
+    private InvalidationMessage decode(String line) {
+        int macStart = line.lastIndexOf(' ');
+        if (macStart < 0) {
+            return null;
+        }
+
+        String[] parts = line.split(" ");
+        if (parts.length != 8 || !parts[0].equals(VERSION) || parts[1].equals(nodeId)) {
+            return null;
+        }
+
+        byte[] expected = sign(line.substring(0, macStart));
+        byte[] actual;
+        try {
+            actual = HexFormat.of().parseHex(parts[7]);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (!MessageDigest.isEqual(expected, actual)) {
+            warnBadSignature(parts[1]);
+            return null;
+        }
+
+        try {
+            long sequence = Long.parseLong(parts[2]);
+            long timestamp = Long.parseLong(parts[6]);
+            if (Math.abs(System.currentTimeMillis() - timestamp) > MAX_AGE_MILLIS) {
+                return null;
+            }
+
+            boolean added;
+            if (parts[3].equals("A")) {
+                added = true;
+            } else if (parts[3].equals("R")) {
+                added = false;
+            } else {
+                return null;
+            }
+
+            String name = NAME.matcher(parts[5]).matches() ? parts[5] : null;
+            InvalidationMessage message = new InvalidationMessage(UUID.fromString(parts[4]), added, name);
+            return accept(parts[1], sequence) ? message : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Record a node's sequence number if it is newer than the last one accepted from that node
+     * @return false for a replayed (or duplicate) message
+     */
+    private boolean accept(String node, long sequence) {
+        boolean[] accepted = new boolean[1];
+        lastSequence.compute(node, (key, last) -> {
+            if (last != null && sequence <= last) {
+                return last;
+            }
+            accepted[0] = true;
+            return sequence;
+        });
+        return accepted[0];
+    }
+
+    /**
+     * At most one warning a minute, so a misconfigured or hostile sender can't flood the log
+     */
+    private synchronized void warnBadSignature(String node) {
+        long now = System.currentTimeMillis();
+        if (now - lastBadSignatureWarning < WARNING_INTERVAL_MILLIS) {
+            suppressedBadSignatures++;
+            return;
+        }
+        lastBadSignatureWarning = now;
+        logger.warning("Ignoring sync message with a bad signature from node " + node +
+            (suppressedBadSignatures > 0 ? " (" + suppressedBadSignatures + " more since the last warning)" : ""));
+        suppressedBadSignatures = 0;
+    }
+
+    // ========== SENDING ==========
+
+    private String encode(InvalidationMessage message, long sequence, long timestamp) {
+        String name = message.name() != null && NAME.matcher(message.name()).matches() ? message.name() : "-";
+        String body = VERSION + " " + nodeId + " " + sequence + " " + (message.added() ? "A" : "R") + " " +
+            message.uuid() + " " + name + " " + timestamp;
+        return body + " " + HexFormat.of().formatHex(sign(body));
+    }
+
+    private byte[] sign(String body) {
+        try {
+            // Mac instances aren't thread-safe, and creating one is cheap next to a network write
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(secret, "HmacSHA256"));
+            return mac.doFinal(body.getBytes(StandardCharsets.US_ASCII));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 unavailable", e);
+        }
+    }
+
+    /**
+     * Outgoing connection to one peer with its own queue, reconnecting with backoff
+     */
+    private final class Peer {
+        private final InetSocketAddress address;
+        private final BlockingQueue<String> queue = new ArrayBlockingQueue<>(queueCapacity);
+        private volatile Socket socket;
+        private boolean reportedDown;
+
+        private Peer(InetSocketAddress address) {
+            this.address = address;
+        }
+
+        private void sendLoop() {
+            long backoff = 500;
+            long lastSent = System.currentTimeMillis();
+            while (running) {
+                String line;
+                try {
+                    line = queue.poll(1, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (line == null) {
+                    // Keep an idle connection under the peer's read timeout
+                    if (socket != null && System.currentTimeMillis() - lastSent >= KEEP_ALIVE_MILLIS) {
+                        try {
+                            send("");
+                        } catch (IOException e) {
+                            closeQuietly(socket);
+                            socket = null;
+                        }
+                        lastSent = System.currentTimeMillis();
+                    }
+                    continue;
+                }
+
+                // Retry on a fresh connection until the line is sent or the channel closes
+                while (running) {
+                    try {
+                        send(line);
+                        lastSent = System.currentTimeMillis();
+                        backoff = 500;
+                        break;
+                    } catch (IOException e) {
+                        closeQuietly(socket);
+                        socket = null;
+                        if (!reportedDown) {
+                            reportedDown = true;
+                            logger.warning("Sync peer " + address + " unreachable: " + e.getMessage());
+                        }
+                        try {
+                            Thread.sleep(backoff);
+                        } catch (InterruptedException interrupted) {
+                            return;
+                        }
+                        backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+                    }
+                }
+            }
+        }
+
+        private void send(String line) throws IOException {
+            Socket current = socket;
+            if (current == null) {
+                current = new Socket();
+                current.setTcpNoDelay(true);
+                // Resolve on every connect so a peer's DNS change is picked up
+                current.connect(new InetSocketAddress(address.getHostString(), address.getPort()), CONNECT_TIMEOUT_MILLIS);
+                socket = current;
+                if (reportedDown) {
+                    reportedDown = false;
+                    logger.info("Sync peer " + address + " reconnected");
+                }
+            }
+
+            OutputStream out = current.getOutputStream();
+            out.write((line + "\n").getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+        }
+
+        private void close() {
+            closeQuietly(socket);
+        }
+    }
+
+    private static void startThread(String name, Runnable task) {
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static void closeQuietly(Socket socket) {
+        if (socket == null) {
+            return;
+        }
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
@@ -7,11 +7,17 @@ import org.bukkit.scheduler.BukkitRunnable;
 /**
  * Periodically refreshes the whitelist cache from database
  * Ensures cache stays in sync across server restarts and manual database edits
+ * In delta mode only rows changed since the last run are pulled from the change log
  */
 public class CacheRefreshTask extends BukkitRunnable {
     
+    private static final long PRUNE_INTERVAL_MILLIS = 60 * 60 * 1000L; // 1 hour
+    
     private final InviteList plugin;
     private final WhitelistCache cache;
+    private long lastPrune = System.currentTimeMillis();
+    private long lastSnapshot = System.currentTimeMillis();
+    private long lastGraphLoad = System.currentTimeMillis();
     
     public CacheRefreshTask(InviteList plugin, WhitelistCache cache) {
         this.plugin = plugin;
@@ -24,8 +30,59 @@ public class CacheRefreshTask extends BukkitRunnable {
             return;
         }
         
-        plugin.getLogger().info("Auto-refreshing whitelist cache...");
+        plugin.getLogger().fine("Auto-refreshing whitelist cache...");
         cache.refresh();
+        
+        pruneChangeLog();
+        writeSnapshot();
+        updateInviteGraph();
+    }
+    
+    /**
+     * Pick up invites made on other servers every invite-graph.refresh-interval-minutes (0 = never)
+     */
+    private void updateInviteGraph() {
+        long intervalMinutes = plugin.getConfig().getLong("invite-graph.refresh-interval-minutes", 10);
+        long now = System.currentTimeMillis();
+        if (intervalMinutes <= 0 || now - lastGraphLoad < intervalMinutes * 60 * 1000L) {
+            return;
+        }
+        lastGraphLoad = now;
+        
+        plugin.updateInviteGraph();
+    }
+    
+    /**
+     * Persist the cache for warm starts every cache.snapshot.interval-minutes
+     */
+    private void writeSnapshot() {
+        long now = System.currentTimeMillis();
+        long intervalMillis = plugin.getConfig().getLong("cache.snapshot.interval-minutes", 10) * 60 * 1000L;
+        if (now - lastSnapshot < intervalMillis) {
+            return;
+        }
+        lastSnapshot = now;
+        
+        cache.saveSnapshot();
+    }
+    
+    /**
+     * Drop change log entries older than the retention window (at most once per hour)
+     */
+    private void pruneChangeLog() {
+        long now = System.currentTimeMillis();
+        if (now - lastPrune < PRUNE_INTERVAL_MILLIS) {
+            return;
+        }
+        lastPrune = now;
+        
+        long retentionHours = plugin.getConfig().getLong("cache.delta.retention-hours", 168);
+        long cutoff = now - retentionHours * 60 * 60 * 1000L;
+        
+        plugin.getDatabase().pruneChanges(cutoff).thenAccept(pruned -> {
+            if (pruned > 0) {
+                plugin.getLogger().info("Pruned " + pruned + " old whitelist change log entries");
+            }
+        });
     }
 }
-